@@ -0,0 +1,123 @@
+package com.xiaowu.benchmark;
+
+import com.xiaowu.common.ConversationCodec;
+import com.xiaowu.common.JacksonConversationCodec;
+import com.xiaowu.common.JacksonConversationCodec.Format;
+import com.xiaowu.common.MessageWrapper;
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 会话编码后的存储体积对比。
+ * <p>
+ * MessageWrapperBenchmark 的消息由同一段样例文本截取拼接而成，重复度远高于真实对话，GZIP 的压缩率会被高估；
+ * 这里改用自然语言文本组成会话：从语料目录中的 Markdown 段落与 Java 文档注释中按顺序取段落，
+ * 用户消息一段、助手回复三段，每种长度只使用不重复的段落，然后比较旧版 JSON 字符串与各编码方式的字节数。
+ * <p>
+ * 通过 main 方法运行，参数用系统属性配置（括号内为默认值）：
+ * <ul>
+ *     <li>size.corpus：语料目录（..，即项目根目录）</li>
+ *     <li>size.lengths：会话的消息条数（10,40,100）</li>
+ *     <li>size.compress-threshold：Smile + GZIP 的压缩阈值（4096，与 conversation.codec.compress-threshold 默认值一致）</li>
+ * </ul>
+ */
+public class ConversationSizeReport {
+
+    // 用户消息与助手回复各自包含的段落数
+    private static final int USER_PARAGRAPHS = 1;
+
+    private static final int ASSISTANT_PARAGRAPHS = 3;
+
+    // 过短的段落（标题、单行注释）不作为消息内容
+    private static final int MIN_PARAGRAPH_LENGTH = 30;
+
+    public static void main(String[] args) throws IOException {
+        List<String> corpus = corpus(Path.of(System.getProperty("size.corpus", "..")));
+        int threshold = Integer.getInteger("size.compress-threshold", 4096);
+        Map<String, ConversationCodec> codecs = new LinkedHashMap<>();
+        codecs.put("json", new JacksonConversationCodec(Format.JSON, 0));
+        codecs.put("smile", new JacksonConversationCodec(Format.SMILE, 0));
+        codecs.put("smile+gzip", new JacksonConversationCodec(Format.SMILE, threshold));
+
+        System.out.printf("corpus: %d paragraphs%n", corpus.size());
+        System.out.printf("%-10s %12s %12s %12s %12s%n", "messages", "legacy", "json", "smile", "smile+gzip");
+        for (String length : System.getProperty("size.lengths", "10,40,100").split(",")) {
+            int count = Integer.parseInt(length.trim());
+            List<MessageWrapper> messages = conversation(corpus, count);
+            if (messages == null) {
+                System.out.printf("%-10d not enough distinct paragraphs%n", count);
+                continue;
+            }
+            long legacy = MessageWrapper.toConversationStr(messages).getBytes(StandardCharsets.UTF_8).length;
+            StringBuilder row = new StringBuilder("%-10d %12d".formatted(count, legacy));
+            codecs.values().forEach(codec -> {
+                long bytes = codec.encode(messages).length;
+                row.append(" %12s".formatted("%d (%d%%)".formatted(bytes, Math.round(100.0 * bytes / legacy))));
+            });
+            System.out.println(row);
+        }
+    }
+
+    /**
+     * 按顺序取段落组成交替的用户 / 助手消息，段落不够时返回 null（重复的段落会高估压缩率）
+     */
+    private static List<MessageWrapper> conversation(List<String> corpus, int count) {
+        List<MessageWrapper> messages = new ArrayList<>(count);
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            boolean user = i % 2 == 0;
+            int paragraphs = user ? USER_PARAGRAPHS : ASSISTANT_PARAGRAPHS;
+            if (next + paragraphs > corpus.size()) {
+                return null;
+            }
+            String text = String.join("\n", corpus.subList(next, next + paragraphs));
+            next += paragraphs;
+            messages.add(new MessageWrapper(user ? MessageType.USER : MessageType.ASSISTANT, text));
+        }
+        return messages;
+    }
+
+    /**
+     * 读取语料目录中 Markdown 文件的段落与 Java 文件的文档注释，按文件路径排序保证每次结果一致
+     */
+    private static List<String> corpus(Path root) throws IOException {
+        List<String> paragraphs = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(v -> v.toString().endsWith(".md") || v.toString().endsWith(".java"))
+                    .filter(v -> !v.toString().contains("target"))
+                    .sorted()
+                    .toList();
+        }
+        for (Path file : files) {
+            boolean markdown = file.toString().endsWith(".md");
+            StringBuilder paragraph = new StringBuilder();
+            for (String line : Files.readAllLines(file)) {
+                String text = line.trim();
+                if (markdown && !text.isEmpty() && !text.startsWith("```")) {
+                    paragraph.append(text);
+                } else if (!markdown && text.startsWith("*") && !text.startsWith("*/") && text.length() > 1) {
+                    paragraph.append(text.substring(1).trim());
+                } else {
+                    if (paragraph.length() >= MIN_PARAGRAPH_LENGTH) {
+                        paragraphs.add(paragraph.toString());
+                    }
+                    paragraph.setLength(0);
+                }
+            }
+            if (paragraph.length() >= MIN_PARAGRAPH_LENGTH) {
+                paragraphs.add(paragraph.toString());
+            }
+        }
+        return paragraphs;
+    }
+}
@@ -0,0 +1,134 @@
+package com.xiaowu.benchmark;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaowu.advisor.DbChatMemory;
+import com.xiaowu.common.ChatTelemetry;
+import com.xiaowu.common.JacksonConversationCodec;
+import com.xiaowu.common.JacksonConversationCodec.Format;
+import com.xiaowu.common.ListingEtagCache;
+import com.xiaowu.entity.po.BaseConversation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DbChatMemory 读写的基准测试，数据库使用内存实现代替，测量的是会话编解码与读-改-写本身的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbChatMemoryBenchmark {
+
+    private static final String CONVERSATION_ID = "benchmark";
+
+    // 基准测试中没有对话时间预算，DbChatMemory 不会开启事务
+    private static final PlatformTransactionManager NO_TRANSACTIONS = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    @Param({"10", "100", "1000"})
+    public int historyLength;
+
+    @Param({"JSON", "SMILE"})
+    public Format format;
+
+    private InMemoryConversationService conversationService;
+
+    private JacksonConversationCodec codec;
+
+    private DbChatMemory chatMemory;
+
+    private byte[] encodedHistory;
+
+    private final List<Message> turn = List.of(
+            new UserMessage("这个接口的超时时间应该怎么配置？"),
+            new AssistantMessage("可以在 application.yml 中调整对应客户端的超时配置。"));
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        // 初始化 MyBatis-Plus 的实体元数据，LambdaQueryWrapper 依赖它解析字段
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""),
+                BaseConversation.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        conversationService = new InMemoryConversationService();
+        codec = new JacksonConversationCodec(format, 4096);
+        chatMemory = new DbChatMemory(conversationService, new ListingEtagCache(new ObjectMapper()), codec,
+                meterRegistry, new ChatTelemetry(meterRegistry, null), NO_TRANSACTIONS);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        reset();
+    }
+
+    @Benchmark
+    public List<Message> get() {
+        return chatMemory.get(CONVERSATION_ID, 4000);
+    }
+
+    @Benchmark
+    public void add(FreshHistory freshHistory) {
+        chatMemory.add(CONVERSATION_ID, turn);
+    }
+
+    /**
+     * 写入初始的会话历史
+     */
+    void reset() {
+        encodedHistory = encodedHistory == null ? codec.encode(Fixtures.messages(historyLength)) : encodedHistory;
+        conversationService.save(BaseConversation.builder()
+                .conversationId(CONVERSATION_ID)
+                .content(encodedHistory)
+                .build());
+    }
+
+    /**
+     * add 基准每次调用前重置会话历史，保证每次写入时历史长度都是 historyLength
+     */
+    @State(Scope.Thread)
+    public static class FreshHistory {
+
+        @Setup(Level.Invocation)
+        public void reset(DbChatMemoryBenchmark benchmark) {
+            benchmark.reset();
+        }
+    }
+}
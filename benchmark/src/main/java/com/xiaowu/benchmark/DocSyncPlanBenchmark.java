@@ -0,0 +1,51 @@
+package com.xiaowu.benchmark;
+
+import com.lark.oapi.service.drive.v1.model.File;
+import com.xiaowu.common.DocSyncPlan;
+import com.xiaowu.entity.po.BaseDoc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档同步差异计算的基准测试。
+ * DocServiceImpl.loadData 中对比飞书文件列表与本地记录的逻辑已抽取为 DocSyncPlan，
+ * 这里用固定生成的文件列表代替 FeishuService.listDocs 的返回值，只测量差异计算本身。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocSyncPlanBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int docCount;
+
+    private List<File> files;
+
+    private List<BaseDoc> docs;
+
+    @Setup
+    public void setUp() {
+        files = Fixtures.files(docCount);
+        docs = Fixtures.docs(docCount);
+    }
+
+    @Benchmark
+    public DocSyncPlan plan() {
+        return DocSyncPlan.of(files, docs);
+    }
+}
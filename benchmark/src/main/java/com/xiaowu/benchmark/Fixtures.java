@@ -0,0 +1,77 @@
+package com.xiaowu.benchmark;
+
+import com.lark.oapi.service.drive.v1.model.File;
+import com.xiaowu.common.MessageWrapper;
+import com.xiaowu.entity.po.BaseDoc;
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试使用的固定数据，使用固定随机种子保证每次运行数据一致
+ */
+final class Fixtures {
+
+    private static final String SAMPLE = "飞书云文档中的知识库内容，包含项目说明、接口文档与常见问题。"
+            + "The quick brown fox jumps over the lazy dog. 0123456789 ";
+
+    private Fixtures() {
+    }
+
+    /**
+     * 生成交替的用户 / 助手消息，单条消息长度在 50 到 400 个字符之间
+     */
+    static List<MessageWrapper> messages(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<MessageWrapper> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MessageType type = i % 2 == 0 ? MessageType.USER : MessageType.ASSISTANT;
+            messages.add(new MessageWrapper(type, text(random, 50 + random.nextInt(350))));
+        }
+        return messages;
+    }
+
+    /**
+     * 生成飞书文件列表与本地文档记录：约 1% 新增、1% 删除、5% 内容变化，其余不变
+     */
+    static List<File> files(int count) {
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File file = new File();
+            file.setToken("doc" + i);
+            file.setName("文档 " + i);
+            file.setUrl("https://example.feishu.cn/docx/doc" + i);
+            file.setModifiedTime(i % 20 == 0 ? "1700000001" : "1700000000");
+            files.add(file);
+        }
+        return files;
+    }
+
+    static List<BaseDoc> docs(int count) {
+        int base = count / 100;
+        List<BaseDoc> docs = new ArrayList<>(count);
+        // 前 1% 的文件在本地不存在（新增），另外 1% 的本地记录在飞书中已删除
+        for (int i = base; i < count + base; i++) {
+            docs.add(BaseDoc.builder()
+                    .id((long) i)
+                    .docId("doc" + i)
+                    .docName("文档 " + i)
+                    .url("https://example.feishu.cn/docx/doc" + i)
+                    .vectorDocId("vector" + i)
+                    .modifiedTime("1700000000")
+                    .build());
+        }
+        return docs;
+    }
+
+    private static String text(SplittableRandom random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            int start = random.nextInt(SAMPLE.length());
+            builder.append(SAMPLE, start, Math.min(SAMPLE.length(), start + length - builder.length()));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.xiaowu.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseConversation;
+import com.xiaowu.mapper.ConversationMapper;
+import com.xiaowu.service.MpConversationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * MpConversationService 的内存实现，只支持 DbChatMemory 用到的按 conversationId（以及 version）查询、更新、删除。
+ * 条件参数从 LambdaQueryWrapper 生成的参数表中按顺序读取：第一个为 conversationId，第二个（如有）为 version。
+ */
+class InMemoryConversationService extends ServiceImpl<ConversationMapper, BaseConversation>
+        implements MpConversationService {
+
+    private final ConcurrentMap<String, BaseConversation> rows = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean save(BaseConversation entity) {
+        if (entity.getVersion() == null) {
+            entity.setVersion(0L);
+        }
+        rows.put(entity.getConversationId(), entity);
+        return true;
+    }
+
+    @Override
+    public Optional<BaseConversation> getOneOpt(Wrapper<BaseConversation> queryWrapper) {
+        return Optional.ofNullable(rows.get((String) params(queryWrapper).get(0)))
+                .map(InMemoryConversationService::copy);
+    }
+
+    @Override
+    public boolean update(BaseConversation entity, Wrapper<BaseConversation> updateWrapper) {
+        List<Object> params = params(updateWrapper);
+        String conversationId = (String) params.get(0);
+        Object expectedVersion = params.size() > 1 ? params.get(1) : null;
+        BaseConversation[] updated = new BaseConversation[1];
+        rows.computeIfPresent(conversationId, (key, row) -> {
+            if (expectedVersion != null && !Objects.equals(row.getVersion(), expectedVersion)) {
+                return row;
+            }
+            BaseConversation next = copy(row);
+            Optional.ofNullable(entity.getContent()).ifPresent(next::setContent);
+            Optional.ofNullable(entity.getVersion()).ifPresent(next::setVersion);
+            Optional.ofNullable(entity.getTitle()).ifPresent(next::setTitle);
+            updated[0] = next;
+            return next;
+        });
+        return updated[0] != null;
+    }
+
+    @Override
+    public boolean remove(Wrapper<BaseConversation> queryWrapper) {
+        return rows.remove((String) params(queryWrapper).get(0)) != null;
+    }
+
+    /**
+     * 按 MPGENVAL1、MPGENVAL2 ... 的顺序取出条件参数
+     */
+    private static List<Object> params(Wrapper<BaseConversation> wrapper) {
+        Map<String, Object> pairs = ((AbstractWrapper<?, ?, ?>) wrapper).getParamNameValuePairs();
+        TreeMap<Integer, Object> ordered = new TreeMap<>();
+        pairs.forEach((name, value) -> ordered.put(Integer.parseInt(name.replaceAll("\\D", "")), value));
+        return new ArrayList<>(ordered.values());
+    }
+
+    private static BaseConversation copy(BaseConversation row) {
+        return BaseConversation.builder()
+                .id(row.getId())
+                .conversationId(row.getConversationId())
+                .title(row.getTitle())
+                .content(row.getContent())
+                .version(row.getVersion())
+                .createdTime(row.getCreatedTime())
+                .updatedTime(row.getUpdatedTime())
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.xiaowu.benchmark;
+
+import com.xiaowu.common.ConversationCodec;
+import com.xiaowu.common.JacksonConversationCodec;
+import com.xiaowu.common.JacksonConversationCodec.Format;
+import com.xiaowu.common.MessageWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话序列化与反序列化的基准测试。
+ * 对比旧的 MessageWrapper JSON 字符串方式与 ConversationCodec 的 JSON / Smile / Smile + GZIP 编码的耗时。
+ * AuxCounters 的计数按迭代累加，不能表示单次编码的字节数，存储体积见 ConversationSizeReport。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageWrapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int historyLength;
+
+    @Param({"LEGACY_JSON", "CODEC_JSON", "CODEC_SMILE", "CODEC_SMILE_GZIP"})
+    public String encoding;
+
+    private List<MessageWrapper> messages;
+
+    private ConversationCodec codec;
+
+    private String legacyContent;
+
+    private byte[] encodedContent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messages = Fixtures.messages(historyLength);
+        codec = switch (encoding) {
+            case "CODEC_JSON" -> new JacksonConversationCodec(Format.JSON, 0);
+            case "CODEC_SMILE" -> new JacksonConversationCodec(Format.SMILE, 0);
+            case "CODEC_SMILE_GZIP" -> new JacksonConversationCodec(Format.SMILE, 4096);
+            default -> null;
+        };
+        legacyContent = MessageWrapper.toConversationStr(messages);
+        encodedContent = codec == null ? legacyContent.getBytes(StandardCharsets.UTF_8) : codec.encode(messages);
+    }
+
+    @Benchmark
+    public Object serialize() {
+        if (codec == null) {
+            return MessageWrapper.toConversationStr(messages);
+        }
+        return codec.encode(messages);
+    }
+
+    @Benchmark
+    public List<MessageWrapper> deserialize() {
+        if (codec == null) {
+            return MessageWrapper.fromConversationStr(legacyContent);
+        }
+        return codec.decode(encodedContent);
+    }
+}
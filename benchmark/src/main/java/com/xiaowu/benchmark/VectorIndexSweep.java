@@ -0,0 +1,304 @@
+package com.xiaowu.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * pgvector HNSW 索引参数的召回率 / 延迟扫描。
+ * <p>
+ * 向独立的 hnsw_sweep 表写入合成的 384 维向量（按簇分布，比均匀随机更接近真实文本向量），
+ * 在内存中暴力计算精确 k 近邻作为基准，然后依次扫描 m、ef_construction、ef_search，
+ * 记录 recall@k、查询耗时分位数、建索引耗时与索引大小，最后选出满足目标召回率且 p95 最低的配置。
+ * <p>
+ * 这不是 JMH 基准（需要真实的 PostgreSQL），通过 main 方法运行，参数用系统属性配置（括号内为默认值）：
+ * <ul>
+ *     <li>sweep.url / sweep.user / sweep.password：数据库连接（jdbc:postgresql://localhost:5432/springai，postgres，123456）</li>
+ *     <li>sweep.sizes：语料规模（10000,50000）</li>
+ *     <li>sweep.queries：每组参数的查询次数（200）</li>
+ *     <li>sweep.k：召回的近邻数（5）</li>
+ *     <li>sweep.m / sweep.ef-construction / sweep.ef-search：扫描的参数取值（8,16,32 / 32,64,128 / 20,40,80,160）</li>
+ *     <li>sweep.target-recall：选择推荐配置时要求的最低召回率（0.95）</li>
+ *     <li>sweep.output：结果 JSON 文件路径（vector-index-sweep.json）</li>
+ * </ul>
+ */
+public class VectorIndexSweep {
+
+    private static final int DIMENSIONS = 384;
+
+    private static final int CLUSTERS = 64;
+
+    private static final int WARMUP_QUERIES = 20;
+
+    private static final String TABLE = "hnsw_sweep";
+
+    private static final String INDEX = "hnsw_sweep_embedding_idx";
+
+    private final int queries = Integer.getInteger("sweep.queries", 200);
+
+    private final int k = Integer.getInteger("sweep.k", 5);
+
+    private final double targetRecall = Double.parseDouble(System.getProperty("sweep.target-recall", "0.95"));
+
+    public static void main(String[] args) throws Exception {
+        new VectorIndexSweep().run();
+    }
+
+    private void run() throws Exception {
+        int[] sizes = ints("sweep.sizes", "10000,50000");
+        int[] ms = ints("sweep.m", "8,16,32");
+        int[] efConstructions = ints("sweep.ef-construction", "32,64,128");
+        int[] efSearches = ints("sweep.ef-search", "20,40,80,160");
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        Map<Integer, Map<String, Object>> profiles = new LinkedHashMap<>();
+        try (Connection connection = DriverManager.getConnection(
+                System.getProperty("sweep.url", "jdbc:postgresql://localhost:5432/springai"),
+                System.getProperty("sweep.user", "postgres"),
+                System.getProperty("sweep.password", "123456"))) {
+            execute(connection, "CREATE EXTENSION IF NOT EXISTS vector");
+
+            for (int size : sizes) {
+                float[][] corpus = vectors(new SplittableRandom(size), size);
+                float[][] queryVectors = vectors(new SplittableRandom(-size), queries);
+                int[][] truth = exactNeighbours(corpus, queryVectors);
+                load(connection, corpus);
+
+                List<Map<String, Object>> sizeResults = new ArrayList<>();
+                for (int m : ms) {
+                    for (int efConstruction : efConstructions) {
+                        if (efConstruction < 2 * m) {
+                            // pgvector 要求 ef_construction 至少为 2 * m
+                            continue;
+                        }
+                        long buildMillis = buildIndex(connection, m, efConstruction);
+                        long indexBytes = indexSize(connection);
+                        for (int efSearch : efSearches) {
+                            Map<String, Object> result = measure(connection, queryVectors, truth, efSearch);
+                            result.put("size", size);
+                            result.put("m", m);
+                            result.put("efConstruction", efConstruction);
+                            result.put("efSearch", efSearch);
+                            result.put("buildMillis", buildMillis);
+                            result.put("indexBytes", indexBytes);
+                            sizeResults.add(result);
+                            System.out.println(result);
+                        }
+                    }
+                }
+                results.addAll(sizeResults);
+                profiles.put(size, profile(sizeResults));
+            }
+            execute(connection, "DROP TABLE IF EXISTS " + TABLE);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("k", k);
+        report.put("queries", queries);
+        report.put("targetRecall", targetRecall);
+        report.put("profiles", profiles);
+        report.put("results", results);
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        Files.writeString(Path.of(System.getProperty("sweep.output", "vector-index-sweep.json")),
+                mapper.writeValueAsString(report));
+        System.out.println(mapper.writeValueAsString(profiles));
+    }
+
+    /**
+     * 选出召回率达标且 p95 最低的配置（都不达标时取召回率最高的），并给出可以直接应用的设置
+     */
+    private Map<String, Object> profile(List<Map<String, Object>> results) {
+        Map<String, Object> best = results.stream()
+                .filter(v -> (double) v.get("recall") >= targetRecall)
+                .min(Comparator.comparingLong(v -> (long) v.get("p95Micros")))
+                .orElseGet(() -> results.stream()
+                        .max(Comparator.comparingDouble(v -> (double) v.get("recall")))
+                        .orElseThrow());
+
+        Map<String, Object> profile = new LinkedHashMap<>(best);
+        profile.put("indexSql", "CREATE INDEX ON vector_store USING HNSW (embedding vector_cosine_ops) WITH (m = %d, ef_construction = %d);"
+                .formatted((int) best.get("m"), (int) best.get("efConstruction")));
+        profile.put("efSearchSql", "SET hnsw.ef_search = %d;".formatted((int) best.get("efSearch")));
+        return profile;
+    }
+
+    private Map<String, Object> measure(Connection connection, float[][] queryVectors, int[][] truth, int efSearch) throws SQLException {
+        execute(connection, "SET hnsw.ef_search = " + efSearch);
+        long[] latencies = new long[queryVectors.length];
+        int hits = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id FROM " + TABLE + " ORDER BY embedding <=> ?::vector LIMIT ?")) {
+            for (int i = 0; i < WARMUP_QUERIES; i++) {
+                search(statement, queryVectors[i % queryVectors.length]);
+            }
+            for (int i = 0; i < queryVectors.length; i++) {
+                long start = System.nanoTime();
+                Set<Integer> found = search(statement, queryVectors[i]);
+                latencies[i] = (System.nanoTime() - start) / 1000;
+                for (int id : truth[i]) {
+                    if (found.contains(id)) {
+                        hits++;
+                    }
+                }
+            }
+        }
+        Arrays.sort(latencies);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("recall", hits / (double) (queryVectors.length * k));
+        result.put("p50Micros", percentile(latencies, 0.50));
+        result.put("p95Micros", percentile(latencies, 0.95));
+        result.put("p99Micros", percentile(latencies, 0.99));
+        return result;
+    }
+
+    private Set<Integer> search(PreparedStatement statement, float[] vector) throws SQLException {
+        statement.setString(1, literal(vector));
+        statement.setInt(2, k);
+        Set<Integer> ids = new HashSet<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private void load(Connection connection, float[][] corpus) throws SQLException {
+        execute(connection, "DROP TABLE IF EXISTS " + TABLE);
+        execute(connection, "CREATE TABLE " + TABLE + " (id int PRIMARY KEY, embedding vector(" + DIMENSIONS + "))");
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO " + TABLE + " (id, embedding) VALUES (?, ?::vector)")) {
+            for (int i = 0; i < corpus.length; i++) {
+                statement.setInt(1, i);
+                statement.setString(2, literal(corpus[i]));
+                statement.addBatch();
+                if ((i + 1) % 1000 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        execute(connection, "ANALYZE " + TABLE);
+    }
+
+    private long buildIndex(Connection connection, int m, int efConstruction) throws SQLException {
+        execute(connection, "DROP INDEX IF EXISTS " + INDEX);
+        long start = System.nanoTime();
+        execute(connection, "CREATE INDEX %s ON %s USING HNSW (embedding vector_cosine_ops) WITH (m = %d, ef_construction = %d)"
+                .formatted(INDEX, TABLE, m, efConstruction));
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private long indexSize(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT pg_relation_size('" + INDEX + "')")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * 暴力计算每个查询的精确 k 近邻（向量已归一化，余弦相似度即点积）
+     */
+    private int[][] exactNeighbours(float[][] corpus, float[][] queryVectors) {
+        return IntStream.range(0, queryVectors.length).parallel()
+                .mapToObj(q -> {
+                    float[] query = queryVectors[q];
+                    double[] scores = new double[corpus.length];
+                    for (int i = 0; i < corpus.length; i++) {
+                        double dot = 0;
+                        for (int d = 0; d < DIMENSIONS; d++) {
+                            dot += query[d] * corpus[i][d];
+                        }
+                        scores[i] = dot;
+                    }
+                    return IntStream.range(0, corpus.length).boxed()
+                            .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                            .limit(k)
+                            .mapToInt(Integer::intValue)
+                            .toArray();
+                })
+                .toArray(int[][]::new);
+    }
+
+    /**
+     * 生成按簇分布的归一化向量，簇中心由固定种子确定，语料与查询共享同一组簇
+     */
+    private static float[][] vectors(SplittableRandom random, int count) {
+        SplittableRandom centerRandom = new SplittableRandom(CLUSTERS);
+        float[][] centers = new float[CLUSTERS][DIMENSIONS];
+        for (float[] center : centers) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                center[d] = (float) (centerRandom.nextDouble() * 2 - 1);
+            }
+        }
+
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            float[] center = centers[random.nextInt(CLUSTERS)];
+            double norm = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] = center[d] + (float) (random.nextDouble() * 2 - 1) * 0.8f;
+                norm += vector[d] * vector[d];
+            }
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] *= scale;
+            }
+        }
+        return vectors;
+    }
+
+    private static String literal(float[] vector) {
+        StringBuilder builder = new StringBuilder(vector.length * 10).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(vector[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static int[] ints(String property, String defaults) {
+        return Arrays.stream(System.getProperty(property, defaults).split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+}
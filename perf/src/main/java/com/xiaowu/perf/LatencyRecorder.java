@@ -0,0 +1,66 @@
+package com.xiaowu.perf;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录单类请求的耗时与成功 / 失败数量，结束后计算吞吐与分位数。
+ * 耗时以毫秒保存在定长数组中，超出容量后覆盖最早的样本。
+ */
+public class LatencyRecorder {
+
+    private final String name;
+
+    private final long[] samples;
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    public LatencyRecorder(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[capacity];
+    }
+
+    public void success(long nanos) {
+        long index = count.getAndIncrement();
+        samples[(int) (index % samples.length)] = nanos / 1_000_000;
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * 汇总结果
+     *
+     * @param elapsedMillis 压测总耗时
+     * @return 按输出顺序排列的指标
+     */
+    public Map<String, Object> summary(long elapsedMillis) {
+        int size = (int) Math.min(count.get(), samples.length);
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("name", name);
+        summary.put("requests", count.get());
+        summary.put("errors", errors.get());
+        summary.put("throughputPerSecond", elapsedMillis == 0 ? 0 : count.get() * 1000.0 / elapsedMillis);
+        summary.put("p50Millis", percentile(sorted, 0.50));
+        summary.put("p95Millis", percentile(sorted, 0.95));
+        summary.put("p99Millis", percentile(sorted, 0.99));
+        summary.put("maxMillis", size == 0 ? 0 : sorted[size - 1]);
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,218 @@
+package com.xiaowu.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端压测驱动：并发回放多轮对话，同时周期性触发文档同步，输出吞吐与耗时分位数。
+ * <p>
+ * 参数通过系统属性配置（括号内为默认值）：
+ * <ul>
+ *     <li>load.target：被测应用地址（http://localhost:8000）</li>
+ *     <li>load.sessions：并发会话数，每个会话一个虚拟线程（50）</li>
+ *     <li>load.turns：每个会话的对话轮数（5）</li>
+ *     <li>load.think-ms：两轮对话之间的间隔（0）</li>
+ *     <li>load.chat-path：对话接口路径，/api/reactive/conversation/chat 为响应式链路（/api/conversation/chat）</li>
+ *     <li>load.sync-interval-ms：触发文档同步的间隔，0 表示不触发（10000）</li>
+ *     <li>load.stages：压测结束后从应用的 /actuator/metrics 读取的 chat.stage 阶段，逗号分隔，空表示不读取（prepare,memory_load,retrieval）</li>
+ *     <li>load.output：结果 JSON 文件路径，不设置则只打印到控制台</li>
+ * </ul>
+ * 阶段耗时是应用启动以来的累计值，对比不同配置（例如 chat.preparation.parallel）时每次压测前需要重启应用。
+ */
+public class LoadDriver {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private static final List<String> QUESTIONS = List.of(
+            "如何部署这个服务？",
+            "ERR-1042 是什么错误？",
+            "OPS-2048 对应的问题解决了吗？",
+            "接口说明在哪里可以找到？",
+            "常见问题有哪些？");
+
+    private final String target = System.getProperty("load.target", "http://localhost:8000");
+
+    private final int sessions = Integer.getInteger("load.sessions", 50);
+
+    private final int turns = Integer.getInteger("load.turns", 5);
+
+    private final int thinkMs = Integer.getInteger("load.think-ms", 0);
+
+    private final String chatPath = System.getProperty("load.chat-path", "/api/conversation/chat");
+
+    private final int syncIntervalMs = Integer.getInteger("load.sync-interval-ms", 10000);
+
+    private final String stages = System.getProperty("load.stages", "prepare,memory_load,retrieval");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final LatencyRecorder chat = new LatencyRecorder("chat", 1 << 20);
+
+    private final LatencyRecorder sync = new LatencyRecorder("sync", 1 << 12);
+
+    public static void main(String[] args) throws Exception {
+        new LoadDriver().run();
+    }
+
+    private void run() throws Exception {
+        long start = System.nanoTime();
+
+        Thread syncLoop = syncIntervalMs > 0 ? Thread.ofVirtual().start(this::syncLoop) : null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                executor.submit(this::session);
+            }
+        }
+        if (syncLoop != null) {
+            syncLoop.interrupt();
+            syncLoop.join();
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("target", target);
+        report.put("chatPath", chatPath);
+        report.put("sessions", sessions);
+        report.put("turns", turns);
+        report.put("elapsedMillis", elapsedMillis);
+        report.put("results", List.of(chat.summary(elapsedMillis), sync.summary(elapsedMillis)));
+        report.put("stages", stages());
+
+        String json = MAPPER.writeValueAsString(report);
+        System.out.println(json);
+        String output = System.getProperty("load.output");
+        if (output != null) {
+            Files.writeString(Path.of(output), json);
+        }
+    }
+
+    /**
+     * 单个会话：创建会话后依次发送多轮问题
+     */
+    private void session() {
+        String conversationId;
+        try {
+            JsonNode created = MAPPER.readTree(send(HttpRequest.newBuilder(uri("/api/conversation/create"))
+                    .POST(HttpRequest.BodyPublishers.noBody())));
+            conversationId = created.path("content").path("conversationId").asText();
+        } catch (IOException | RuntimeException e) {
+            chat.error();
+            return;
+        }
+
+        for (int turn = 0; turn < turns; turn++) {
+            String question = QUESTIONS.get(ThreadLocalRandom.current().nextInt(QUESTIONS.size()));
+            String path = "%s?conversationId=%s&message=%s"
+                    .formatted(chatPath, conversationId, URLEncoder.encode(question, StandardCharsets.UTF_8));
+            timed(chat, HttpRequest.newBuilder(uri(path)).GET());
+            if (!pause(thinkMs)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 按固定间隔触发文档同步，直到对话全部结束
+     */
+    private void syncLoop() {
+        while (pause(syncIntervalMs)) {
+            timed(sync, HttpRequest.newBuilder(uri("/api/doc/load")).GET());
+        }
+    }
+
+    /**
+     * 读取应用记录的各阶段耗时（chat.stage），输出次数、平均值、最大值与分位数（毫秒）
+     */
+    private Map<String, Object> stages() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String stage : stages.split(",")) {
+            if (stage.isBlank()) {
+                continue;
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            try {
+                JsonNode metric = MAPPER.readTree(send(HttpRequest.newBuilder(
+                        uri("/actuator/metrics/chat.stage?tag=stage:" + stage.trim())).GET()));
+                Map<String, Double> measurements = new LinkedHashMap<>();
+                metric.path("measurements").forEach(v -> measurements.put(v.path("statistic").asText(), v.path("value").asDouble()));
+                double count = measurements.getOrDefault("COUNT", 0.0);
+                summary.put("count", (long) count);
+                summary.put("meanMillis", count == 0 ? 0 : measurements.getOrDefault("TOTAL_TIME", 0.0) * 1000 / count);
+                summary.put("maxMillis", measurements.getOrDefault("MAX", 0.0) * 1000);
+                // 分位数以 chat.stage.percentile 单独注册
+                for (String percentile : List.of("0.5", "0.95", "0.99")) {
+                    JsonNode value = MAPPER.readTree(send(HttpRequest.newBuilder(uri(
+                            "/actuator/metrics/chat.stage.percentile?tag=stage:%s&tag=phi:%s"
+                                    .formatted(stage.trim(), percentile))).GET()));
+                    summary.put("p" + Math.round(Double.parseDouble(percentile) * 100), value.path("measurements").path(0).path("value").asDouble() * 1000);
+                }
+            } catch (IOException | RuntimeException e) {
+                summary.put("error", String.valueOf(e.getMessage()));
+            }
+            result.put(stage.trim(), summary);
+        }
+        return result;
+    }
+
+    private void timed(LatencyRecorder recorder, HttpRequest.Builder request) {
+        long start = System.nanoTime();
+        try {
+            send(request);
+            recorder.success(System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            recorder.error();
+        }
+    }
+
+    private String send(HttpRequest.Builder request) throws IOException {
+        try {
+            HttpResponse<String> response = client.send(request.timeout(Duration.ofMinutes(2)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("unexpected status " + response.statusCode());
+            }
+            return response.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(target + path);
+    }
+
+    private static boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.xiaowu.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 压测用的本地替身服务，同时模拟飞书开放平台与 OpenAI 兼容的对话 / 向量接口。
+ * <p>
+ * 所有参数通过系统属性配置（括号内为默认值）：
+ * <ul>
+ *     <li>stub.port：监听端口（18080）</li>
+ *     <li>stub.feishu-latency-ms：飞书接口延迟（50）</li>
+ *     <li>stub.first-token-ms：对话接口首 token 延迟（300）</li>
+ *     <li>stub.token-interval-ms：流式输出每个 token 的间隔（20）</li>
+ *     <li>stub.reply-tokens：每次回复的 token 数（60）</li>
+ *     <li>stub.embedding-latency-ms：向量接口延迟（30）</li>
+ *     <li>stub.dimensions：向量维度（384）</li>
+ *     <li>stub.error-rate：随机失败比例，飞书返回 500，模型接口返回 429（0）</li>
+ *     <li>stub.corpus-size：文件夹中的文档数量（200）</li>
+ *     <li>stub.doc-chars：每个文档的字符数（2000）</li>
+ *     <li>stub.churn-per-minute：每分钟内容发生变化的文档比例（0.02）</li>
+ * </ul>
+ */
+public class StubServer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String TEXT = "飞书云文档知识库压测内容，包含接口说明、部署步骤与常见问题。"
+            + "Load test corpus with error codes like ERR-1042 and ticket keys like OPS-2048. ";
+
+    private final int feishuLatencyMs = Integer.getInteger("stub.feishu-latency-ms", 50);
+
+    private final int firstTokenMs = Integer.getInteger("stub.first-token-ms", 300);
+
+    private final int tokenIntervalMs = Integer.getInteger("stub.token-interval-ms", 20);
+
+    private final int replyTokens = Integer.getInteger("stub.reply-tokens", 60);
+
+    private final int embeddingLatencyMs = Integer.getInteger("stub.embedding-latency-ms", 30);
+
+    private final int dimensions = Integer.getInteger("stub.dimensions", 384);
+
+    private final double errorRate = Double.parseDouble(System.getProperty("stub.error-rate", "0"));
+
+    private final int corpusSize = Integer.getInteger("stub.corpus-size", 200);
+
+    private final int docChars = Integer.getInteger("stub.doc-chars", 2000);
+
+    private final double churnPerMinute = Double.parseDouble(System.getProperty("stub.churn-per-minute", "0.02"));
+
+    public static void main(String[] args) throws IOException {
+        int port = Integer.getInteger("stub.port", 18080);
+        StubServer stub = new StubServer();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/open-apis/auth/v3/app_access_token/internal", stub::accessToken);
+        server.createContext("/open-apis/drive/v1/files", stub::listFiles);
+        server.createContext("/open-apis/docx/v1/documents/", stub::document);
+        server.createContext("/v1/chat/completions", stub::chatCompletions);
+        server.createContext("/v1/embeddings", stub::embeddings);
+        server.start();
+        System.out.printf("stub server listening on %d, corpus size %d%n", port, stub.corpusSize);
+    }
+
+    private void accessToken(HttpExchange exchange) throws IOException {
+        sleep(feishuLatencyMs);
+        json(exchange, 200, Map.of("code", 0, "msg", "ok", "app_access_token", "t-stub", "expire", 7200));
+    }
+
+    /**
+     * 文件列表，支持 page_size / page_token 翻页
+     */
+    private void listFiles(HttpExchange exchange) throws IOException {
+        sleep(feishuLatencyMs);
+        if (fail()) {
+            json(exchange, 500, Map.of("code", 99991400, "msg", "stub error"));
+            return;
+        }
+        Map<String, String> query = query(exchange.getRequestURI());
+        int pageSize = Integer.parseInt(query.getOrDefault("page_size", "50"));
+        int from = Integer.parseInt(query.getOrDefault("page_token", "0"));
+        int to = Math.min(corpusSize, from + pageSize);
+
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("token", docId(i));
+            file.put("name", "压测文档 " + i);
+            file.put("type", "docx");
+            file.put("url", "http://localhost/docx/" + docId(i));
+            file.put("created_time", "1700000000");
+            file.put("modified_time", modifiedTime(i));
+            files.add(file);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("files", files);
+        data.put("has_more", to < corpusSize);
+        data.put("next_page_token", to < corpusSize ? String.valueOf(to) : "");
+        json(exchange, 200, Map.of("code", 0, "msg", "success", "data", data));
+    }
+
+    /**
+     * 文档接口：/{docId}/raw_content 返回原始内容，/{docId}/blocks 分页返回内容块
+     */
+    private void document(HttpExchange exchange) throws IOException {
+        sleep(feishuLatencyMs);
+        if (fail()) {
+            json(exchange, 500, Map.of("code", 99991400, "msg", "stub error"));
+            return;
+        }
+        String[] segments = exchange.getRequestURI().getPath().split("/");
+        String docId = segments[segments.length - 2];
+        if ("blocks".equals(segments[segments.length - 1])) {
+            blocks(exchange, docId);
+        } else {
+            json(exchange, 200, Map.of("code", 0, "msg", "success", "data", Map.of("content", content(docId))));
+        }
+    }
+
+    /**
+     * 文档内容，由文档 ID 与修改时间确定，修改时间变化后内容随之变化
+     */
+    private String content(String docId) {
+        int index = Integer.parseInt(docId.substring(3));
+        return text(new SplittableRandom((docId + modifiedTime(index)).hashCode()), docChars);
+    }
+
+    /**
+     * 内容块：文档内容每 200 字一个文本块，每 5 个文本块前插入一个二级标题，支持 page_size / page_token 翻页
+     */
+    private void blocks(HttpExchange exchange, String docId) throws IOException {
+        String content = content(docId);
+        List<Map<String, Object>> blocks = new ArrayList<>();
+        blocks.add(Map.of("block_id", docId, "block_type", 1));
+        for (int i = 0, paragraph = 0; i < content.length(); i += 200, paragraph++) {
+            if (paragraph % 5 == 0) {
+                blocks.add(Map.of("block_id", docId + "-h" + paragraph, "parent_id", docId, "block_type", 4,
+                        "heading2", textBlock("章节 " + (paragraph / 5 + 1))));
+            }
+            blocks.add(Map.of("block_id", docId + "-p" + paragraph, "parent_id", docId, "block_type", 2,
+                    "text", textBlock(content.substring(i, Math.min(content.length(), i + 200)))));
+        }
+
+        Map<String, String> query = query(exchange.getRequestURI());
+        int pageSize = Integer.parseInt(query.getOrDefault("page_size", "500"));
+        int from = Integer.parseInt(query.getOrDefault("page_token", "0"));
+        int to = Math.min(blocks.size(), from + pageSize);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("items", blocks.subList(from, to));
+        data.put("has_more", to < blocks.size());
+        data.put("page_token", to < blocks.size() ? String.valueOf(to) : "");
+        json(exchange, 200, Map.of("code", 0, "msg", "success", "data", data));
+    }
+
+    private static Map<String, Object> textBlock(String content) {
+        return Map.of("elements", List.of(Map.of("text_run", Map.of("content", content))));
+    }
+
+    /**
+     * OpenAI 兼容的对话接口，支持流式（SSE）与非流式，流式最后一个分片携带 usage
+     */
+    private void chatCompletions(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        JsonNode request = MAPPER.readTree(body);
+        if (fail()) {
+            json(exchange, 429, Map.of("error", Map.of("message", "stub rate limit", "type", "rate_limit")));
+            return;
+        }
+        String model = request.path("model").asText("stub");
+        int promptTokens = Math.max(1, body.length / 4);
+        Map<String, Object> usage = Map.of(
+                "prompt_tokens", promptTokens,
+                "completion_tokens", replyTokens,
+                "total_tokens", promptTokens + replyTokens,
+                "prompt_tokens_details", Map.of("cached_tokens", 0));
+
+        sleep(firstTokenMs);
+        if (!request.path("stream").asBoolean(false)) {
+            sleep((long) tokenIntervalMs * replyTokens);
+            json(exchange, 200, Map.of(
+                    "id", "chatcmpl-stub",
+                    "object", "chat.completion",
+                    "created", System.currentTimeMillis() / 1000,
+                    "model", model,
+                    "choices", List.of(Map.of(
+                            "index", 0,
+                            "message", Map.of("role", "assistant", "content", "压测回复。".repeat(replyTokens / 5 + 1)),
+                            "finish_reason", "stop")),
+                    "usage", usage));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < replyTokens; i++) {
+                Map<String, Object> delta = i == 0
+                        ? Map.of("role", "assistant", "content", "压测")
+                        : Map.of("content", "回复");
+                event(out, chunk(model, List.of(choice(delta, null)), null));
+                sleep(tokenIntervalMs);
+            }
+            event(out, chunk(model, List.of(choice(Map.of(), "stop")), null));
+            event(out, chunk(model, List.of(), usage));
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * OpenAI 兼容的向量接口，向量由文本哈希确定，相同文本得到相同向量
+     */
+    private void embeddings(HttpExchange exchange) throws IOException {
+        JsonNode request = MAPPER.readTree(exchange.getRequestBody().readAllBytes());
+        sleep(embeddingLatencyMs);
+        if (fail()) {
+            json(exchange, 429, Map.of("error", Map.of("message", "stub rate limit", "type", "rate_limit")));
+            return;
+        }
+        List<String> inputs = new ArrayList<>();
+        JsonNode input = request.path("input");
+        if (input.isArray()) {
+            input.forEach(v -> inputs.add(v.asText()));
+        } else {
+            inputs.add(input.asText());
+        }
+
+        List<Map<String, Object>> data = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            data.add(Map.of("object", "embedding", "index", i, "embedding", vector(inputs.get(i))));
+            tokens += Math.max(1, inputs.get(i).length() / 4);
+        }
+        json(exchange, 200, Map.of(
+                "object", "list",
+                "data", data,
+                "model", request.path("model").asText("stub"),
+                "usage", Map.of("prompt_tokens", tokens, "total_tokens", tokens)));
+    }
+
+    private static Map<String, Object> chunk(String model, List<Map<String, Object>> choices, Map<String, Object> usage) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", "chatcmpl-stub");
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", model);
+        chunk.put("choices", choices);
+        if (usage != null) {
+            chunk.put("usage", usage);
+        }
+        return chunk;
+    }
+
+    private static Map<String, Object> choice(Map<String, Object> delta, String finishReason) {
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return choice;
+    }
+
+    private static void event(OutputStream out, Object data) throws IOException {
+        out.write(("data: " + MAPPER.writeValueAsString(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private float[] vector(String text) {
+        SplittableRandom random = new SplittableRandom(text.hashCode());
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) (random.nextDouble() * 2 - 1);
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static String docId(int index) {
+        return "doc" + index;
+    }
+
+    /**
+     * 每个文档按 1 / churnPerMinute 分钟的周期错开更新，整体每分钟约有 churnPerMinute 比例的文档发生变化
+     */
+    private String modifiedTime(int index) {
+        if (churnPerMinute <= 0) {
+            return "1700000000";
+        }
+        long periodMinutes = Math.max(1, Math.round(1 / churnPerMinute));
+        long minute = System.currentTimeMillis() / 60000 + index;
+        return String.valueOf(minute / periodMinutes * periodMinutes * 60);
+    }
+
+    private static String text(SplittableRandom random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            int start = random.nextInt(TEXT.length());
+            builder.append(TEXT, start, Math.min(TEXT.length(), start + length - builder.length()));
+        }
+        return builder.toString();
+    }
+
+    private boolean fail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (uri.getRawQuery() == null) {
+            return query;
+        }
+        for (String pair : uri.getRawQuery().split("&")) {
+            int index = pair.indexOf('=');
+            if (index > 0) {
+                query.put(pair.substring(0, index), pair.substring(index + 1));
+            }
+        }
+        return query;
+    }
+
+    private static void json(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
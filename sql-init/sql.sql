@@ -6,12 +6,29 @@ create table base_conversation
 (
     id                bigserial,
     conversation_id   varchar(32) not null,
-    content           text,
+    content           bytea,
+    version           bigint       not null default 0,
     created_time      timestamp(6) not null,
     updated_time      timestamp(6) not null,
     title             varchar(512)
 );
 
+create table base_conversation_usage
+(
+    id                 bigserial,
+    conversation_id    varchar(32) not null,
+    model              varchar(64),
+    prompt_tokens      bigint,
+    completion_tokens  bigint,
+    cached_tokens      bigint,
+    first_token_millis bigint,
+    total_millis       bigint,
+    created_time       timestamp(6) not null,
+    updated_time       timestamp(6) not null
+);
+
+create index idx_conversation_usage_conversation_id on base_conversation_usage (conversation_id);
+
 create table base_doc
 (
     id              bigserial,
@@ -21,9 +38,167 @@ create table base_doc
     updated_time    timestamp(6) not null,
     doc_name        varchar(256),
     url             varchar(512),
-    vector_doc_id   varchar(40)
+    vector_doc_id   varchar(40),
+    source_id       varchar(64)  not null default 'default'
+);
+
+create index idx_doc_source_id on base_doc (source_id);
+
+-- 每个飞书数据源最近一次同步的状态
+create table base_sync_source
+(
+    id              bigserial,
+    source_id       varchar(64)  not null,
+    node_id         varchar(64)  not null,
+    status          varchar(16)  not null,
+    start_time      timestamp(6) not null,
+    end_time        timestamp(6),
+    doc_count       integer,
+    changed_count   integer,
+    error_message   varchar(1100),
+    created_time    timestamp(6) not null,
+    updated_time    timestamp(6) not null
+);
+
+create unique index uk_sync_source_source_id on base_sync_source (source_id);
+
+-- 列表版本号：文档同步、会话增删改时在同一事务中递增，作为列表接口的 ETag，多个实例共享
+create table base_listing_version
+(
+    listing      varchar(32)  not null primary key,
+    version      bigint       not null default 0,
+    updated_time timestamp(6) not null
 );
 
+-- 参与同步的实例心跳，存活实例组成一致性哈希环，数据源按哈希分配给实例
+create table base_sync_node
+(
+    id              bigserial,
+    node_id         varchar(64)  not null,
+    heartbeat_time  timestamp(6) not null,
+    created_time    timestamp(6) not null,
+    updated_time    timestamp(6) not null
+);
+
+create unique index uk_sync_node_node_id on base_sync_node (node_id);
+
+-- 文档分块：记录每个分块的 SimHash 指纹与实际使用的向量，内容相同的分块引用 canonical 分块的向量而不重新嵌入
+create table base_doc_chunk
+(
+    id              bigserial,
+    doc_id          varchar(40)  not null,
+    source_id       varchar(64),
+    chunk_index     integer      not null,
+    simhash         bigint       not null,
+    content_length  integer      not null,
+    vector_doc_id   varchar(40)  not null,
+    canonical       boolean      not null,
+    created_time    timestamp(6) not null,
+    updated_time    timestamp(6) not null
+);
+
+create index idx_doc_chunk_doc_id on base_doc_chunk (doc_id);
+
+create index idx_doc_chunk_vector_doc_id on base_doc_chunk (vector_doc_id);
+
+-- 向量写入发件箱：base_doc 变更时在同一事务中写入，由 VectorOutboxRelay 在事务外批量写入 / 删除向量
+-- 每个文档只保留一条待处理记录，重复变更合并为一条并递增 revision
+create table base_vector_outbox
+(
+    id                  bigserial,
+    doc_id              varchar(40)  not null,
+    source_id           varchar(64),
+    operation           varchar(16)  not null,
+    vector_doc_id       varchar(40),
+    stale_vector_doc_id varchar(40),
+    modified_time       varchar(20),
+    revision            bigint       not null default 0,
+    attempts            integer      not null default 0,
+    next_attempt_time   timestamp(6) not null,
+    lease_until         timestamp(6),
+    last_error          varchar(1100),
+    created_time        timestamp(6) not null,
+    updated_time        timestamp(6) not null
+);
+
+create unique index uk_vector_outbox_doc_id on base_vector_outbox (doc_id);
+
+create index idx_vector_outbox_next_attempt_time on base_vector_outbox (next_attempt_time);
+
+-- 旧版本 content 为 text 类型（JSON），升级时执行以下语句转换为 bytea，历史 JSON 数据仍可直接读取
+-- ALTER TABLE base_conversation ALTER COLUMN content TYPE bytea USING convert_to(content, 'UTF8');
+-- ALTER TABLE base_conversation ADD COLUMN version bigint not null default 0;
+-- 升级到多数据源时执行，已有文档归入 default 数据源
+-- ALTER TABLE base_doc ADD COLUMN source_id varchar(64) not null default 'default';
+-- 升级到只共用内容相同分块的向量时执行，已引用近似重复向量的文档需要通过 /api/doc/rebuild 重新写入
+-- ALTER TABLE base_doc_chunk DROP COLUMN band0, DROP COLUMN band1, DROP COLUMN band2, DROP COLUMN band3;
+-- 升级到批量任务租约时执行
+-- ALTER TABLE base_batch_job ADD COLUMN owner varchar(32);
+-- ALTER TABLE base_batch_job ADD COLUMN lease_until timestamp(6);
+-- 升级到本地文档快照时执行
+-- ALTER TABLE base_vector_outbox ADD COLUMN modified_time varchar(20);
+
+create table base_sync_run
+(
+    id                  bigserial,
+    trigger_type        varchar(16)  not null,
+    status              varchar(16)  not null,
+    start_time          timestamp(6) not null,
+    end_time            timestamp(6),
+    list_millis         bigint,
+    read_doc_millis     bigint,
+    embed_millis        bigint,
+    vector_store_millis bigint,
+    db_millis           bigint,
+    added_count         integer,
+    updated_count       integer,
+    deleted_count       integer,
+    skipped_count       integer,
+    failed_count        integer,
+    slowest_docs        text,
+    error_message       varchar(1100),
+    created_time        timestamp(6) not null,
+    updated_time        timestamp(6) not null
+);
+
+create index idx_sync_run_start_time on base_sync_run (start_time desc);
+
+create table base_batch_job
+(
+    id              bigserial,
+    job_id          varchar(32)  not null,
+    status          varchar(16)  not null,
+    parallelism     integer      not null,
+    budget_millis   bigint       not null,
+    total_count     integer      not null,
+    succeeded_count integer,
+    failed_count    integer,
+    owner           varchar(32),
+    lease_until     timestamp(6),
+    created_time    timestamp(6) not null,
+    updated_time    timestamp(6) not null
+);
+
+create unique index uk_batch_job_job_id on base_batch_job (job_id);
+
+create table base_batch_item
+(
+    id              bigserial,
+    job_id          varchar(32)  not null,
+    item_index      integer      not null,
+    question        text         not null,
+    conversation_id varchar(32),
+    status          varchar(16)  not null,
+    answer          text,
+    degradations    varchar(256),
+    error_message   varchar(1100),
+    elapsed_millis  bigint,
+    created_time    timestamp(6) not null,
+    updated_time    timestamp(6) not null
+);
+
+create unique index uk_batch_item_job_id_item_index on base_batch_item (job_id, item_index);
+
 CREATE EXTENSION IF NOT EXISTS vector;
 CREATE EXTENSION IF NOT EXISTS hstore;
 CREATE EXTENSION IF NOT EXISTS "uuid-ossp";
@@ -35,4 +210,15 @@ CREATE TABLE IF NOT EXISTS vector_store (
     embedding vector(384)
 );
 
-CREATE INDEX ON vector_store USING HNSW (embedding vector_cosine_ops);
+-- HNSW 参数显式写出（当前为 pgvector 默认值），调整时用 benchmark 模块的 VectorIndexSweep 扫描后替换为推荐配置
+CREATE INDEX ON vector_store USING HNSW (embedding vector_cosine_ops) WITH (m = 16, ef_construction = 64);
+
+-- 全文检索：与 HNSW 检索并行执行，结果按倒数排名融合（RRF）。默认的 simple 配置不会切分中文，
+-- 中文分词需要安装 zhparser 并创建 chinese 配置，再把下面的 'simple' 与 retrieval.lexical.text-search-config 一起改为 chinese：
+--   CREATE EXTENSION zhparser;
+--   CREATE TEXT SEARCH CONFIGURATION chinese (PARSER = zhparser);
+--   ALTER TEXT SEARCH CONFIGURATION chinese ADD MAPPING FOR n,v,a,i,e,l,j WITH simple;
+ALTER TABLE vector_store ADD COLUMN IF NOT EXISTS content_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', coalesce(content, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_vector_store_content_tsv ON vector_store USING GIN (content_tsv);
@@ -2,6 +2,9 @@ package com.xiaowu.advisor;
 
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
 
 /**
  * ChatMessageAdvisor 是对 Spring AI 提供的 MessageChatMemoryAdvisor 的一个简单封装。
@@ -9,6 +12,11 @@ import org.springframework.ai.chat.memory.ChatMemory;
  */
 public class ChatMessageAdvisor extends MessageChatMemoryAdvisor {
 
+    /**
+     * 读取的历史消息条数
+     */
+    public static final int HISTORY_SIZE = 4000;
+
     /**
      * 构造函数：创建一个带有上下文记忆功能的顾问，用于为 AI 聊天注入历史消息。
      *
@@ -17,6 +25,46 @@ public class ChatMessageAdvisor extends MessageChatMemoryAdvisor {
      */
     public ChatMessageAdvisor(ChatMemory chatMemory, String conversationId) {
         // 调用父类构造方法，并设置上下文 token 限制为 4000（例如 GPT-3.5 的 token 限制）
-        super(chatMemory, conversationId, 4000);
+        super(chatMemory, conversationId, HISTORY_SIZE);
+    }
+
+    /**
+     * 构造函数：历史消息已在对话准备阶段读取好，注入时不再查询；本会话的写回由调用方在本轮结束后
+     * 把问题与回复（包括被截断的回复）一次写入，顾问不再单独写入用户消息，
+     * 避免流被截断时只留下用户消息、下一轮出现连续两条用户消息。
+     *
+     * @param chatMemory     聊天上下文存储
+     * @param conversationId 当前对话的唯一标识 ID
+     * @param history        已读取的历史消息
+     */
+    public ChatMessageAdvisor(ChatMemory chatMemory, String conversationId, List<Message> history) {
+        this(new PrefetchedChatMemory(chatMemory, conversationId, history), conversationId);
+    }
+
+    /**
+     * 读取指定会话时直接返回已读取的历史消息，写入指定会话时忽略（由调用方写回），其余操作交给原存储
+     */
+    private record PrefetchedChatMemory(ChatMemory delegate, String conversationId,
+                                        List<Message> history) implements ChatMemory {
+
+        @Override
+        public void add(String conversationId, List<Message> messages) {
+            if (!this.conversationId.equals(conversationId)) {
+                delegate.add(conversationId, messages);
+            }
+        }
+
+        @Override
+        public List<Message> get(String conversationId, int lastN) {
+            if (!this.conversationId.equals(conversationId)) {
+                return delegate.get(conversationId, lastN);
+            }
+            return history.subList(Math.max(0, history.size() - lastN), history.size());
+        }
+
+        @Override
+        public void clear(String conversationId) {
+            delegate.clear(conversationId);
+        }
     }
 }
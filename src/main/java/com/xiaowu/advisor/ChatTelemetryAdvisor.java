@@ -0,0 +1,83 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.common.ChatTelemetry;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ChatTelemetryAdvisor 位于顾问链的最内层，紧贴模型调用，
+ * 记录模型调用的首 token 耗时、总耗时以及响应 usage 中的 token 用量。
+ * 会话 ID 从 advise context 的 chat_memory_conversation_id 参数中读取，模型路由从 chat_route 参数中读取。
+ */
+public class ChatTelemetryAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    // 在 PromptPrefixAdvisor 之后执行，只统计模型调用本身
+    private static final int ORDER = Ordered.LOWEST_PRECEDENCE - 500;
+
+    private final ChatTelemetry chatTelemetry;
+
+    public ChatTelemetryAdvisor(ChatTelemetry chatTelemetry) {
+        this.chatTelemetry = chatTelemetry;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        long start = System.nanoTime();
+        AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
+        // 非流式调用拿不到首 token 时间
+        chatTelemetry.recordModelCall(conversationId(advisedRequest), route(advisedRequest),
+                advisedResponse.response(), System.nanoTime() - start, -1);
+        return advisedResponse;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong firstToken = new AtomicLong(-1);
+            AtomicReference<ChatResponse> usageResponse = new AtomicReference<>();
+            return chain.nextAroundStream(advisedRequest)
+                    .doOnNext(advisedResponse -> {
+                        firstToken.compareAndSet(-1, System.nanoTime() - start);
+                        if (ChatTelemetry.hasUsage(advisedResponse.response())) {
+                            usageResponse.set(advisedResponse.response());
+                        }
+                    })
+                    // 流在模型客户端的事件循环线程上结束，用量写库由 ChatTelemetry 交给弹性线程池执行
+                    .doOnComplete(() -> chatTelemetry.recordModelCall(conversationId(advisedRequest),
+                            route(advisedRequest), usageResponse.get(), System.nanoTime() - start, firstToken.get()));
+        });
+    }
+
+    private static String conversationId(AdvisedRequest advisedRequest) {
+        Object conversationId = advisedRequest.adviseContext()
+                .get(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return conversationId == null ? null : conversationId.toString();
+    }
+
+    private static String route(AdvisedRequest advisedRequest) {
+        Object route = advisedRequest.adviseContext().get(ModelRoutingAdvisor.CHAT_ROUTE);
+        return route == null ? null : route.toString();
+    }
+}
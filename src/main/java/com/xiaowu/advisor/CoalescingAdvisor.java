@@ -0,0 +1,183 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.config.CoalescingConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CoalescingAdvisor 把同时进行中的相同请求合并为一次模型调用（single-flight）。
+ * <p>
+ * 位于 PromptPrefixAdvisor 之后，此时提示词已经组装完成：末尾的用户消息包含排好序的参考资料和问题。
+ * 合并 key 由模型、温度以及发给模型的全部消息（系统提示词、历史消息、参考资料与问题）计算，
+ * 只有模型看到的上下文完全相同的请求才会合并，不同会话的回复不会互相串用；实际能合并的主要是没有历史的首轮问题。
+ * <p>
+ * 第一个请求真正调用模型，它开始后 window 时间内到达的相同请求直接等待并复用同一结果；流式请求共享同一个缓存的 Flux，
+ * 晚到的订阅者会先收到已生成的分片。调用结束（完成或失败）后立即移除，超过合并窗口仍未结束的调用也不再接收新的请求，
+ * 之后的相同请求重新调用模型，不会拿到缓存的旧回答。每个请求收到的响应都换成自己的 advise context，
+ * 保证记忆顾问把回复写回各自的会话。节省的调用次数记录到 chat.coalesced 计数器。
+ */
+public class CoalescingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    // 在 PromptPrefixAdvisor 之后、ChatTelemetryAdvisor 之前执行
+    private static final int ORDER = Ordered.LOWEST_PRECEDENCE - 750;
+
+    private final CoalescingConfig coalescingConfig;
+
+    private final MeterRegistry meterRegistry;
+
+    // 非流式调用：合并 key -> 进行中的调用
+    private final ConcurrentMap<String, Flight<CompletableFuture<AdvisedResponse>>> calls = new ConcurrentHashMap<>();
+
+    // 流式调用：合并 key -> 进行中的共享响应流
+    private final ConcurrentMap<String, Flight<Flux<AdvisedResponse>>> streams = new ConcurrentHashMap<>();
+
+    public CoalescingAdvisor(CoalescingConfig coalescingConfig, MeterRegistry meterRegistry) {
+        this.coalescingConfig = coalescingConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        if (!coalescingConfig.isEnabled()) {
+            return chain.nextAroundCall(advisedRequest);
+        }
+        String key = key(advisedRequest);
+        Flight<CompletableFuture<AdvisedResponse>> created = new Flight<>(new CompletableFuture<>(), System.nanoTime());
+        Flight<CompletableFuture<AdvisedResponse>> call = calls.compute(key,
+                (k, current) -> current != null && joinable(current) ? current : created);
+        if (call == created) {
+            // 当前请求是第一个，负责真正调用模型；调用结束后移除，只合并进行中的调用
+            try {
+                created.value().complete(chain.nextAroundCall(advisedRequest));
+            } catch (RuntimeException e) {
+                created.value().completeExceptionally(e);
+            } finally {
+                calls.remove(key, created);
+            }
+        } else {
+            saved("call");
+        }
+        try {
+            return withContext(call.value().join(), advisedRequest);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        if (!coalescingConfig.isEnabled()) {
+            return chain.nextAroundStream(advisedRequest);
+        }
+        return Flux.defer(() -> {
+            String key = key(advisedRequest);
+            AtomicBoolean leader = new AtomicBoolean();
+            Flight<Flux<AdvisedResponse>> stream = streams.compute(key, (k, current) -> {
+                if (current != null && joinable(current)) {
+                    return current;
+                }
+                leader.set(true);
+                // cache() 只订阅一次上游，并把所有分片重放给后续订阅者；
+                // 上游结束（完成或失败）时移除，之后的相同请求不再复用。cache() 不会向上游传递取消，
+                // 第一个请求中途取消时其他请求仍能收到完整回复
+                AtomicReference<Flight<Flux<AdvisedResponse>>> self = new AtomicReference<>();
+                Flight<Flux<AdvisedResponse>> flight = new Flight<>(Flux.defer(() -> chain.nextAroundStream(advisedRequest))
+                        .doFinally(signal -> streams.remove(k, self.get()))
+                        .cache(), System.nanoTime());
+                self.set(flight);
+                return flight;
+            });
+            if (!leader.get()) {
+                saved("stream");
+            }
+            return stream.value().map(advisedResponse -> withContext(advisedResponse, advisedRequest));
+        });
+    }
+
+    /**
+     * 调用开始后是否仍在合并窗口内
+     */
+    private boolean joinable(Flight<?> flight) {
+        return System.nanoTime() - flight.startNanos() <= coalescingConfig.getWindow().toNanos();
+    }
+
+    /**
+     * 合并 key：模型、温度、系统提示词、全部历史消息以及归一化后的用户消息（参考资料与问题）的 SHA-256
+     */
+    private String key(AdvisedRequest request) {
+        StringBuilder builder = new StringBuilder();
+        if (request.chatOptions() instanceof ChatOptions options) {
+            builder.append(options.getModel()).append('\u0000')
+                    .append(options.getTemperature()).append('\u0000');
+        }
+        builder.append(normalize(request.systemText())).append('\u0000');
+        for (Message message : request.messages()) {
+            // 消息类型一并计入，同样的文本作为问题或回复时上下文不同
+            builder.append(message.getMessageType()).append(':')
+                    .append(normalize(message.getText())).append('\u0000');
+        }
+        builder.append(normalize(request.userText()));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 合并空白字符并转小写，让仅有大小写、空格差异的问题也能合并
+     */
+    private static String normalize(String text) {
+        return text == null ? "" : text.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 把共享的响应换成当前请求自己的 advise context
+     */
+    private static AdvisedResponse withContext(AdvisedResponse advisedResponse, AdvisedRequest request) {
+        return new AdvisedResponse(advisedResponse.response(), request.adviseContext());
+    }
+
+    private void saved(String mode) {
+        meterRegistry.counter("chat.coalesced", "mode", mode).increment();
+    }
+
+    /**
+     * 进行中的调用及其开始时间
+     */
+    private record Flight<T>(T value, long startNanos) {
+    }
+}
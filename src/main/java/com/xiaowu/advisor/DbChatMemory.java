@@ -1,18 +1,27 @@
 package com.xiaowu.advisor;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.fasterxml.jackson.core.type.TypeReference;
-
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.common.ChatDeadline.Degradation;
+import com.xiaowu.common.ChatTelemetry;
+import com.xiaowu.common.ChatTelemetry.Stage;
+import com.xiaowu.common.ConversationCodec;
+import com.xiaowu.common.ListingEtagCache;
+import com.xiaowu.common.ListingEtagCache.Listing;
 import com.xiaowu.common.MessageWrapper;
 import com.xiaowu.entity.po.BaseConversation;
 import com.xiaowu.service.MpConversationService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,53 +32,134 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DbChatMemory implements ChatMemory {
 
+    // 乐观锁冲突时的最大重试次数
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+
     // 会话服务对象，用于操作数据库中的会话数据
     private final MpConversationService conversationService;
 
+    // 会话列表的版本号缓存，删除会话后递增版本号
+    private final ListingEtagCache listingEtagCache;
+
+    // 会话内容编解码器
+    private final ConversationCodec conversationCodec;
+
+    // 指标注册表，用于记录乐观锁冲突次数
+    private final MeterRegistry meterRegistry;
+
+    // 对话链路耗时统计，记录历史消息读取与写回的耗时
+    private final ChatTelemetry chatTelemetry;
+
+    // 事务管理器，用于给受时间预算约束的历史查询设置超时
+    private final PlatformTransactionManager transactionManager;
+
     /**
-     * 向指定 conversationId 的对话中添加消息列表
+     * 向指定 conversationId 的对话中添加消息列表。
+     * 读-改-写基于 version 字段做乐观并发控制：写入时校验版本号，被其他请求抢先更新则重新读取后重试，
+     * 保证并发写入同一会话（包括多实例部署）时不会丢失消息。
      * @param conversationId 会话ID
      * @param messages 要添加的消息列表
      */
     @Override
     public void add(String conversationId, List<Message> messages) {
-        // 查询当前会话数据
-        BaseConversation baseConversation = conversationService.getOneOpt(
+        chatTelemetry.time(Stage.MEMORY_PERSIST, () -> {
+            doAdd(conversationId, messages);
+            return null;
+        });
+    }
+
+    private void doAdd(String conversationId, List<Message> messages) {
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            // 查询当前会话数据
+            BaseConversation baseConversation = conversationService.getOneOpt(
+                    new LambdaQueryWrapper<BaseConversation>()
+                        .eq(BaseConversation::getConversationId, conversationId))
+                .orElseThrow(() -> new RuntimeException(
+                    "can not find the conversation , conversation id is %s".formatted(conversationId)));
+
+            // 获取已存在的消息并追加新的消息
+            List<Message> savedMessages = convert(baseConversation);
+            savedMessages.addAll(messages);
+
+            // 序列化保存到数据库中，仅当版本号未被修改时才更新成功
+            long version = baseConversation.getVersion() == null ? 0L : baseConversation.getVersion();
+            boolean updated = conversationService.update(
+                BaseConversation.builder()
+                    .content(conversationCodec.encode(
+                        savedMessages.stream().map(MessageWrapper::new).toList()))
+                    .version(version + 1)
+                    .build(),
                 new LambdaQueryWrapper<BaseConversation>()
-                    .eq(BaseConversation::getConversationId, conversationId))
-            .orElseThrow(() -> new RuntimeException(
-                "can not find the conversation , conversation id is %s".formatted(conversationId)));
-
-        // 获取已存在的消息并追加新的消息
-        List<Message> savedMessages = convert(baseConversation);
-        savedMessages.addAll(messages);
-
-        // 序列化保存到数据库中
-        conversationService.update(
-            BaseConversation.builder()
-                .content(MessageWrapper.toConversationStr(
-                    savedMessages.stream().map(MessageWrapper::new).toList()))
-                .build(),
-            new LambdaQueryWrapper<BaseConversation>()
-                .eq(BaseConversation::getConversationId, conversationId)
-        );
+                    .eq(BaseConversation::getConversationId, conversationId)
+                    .eq(BaseConversation::getVersion, version)
+            );
+            if (updated) {
+                return;
+            }
+            meterRegistry.counter("conversation.memory.update.conflict").increment();
+        }
+        throw new RuntimeException(
+            "failed to update the conversation after %d attempts, conversation id is %s"
+                .formatted(MAX_UPDATE_ATTEMPTS, conversationId));
     }
 
     /**
-     * 获取指定 conversationId 的最近 N 条消息
+     * 获取指定 conversationId 的最近 N 条消息。
+     * 本轮对话有时间预算时，查询超时取剩余时间，超时则本轮不带历史继续对话。
      * @param conversationId 会话ID
      * @param lastN 获取的消息条数
      * @return 消息列表
      */
     @Override
     public List<Message> get(String conversationId, int lastN) {
+        ChatDeadline deadline = ChatDeadline.of(conversationId);
+        if (!deadline.bounded()) {
+            return chatTelemetry.time(Stage.MEMORY_LOAD, () -> load(conversationId, lastN));
+        }
+
+        // 事务超时会作为查询超时应用到事务内的 SQL
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.setTimeout(deadline.timeoutSeconds());
+        try {
+            return chatTelemetry.time(Stage.MEMORY_LOAD,
+                () -> transactionTemplate.execute(status -> load(conversationId, lastN)));
+        } catch (QueryTimeoutException | TransactionTimedOutException e) {
+            deadline.degrade(Degradation.SKIP_HISTORY);
+            return List.of();
+        }
+    }
+
+    private List<Message> load(String conversationId, int lastN) {
         return conversationService.getOneOpt(
                 new LambdaQueryWrapper<BaseConversation>()
                     .eq(BaseConversation::getConversationId, conversationId))
-            .map(v -> convert(v).stream().limit(lastN).toList())
+            .map(v -> window(convert(v), lastN))
             .orElse(List.of()); // 如果未找到会话则返回空列表
     }
 
+    /**
+     * 截取最近的消息窗口。
+     * 超出 lastN 时按 lastN / 4 的整块丢弃最早的消息，并从用户消息处开始，
+     * 这样窗口起点不会每轮都移动，多轮对话之间的提示词前缀可以保持一致（利于服务商前缀缓存）。
+     * @param messages 全部消息
+     * @param lastN 最多保留的消息条数
+     * @return 窗口内的消息
+     */
+    static List<Message> window(List<Message> messages, int lastN) {
+        int overflow = messages.size() - lastN;
+        if (overflow <= 0) {
+            return messages;
+        }
+        int block = Math.max(1, lastN / 4);
+        int from = Math.min(messages.size(), (overflow + block - 1) / block * block);
+        // 从用户消息开始，避免窗口以孤立的助手回复开头
+        while (from < messages.size() && messages.get(from).getMessageType() != MessageType.USER) {
+            from++;
+        }
+        return messages.subList(from, messages.size());
+    }
+
     /**
      * 清除指定 conversationId 的会话记录（物理删除）
      * @param conversationId 会话ID
@@ -79,19 +169,17 @@ public class DbChatMemory implements ChatMemory {
         conversationService.remove(
             new LambdaQueryWrapper<BaseConversation>()
                 .eq(BaseConversation::getConversationId, conversationId));
+        listingEtagCache.bump(Listing.CONVERSATION);
     }
 
     /**
-     * 将 BaseConversation 中的 JSON 字符串转换为 Message 对象列表
+     * 将 BaseConversation 中编码后的内容转换为 Message 对象列表
      * @param conversation 会话实体
      * @return 消息对象列表
      */
     private List<Message> convert(BaseConversation conversation) {
-        if (!StringUtils.hasText(conversation.getContent())) {
-            return new ArrayList<>();
-        }
-        // 反序列化为 MessageWrapper，再转换为 Message 对象
-        return MessageWrapper.fromConversationStr(conversation.getContent()).stream()
+        // 反序列化为 MessageWrapper，再转换为 Message 对象（内容为空时得到空列表）
+        return conversationCodec.decode(conversation.getContent()).stream()
             .map(MessageWrapper::toMessage)
             .collect(Collectors.toList());
     }
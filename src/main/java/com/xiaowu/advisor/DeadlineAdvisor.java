@@ -0,0 +1,72 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.common.ChatDeadline.Degradation;
+import com.xiaowu.config.ChatDeadlineConfig;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * DeadlineAdvisor 在检索之后、组装提示词之前检查本轮对话的剩余时间，
+ * 剩余时间不足时只保留最近的少量历史消息（从用户消息开始），缩短提示词以加快模型响应。
+ */
+public class DeadlineAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    // 在 RetrievalAdvisor 之后、PromptPrefixAdvisor 之前执行
+    private static final int ORDER = Ordered.LOWEST_PRECEDENCE - 1250;
+
+    private final ChatDeadlineConfig chatDeadlineConfig;
+
+    public DeadlineAdvisor(ChatDeadlineConfig chatDeadlineConfig) {
+        this.chatDeadlineConfig = chatDeadlineConfig;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(shrink(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return Flux.defer(() -> chain.nextAroundStream(shrink(advisedRequest)));
+    }
+
+    private AdvisedRequest shrink(AdvisedRequest request) {
+        ChatDeadline deadline = ChatDeadline.of(request.adviseContext());
+        List<Message> messages = request.messages();
+        int keep = chatDeadlineConfig.getShrinkHistoryTo();
+        if (!deadline.below(chatDeadlineConfig.getShrinkHistoryBelow()) || messages.size() <= keep) {
+            return request;
+        }
+
+        int from = messages.size() - keep;
+        // 从用户消息开始，避免以孤立的助手回复开头
+        while (from < messages.size() && messages.get(from).getMessageType() != MessageType.USER) {
+            from++;
+        }
+        deadline.degrade(Degradation.SHRINK_HISTORY);
+        return AdvisedRequest.from(request)
+                .messages(messages.subList(from, messages.size()))
+                .build();
+    }
+}
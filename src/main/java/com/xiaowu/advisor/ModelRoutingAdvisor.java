@@ -0,0 +1,137 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.config.ModelRoutingConfig;
+import com.xiaowu.config.ModelRoutingConfig.Route;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ModelRoutingAdvisor 根据廉价的信号为每个请求选择模型：问题长度、检索到的参考资料长度、
+ * 对话深度（历史消息条数），以及可选的本地关键词分类器。
+ * <p>
+ * 按配置顺序匹配第一个满足全部条件的路由，把该路由的模型写入本次请求的选项；
+ * 没有路由匹配时使用默认模型。选中的路由名称写入 advise context 的 chat_route，
+ * 由 ChatTelemetryAdvisor 按路由记录耗时与 token 用量。
+ */
+public class ModelRoutingAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 选中的路由名称在 advise context 中的 key
+     */
+    public static final String CHAT_ROUTE = "chat_route";
+
+    // 在检索与历史缩减之后执行（依赖它们的结果），在请求合并之前执行（合并 key 包含模型）
+    private static final int ORDER = Ordered.LOWEST_PRECEDENCE - 1100;
+
+    private final ModelRoutingConfig modelRoutingConfig;
+
+    public ModelRoutingAdvisor(ModelRoutingConfig modelRoutingConfig) {
+        this.modelRoutingConfig = modelRoutingConfig;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(route(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return Flux.defer(() -> chain.nextAroundStream(route(advisedRequest)));
+    }
+
+    private AdvisedRequest route(AdvisedRequest request) {
+        Route route = modelRoutingConfig.isEnabled() ? select(request) : null;
+
+        Map<String, Object> context = new HashMap<>(request.adviseContext());
+        context.put(CHAT_ROUTE, route == null ? modelRoutingConfig.getDefaultRoute() : route.getName());
+        AdvisedRequest.Builder builder = AdvisedRequest.from(request).adviseContext(context);
+
+        // 只覆盖模型，温度、流式 usage 等其他选项沿用默认配置
+        if (route != null && request.chatOptions() instanceof OpenAiChatOptions options) {
+            OpenAiChatOptions routed = options.copy();
+            routed.setModel(route.getModel());
+            builder.chatOptions(routed);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 按顺序找到第一个满足全部条件的路由
+     */
+    private Route select(AdvisedRequest request) {
+        String question = request.userText() == null ? "" : request.userText().strip();
+        int contextChars = contextChars(request);
+        int historyMessages = request.messages().size();
+        // 分类器只在有路由需要时才计算
+        Boolean simple = null;
+
+        for (Route route : modelRoutingConfig.getRoutes()) {
+            if (exceeds(question.length(), route.getMaxQuestionChars())
+                    || exceeds(contextChars, route.getMaxContextChars())
+                    || exceeds(historyMessages, route.getMaxHistoryMessages())) {
+                continue;
+            }
+            if (route.isRequireSimple() && modelRoutingConfig.isClassifierEnabled()) {
+                if (simple == null) {
+                    simple = isSimple(question);
+                }
+                if (!simple) {
+                    continue;
+                }
+            }
+            return route;
+        }
+        return null;
+    }
+
+    /**
+     * 本地关键词分类器：包含分析类关键词或同时提了多个问题时认为不是简单问题
+     */
+    private boolean isSimple(String question) {
+        String lower = question.toLowerCase(Locale.ROOT);
+        if (modelRoutingConfig.getComplexKeywords().stream()
+                .anyMatch(keyword -> lower.contains(keyword.toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+        long questionMarks = lower.chars().filter(c -> c == '?' || c == '？').count();
+        return questionMarks <= 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int contextChars(AdvisedRequest request) {
+        Object retrieved = request.adviseContext().get(PromptPrefixAdvisor.RETRIEVED_DOCUMENTS);
+        if (!(retrieved instanceof List<?> documents)) {
+            return 0;
+        }
+        return ((List<Document>) documents).stream()
+                .mapToInt(document -> document.getText() == null ? 0 : document.getText().length())
+                .sum();
+    }
+
+    private static boolean exceeds(int value, int limit) {
+        return limit > 0 && value > limit;
+    }
+}
@@ -0,0 +1,120 @@
+package com.xiaowu.advisor;
+
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.document.Document;
+import org.springframework.core.Ordered;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PromptPrefixAdvisor 负责按固定顺序组装最终发送给模型的消息，使多轮对话的提示词前缀保持字节级一致，
+ * 从而命中 DeepSeek 等服务商的前缀缓存（缓存命中的 token 计费更低、首 token 更快）。
+ * <p>
+ * 组装顺序固定为：系统提示词 → 历史消息（只追加）→ 本轮检索到的参考资料 + 用户问题。
+ * 默认情况下 Spring AI 会把系统提示词放在历史消息之后，导致每轮对话前缀都不同，这里统一移到最前面；
+ * 每轮都会变化的检索内容放在最末尾，并按文档 ID 排序、统一换行格式，保证同样的内容生成同样的文本。
+ * <p>
+ * 缓存命中的 token 数由 ChatTelemetryAdvisor 从响应 usage 中读取并记录。
+ */
+public class PromptPrefixAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 检索到的参考资料在 advise context 中的 key，值为 List&lt;Document&gt;
+     */
+    public static final String RETRIEVED_DOCUMENTS = "retrieved_documents";
+
+    // 在记忆、检索等修改提示词的顾问之后执行，尽量靠近模型调用
+    private static final int ORDER = Ordered.LOWEST_PRECEDENCE - 1000;
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(assemble(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return chain.nextAroundStream(assemble(advisedRequest));
+    }
+
+    /**
+     * 按固定顺序重新组装请求
+     */
+    private AdvisedRequest assemble(AdvisedRequest request) {
+        List<Message> messages = new ArrayList<>();
+
+        // 1. 系统提示词放在最前面，内容在进程生命周期内保持不变
+        String systemText = request.systemText();
+        if (StringUtils.hasText(systemText)) {
+            if (!CollectionUtils.isEmpty(request.systemParams())) {
+                systemText = new PromptTemplate(systemText, request.systemParams()).render();
+            }
+            messages.add(new SystemMessage(normalize(systemText)));
+        }
+
+        // 2. 历史消息，只会在末尾追加，前面的部分每轮保持一致
+        messages.addAll(request.messages());
+
+        // 3. 易变内容（参考资料 + 本轮问题）放在最后
+        return AdvisedRequest.from(request)
+                .systemText("")
+                .systemParams(Map.of())
+                .messages(messages)
+                .userText(tail(request))
+                .build();
+    }
+
+    /**
+     * 生成末尾的用户消息：有参考资料时按文档 ID 排序后编号拼接，再附上用户问题
+     */
+    @SuppressWarnings("unchecked")
+    private String tail(AdvisedRequest request) {
+        String userText = normalize(request.userText());
+        Object retrieved = request.adviseContext().get(RETRIEVED_DOCUMENTS);
+        if (!(retrieved instanceof List<?> documents) || documents.isEmpty()) {
+            return userText;
+        }
+
+        List<Document> sorted = ((List<Document>) documents).stream()
+                .sorted(Comparator.comparing(Document::getId))
+                .toList();
+
+        StringBuilder builder = new StringBuilder("参考资料：\n");
+        for (int i = 0; i < sorted.size(); i++) {
+            builder.append('[').append(i + 1).append("] ")
+                    .append(normalize(sorted.get(i).getText()))
+                    .append("\n\n");
+        }
+        return builder.append("问题：").append(userText).toString();
+    }
+
+    /**
+     * 统一换行符并去掉首尾空白，避免格式差异破坏前缀一致性
+     */
+    private static String normalize(String text) {
+        return text == null ? "" : text.replace("\r\n", "\n").strip();
+    }
+}
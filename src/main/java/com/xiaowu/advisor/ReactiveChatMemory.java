@@ -0,0 +1,145 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.common.ChatDeadline.Degradation;
+import com.xiaowu.common.ChatTelemetry;
+import com.xiaowu.common.ChatTelemetry.Stage;
+import com.xiaowu.common.ConversationCodec;
+import com.xiaowu.common.MessageWrapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * 基于 R2DBC 的非阻塞会话存储，供响应式对话链路使用，与 DbChatMemory 读写同一张 base_conversation 表、同一种编码。
+ * <p>
+ * Spring AI 的 ChatMemory 接口是阻塞的，因此这里直接返回 Mono，由 ReactiveChatMemoryAdvisor 组装到对话流中；
+ * 写入同样基于 version 字段做乐观并发控制，冲突时重新读取后重试。
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat", name = "stack", havingValue = "reactive")
+@RequiredArgsConstructor
+public class ReactiveChatMemory {
+
+    // 乐观锁冲突时的最大重试次数
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+
+    // 响应式数据库客户端，见 ReactiveChatConfig
+    private final DatabaseClient chatDatabaseClient;
+
+    // 会话内容编解码器
+    private final ConversationCodec conversationCodec;
+
+    // 指标注册表，用于记录乐观锁冲突次数
+    private final MeterRegistry meterRegistry;
+
+    // 对话链路耗时统计，记录历史消息读取与写回的耗时
+    private final ChatTelemetry chatTelemetry;
+
+    /**
+     * 获取指定会话的最近 N 条消息。
+     * 本轮对话有时间预算时，读取超过剩余时间则本轮不带历史继续对话。
+     *
+     * @param conversationId 会话ID
+     * @param lastN          获取的消息条数
+     * @return 消息列表，会话不存在时为空列表
+     */
+    public Mono<List<Message>> get(String conversationId, int lastN) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<List<Message>> history = select(conversationId)
+                    .map(snapshot -> DbChatMemory.window(convert(snapshot.content()), lastN))
+                    .defaultIfEmpty(List.of())
+                    .doFinally(signal -> chatTelemetry.record(Stage.MEMORY_LOAD, System.nanoTime() - start));
+
+            ChatDeadline deadline = ChatDeadline.of(conversationId);
+            if (!deadline.bounded()) {
+                return history;
+            }
+            return history.timeout(deadline.remaining())
+                    .onErrorResume(TimeoutException.class, e -> {
+                        deadline.degrade(Degradation.SKIP_HISTORY);
+                        return Mono.just(List.of());
+                    });
+        });
+    }
+
+    /**
+     * 向指定会话追加消息
+     *
+     * @param conversationId 会话ID
+     * @param messages       要添加的消息列表
+     * @return 写入完成信号
+     */
+    public Mono<Void> add(String conversationId, List<Message> messages) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return update(conversationId, messages, 1)
+                    .doFinally(signal -> chatTelemetry.record(Stage.MEMORY_PERSIST, System.nanoTime() - start));
+        });
+    }
+
+    private Mono<Void> update(String conversationId, List<Message> messages, int attempt) {
+        return select(conversationId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException(
+                        "can not find the conversation , conversation id is %s".formatted(conversationId))))
+                .flatMap(snapshot -> {
+                    // 获取已存在的消息并追加新的消息，仅当版本号未被修改时才更新成功
+                    List<Message> savedMessages = convert(snapshot.content());
+                    savedMessages.addAll(messages);
+                    return chatDatabaseClient.sql("""
+                                    update base_conversation
+                                    set content = :content, version = :next, updated_time = localtimestamp
+                                    where conversation_id = :conversationId and version = :version""")
+                            .bind("content", conversationCodec.encode(
+                                    savedMessages.stream().map(MessageWrapper::new).toList()))
+                            .bind("next", snapshot.version() + 1)
+                            .bind("conversationId", conversationId)
+                            .bind("version", snapshot.version())
+                            .fetch()
+                            .rowsUpdated();
+                })
+                .flatMap(updated -> {
+                    if (updated > 0) {
+                        return Mono.empty();
+                    }
+                    meterRegistry.counter("conversation.memory.update.conflict").increment();
+                    if (attempt >= MAX_UPDATE_ATTEMPTS) {
+                        return Mono.error(new RuntimeException(
+                                "failed to update the conversation after %d attempts, conversation id is %s"
+                                        .formatted(MAX_UPDATE_ATTEMPTS, conversationId)));
+                    }
+                    return update(conversationId, messages, attempt + 1);
+                });
+    }
+
+    private Mono<Snapshot> select(String conversationId) {
+        return chatDatabaseClient.sql("select content, version from base_conversation where conversation_id = :conversationId")
+                .bind("conversationId", conversationId)
+                .map((row, metadata) -> new Snapshot(row.get("content", byte[].class), row.get("version", Long.class)))
+                .first();
+    }
+
+    /**
+     * 将编码后的会话内容转换为可修改的消息列表
+     */
+    private List<Message> convert(byte[] content) {
+        return conversationCodec.decode(content).stream()
+                .map(MessageWrapper::toMessage)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 读取到的会话内容与版本号
+     */
+    private record Snapshot(byte[] content, long version) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.xiaowu.advisor;
+
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReactiveChatMemoryAdvisor 是响应式链路中 ChatMessageAdvisor 的替代：
+ * 通过 ReactiveChatMemory 非阻塞地读取历史消息拼到本轮消息之前，模型回复完成后把本轮问答一起写回。
+ * MessageChatMemoryAdvisor 调用的是阻塞的 ChatMemory，会在弹性线程池上占用一个线程，这里不会。
+ * 会话 ID 从 advise context 的 chat_memory_conversation_id 参数中读取，只支持流式调用。
+ */
+public class ReactiveChatMemoryAdvisor implements StreamAroundAdvisor {
+
+    // 与 MessageChatMemoryAdvisor 的默认顺序一致，位于顾问链最外层
+    private static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 1000;
+
+    private final ReactiveChatMemory chatMemory;
+
+    public ReactiveChatMemoryAdvisor(ReactiveChatMemory chatMemory) {
+        this.chatMemory = chatMemory;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        String conversationId = advisedRequest.adviseContext()
+                .get(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY).toString();
+        return chatMemory.get(conversationId, ChatMessageAdvisor.HISTORY_SIZE)
+                // 后续的检索顾问包含阻塞调用，切换到弹性线程池执行，避免阻塞 R2DBC 的事件循环线程
+                .publishOn(Schedulers.boundedElastic())
+                .flatMapMany(history -> {
+                    List<Message> messages = new ArrayList<>(history);
+                    messages.addAll(advisedRequest.messages());
+                    StringBuilder answer = new StringBuilder();
+                    return chain.nextAroundStream(AdvisedRequest.from(advisedRequest).messages(messages).build())
+                            .doOnNext(advisedResponse -> answer.append(text(advisedResponse.response())))
+                            // 回复完整结束后再写回，被截断或出错的轮次不写入历史
+                            .concatWith(Mono.defer(() -> chatMemory.add(conversationId, List.of(
+                                    new UserMessage(advisedRequest.userText()),
+                                    new AssistantMessage(answer.toString())))).then(Mono.empty()));
+                });
+    }
+
+    private static String text(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput().getText() == null) {
+            return "";
+        }
+        return response.getResult().getOutput().getText();
+    }
+}
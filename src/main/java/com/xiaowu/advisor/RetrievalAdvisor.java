@@ -0,0 +1,128 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.common.ChatDeadline.Degradation;
+import com.xiaowu.common.ChatTelemetry;
+import com.xiaowu.common.ChatTelemetry.Stage;
+import com.xiaowu.common.SearchProfile;
+import com.xiaowu.config.ChatDeadlineConfig;
+import com.xiaowu.config.RetrievalConfig;
+import com.xiaowu.service.RetrievalService;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.document.Document;
+import org.springframework.core.Ordered;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionTimedOutException;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RetrievalAdvisor 根据用户问题检索知识库，把结果放入 advise context 的 retrieved_documents，
+ * 由 PromptPrefixAdvisor 拼接到提示词末尾。
+ * 检索参数名称从 advise context 的 search_profile 参数中读取，未指定时使用默认配置；
+ * advise context 中已有 retrieved_documents（对话准备阶段已并行检索）时不再检索。
+ * <p>
+ * 检索受本轮对话的时间预算约束：剩余时间不足时缩小 ef_search 并关闭自适应扩大，
+ * 更少时直接跳过检索；检索查询本身的超时也取自剩余时间，超时按跳过检索处理。
+ */
+public class RetrievalAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 检索参数名称在 advise context 中的 key
+     */
+    public static final String SEARCH_PROFILE = "search_profile";
+
+    // 在记忆顾问之后、PromptPrefixAdvisor 之前执行
+    private static final int ORDER = Ordered.LOWEST_PRECEDENCE - 1500;
+
+    private final RetrievalService retrievalService;
+
+    private final RetrievalConfig retrievalConfig;
+
+    private final ChatDeadlineConfig chatDeadlineConfig;
+
+    private final ChatTelemetry chatTelemetry;
+
+    public RetrievalAdvisor(RetrievalService retrievalService, RetrievalConfig retrievalConfig,
+                            ChatDeadlineConfig chatDeadlineConfig, ChatTelemetry chatTelemetry) {
+        this.retrievalService = retrievalService;
+        this.retrievalConfig = retrievalConfig;
+        this.chatDeadlineConfig = chatDeadlineConfig;
+        this.chatTelemetry = chatTelemetry;
+    }
+
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        return chain.nextAroundCall(retrieve(advisedRequest));
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        return Flux.defer(() -> chain.nextAroundStream(retrieve(advisedRequest)));
+    }
+
+    private AdvisedRequest retrieve(AdvisedRequest request) {
+        // 对话准备阶段已经与历史消息并行检索过
+        if (request.adviseContext().containsKey(PromptPrefixAdvisor.RETRIEVED_DOCUMENTS)) {
+            return request;
+        }
+
+        Object profileName = request.adviseContext().get(SEARCH_PROFILE);
+        List<Document> documents = search(request.userText(),
+                profileName == null ? null : profileName.toString(), ChatDeadline.of(request.adviseContext()));
+
+        Map<String, Object> context = new HashMap<>(request.adviseContext());
+        context.put(PromptPrefixAdvisor.RETRIEVED_DOCUMENTS, documents);
+        return AdvisedRequest.from(request)
+                .adviseContext(context)
+                .build();
+    }
+
+    /**
+     * 在时间预算内检索知识库
+     *
+     * @param query       用户问题
+     * @param profileName 检索参数名称，为空时使用默认配置
+     * @param deadline    本轮对话的截止时间
+     * @return 检索到的文档，跳过检索时为空列表
+     */
+    public List<Document> search(String query, String profileName, ChatDeadline deadline) {
+        if (deadline.below(chatDeadlineConfig.getSkipRetrievalBelow())) {
+            deadline.degrade(Degradation.SKIP_RETRIEVAL);
+            return List.of();
+        }
+
+        SearchProfile profile = retrievalConfig.profile(profileName);
+        if (deadline.below(chatDeadlineConfig.getReduceSearchBelow())) {
+            profile = profile.reduced();
+            deadline.degrade(Degradation.REDUCED_SEARCH);
+        }
+
+        SearchProfile searchProfile = profile;
+        try {
+            return chatTelemetry.time(Stage.RETRIEVAL, () -> retrievalService.search(
+                    query, searchProfile, deadline.bounded() ? deadline.timeoutSeconds() : -1));
+        } catch (QueryTimeoutException | TransactionTimedOutException e) {
+            deadline.degrade(Degradation.SKIP_RETRIEVAL);
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.xiaowu.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Data;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 模型调用的自适应并发限制器（AIMD），带 INTERACTIVE / BACKGROUND 两个优先级通道。
+ * <p>
+ * 并发上限随调用结果调整：调用成功且耗时未超过阈值时加性增长（每个上限周期 +1），
+ * 遇到 429 或耗时超过阈值时乘性减小。排队时只要有交互请求在等待，后台请求就不会拿到许可；
+ * 后台请求同时最多占用 backgroundShare 比例的并发，保证交互请求总有余量。
+ * <p>
+ * 指标（limiter 标签为限制器名称）：model.limiter.limit / model.limiter.inflight 当前上限与并发，
+ * model.limiter.queue.wait 按 lane 区分的排队耗时，model.limiter.throttled 收到 429 的次数。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 一次调用的结果，用于调整并发上限
+     */
+    public enum Outcome {
+        // 调用成功
+        SUCCESS,
+        // 被服务商限流（429）
+        THROTTLED,
+        // 其他失败或被取消，不调整上限
+        IGNORED
+    }
+
+    /**
+     * 限制器参数，对应 application.yml 中 model.limiter 下的各个模型
+     */
+    @Data
+    public static class Settings {
+
+        // 初始并发上限
+        private int initialLimit = 8;
+
+        // 并发上限的下限
+        private int minLimit = 1;
+
+        // 并发上限的上限
+        private int maxLimit = 64;
+
+        // 限流或超时后上限乘以该系数
+        private double backoffRatio = 0.7;
+
+        // 调用耗时（流式调用为首个分片耗时）超过该值视为过载
+        private Duration latencyThreshold = Duration.ofSeconds(10);
+
+        // 后台通道最多占用的并发比例
+        private double backgroundShare = 0.5;
+
+        // 交互请求的最长排队时间
+        private Duration queueTimeout = Duration.ofSeconds(30);
+
+        // 后台请求的最长排队时间
+        private Duration backgroundQueueTimeout = Duration.ofMinutes(5);
+    }
+
+    private final String name;
+
+    private final Settings settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<ModelLane, Condition> conditions = new EnumMap<>(ModelLane.class);
+
+    private final Map<ModelLane, Integer> waiting = new EnumMap<>(ModelLane.class);
+
+    private final Map<ModelLane, Integer> inFlight = new EnumMap<>(ModelLane.class);
+
+    private final Map<ModelLane, Timer> waitTimers = new EnumMap<>(ModelLane.class);
+
+    private final Counter throttled;
+
+    // 当前并发上限，只在持有 lock 时修改
+    private volatile double limit;
+
+    public AdaptiveConcurrencyLimiter(String name, Settings settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), settings.getInitialLimit()));
+        for (ModelLane lane : ModelLane.values()) {
+            conditions.put(lane, lock.newCondition());
+            waiting.put(lane, 0);
+            inFlight.put(lane, 0);
+            waitTimers.put(lane, Timer.builder("model.limiter.queue.wait")
+                    .description("Time model calls spend waiting for a concurrency permit")
+                    .tag("limiter", name)
+                    .tag("lane", lane.name().toLowerCase(Locale.ROOT))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        this.throttled = Counter.builder("model.limiter.throttled")
+                .description("Model calls rejected by the provider with 429")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("model.limiter.limit", this, v -> v.limit)
+                .description("Current adaptive concurrency limit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("model.limiter.inflight", this, AdaptiveConcurrencyLimiter::totalInFlight)
+                .description("Model calls currently holding a permit")
+                .tag("limiter", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取一个调用许可，排队超时抛出异常
+     *
+     * @param lane 优先级通道
+     * @return 许可，调用结束后必须 release
+     */
+    public Permit acquire(ModelLane lane) {
+        long start = System.nanoTime();
+        Duration timeout = lane == ModelLane.INTERACTIVE ? settings.getQueueTimeout() : settings.getBackgroundQueueTimeout();
+        long remaining = timeout.toNanos();
+        lock.lock();
+        try {
+            if (!canRun(lane)) {
+                waiting.merge(lane, 1, Integer::sum);
+                try {
+                    while (!canRun(lane)) {
+                        if (remaining <= 0) {
+                            throw new RuntimeException("timed out waiting for a %s model call permit, lane is %s"
+                                    .formatted(name, lane));
+                        }
+                        remaining = conditions.get(lane).awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while waiting for a %s model call permit".formatted(name), e);
+                } finally {
+                    waiting.merge(lane, -1, Integer::sum);
+                }
+            }
+            inFlight.merge(lane, 1, Integer::sum);
+            return new Permit(lane);
+        } finally {
+            lock.unlock();
+            waitTimers.get(lane).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 判断异常是否为服务商限流（HTTP 429）
+     */
+    public static boolean isThrottled(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof WebClientResponseException w && w.getStatusCode().value() == 429) {
+                return true;
+            }
+            if (e instanceof RestClientResponseException r && r.getStatusCode().value() == 429) {
+                return true;
+            }
+            // Spring AI 把错误响应转换为 AiException，消息以状态码开头
+            if (e.getMessage() != null && e.getMessage().startsWith("429")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否可以立即执行：总并发未达上限；后台请求还要求没有交互请求在排队，且不超过后台占比
+     */
+    private boolean canRun(ModelLane lane) {
+        int currentLimit = (int) limit;
+        if (totalInFlight() >= currentLimit) {
+            return false;
+        }
+        if (lane == ModelLane.INTERACTIVE) {
+            return true;
+        }
+        int backgroundLimit = Math.max(1, (int) (currentLimit * settings.getBackgroundShare()));
+        return waiting.get(ModelLane.INTERACTIVE) == 0 && inFlight.get(ModelLane.BACKGROUND) < backgroundLimit;
+    }
+
+    private int totalInFlight() {
+        return inFlight.get(ModelLane.INTERACTIVE) + inFlight.get(ModelLane.BACKGROUND);
+    }
+
+    private void release(ModelLane lane, Outcome outcome, long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight.merge(lane, -1, Integer::sum);
+            if (outcome == Outcome.THROTTLED) {
+                throttled.increment();
+                decrease();
+            } else if (outcome == Outcome.SUCCESS) {
+                if (latencyNanos > settings.getLatencyThreshold().toNanos()) {
+                    decrease();
+                } else if (totalInFlight() + 1 >= (int) limit / 2) {
+                    // 只有并发确实用到一定程度时才增长，避免低负载时上限无限上涨
+                    limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+                }
+            }
+            // 交互请求优先唤醒，后台请求被唤醒后会再次检查是否有交互请求在排队
+            conditions.get(ModelLane.INTERACTIVE).signalAll();
+            conditions.get(ModelLane.BACKGROUND).signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease() {
+        limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+    }
+
+    /**
+     * 调用许可，release 可以安全地重复调用
+     */
+    public final class Permit {
+
+        private final ModelLane lane;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ModelLane lane) {
+            this.lane = lane;
+        }
+
+        /**
+         * 归还许可并根据调用结果调整并发上限
+         *
+         * @param outcome      调用结果
+         * @param latencyNanos 调用耗时（流式调用为首个分片耗时）
+         */
+        public void release(Outcome outcome, long latencyNanos) {
+            if (released.compareAndSet(false, true)) {
+                AdaptiveConcurrencyLimiter.this.release(lane, outcome, latencyNanos);
+            }
+        }
+
+        /**
+         * 根据异常归还许可
+         */
+        public void release(Throwable error, long latencyNanos) {
+            release(isThrottled(error) ? Outcome.THROTTLED : Outcome.IGNORED, latencyNanos);
+        }
+    }
+}
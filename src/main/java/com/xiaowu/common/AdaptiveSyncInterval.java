@@ -0,0 +1,75 @@
+package com.xiaowu.common;
+
+import com.xiaowu.config.SyncScheduleConfig;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 根据最近的文档变化率与同步耗时计算下一次同步的间隔。
+ * <p>
+ * 每次同步后更新变化数的指数加权平均：有变化时间隔按平均变化数成比例缩短，
+ * 没有变化时按 backoffFactor 逐步放大；间隔始终不小于上次同步耗时的 durationMultiplier 倍，
+ * 并限制在 [minInterval, maxInterval] 之间。同步失败时按没有变化处理，避免出错时加快重试。
+ */
+public class AdaptiveSyncInterval {
+
+    private final SyncScheduleConfig config;
+
+    // 当前间隔（毫秒）
+    private long intervalMillis;
+
+    // 每次同步变化文档数的指数加权平均
+    private double changeRate;
+
+    public AdaptiveSyncInterval(SyncScheduleConfig config) {
+        this.config = config;
+        this.intervalMillis = clamp(config.getInitialInterval().toMillis());
+    }
+
+    /**
+     * 记录一次完成的同步
+     *
+     * @param changes 新增、更新、删除的文档总数，同步失败时传 0
+     * @param took    同步耗时
+     */
+    public synchronized void record(int changes, Duration took) {
+        changeRate = config.getSmoothing() * changes + (1 - config.getSmoothing()) * changeRate;
+        long next;
+        if (changes > 0) {
+            // 变化越多间隔越短，平均每次变化 1 个文档时减半
+            next = (long) (intervalMillis / (1 + changeRate));
+        } else {
+            next = (long) (intervalMillis * config.getBackoffFactor());
+        }
+        long floor = (long) (took.toMillis() * config.getDurationMultiplier());
+        intervalMillis = clamp(Math.max(next, floor));
+    }
+
+    /**
+     * 下一次同步前的等待时间（含随机浮动）
+     */
+    public synchronized Duration nextDelay() {
+        double jitter = config.getJitter();
+        double factor = jitter <= 0 ? 1 : 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Duration.ofMillis(Math.max(1, (long) (intervalMillis * factor)));
+    }
+
+    /**
+     * 当前间隔（不含随机浮动）
+     */
+    public synchronized Duration interval() {
+        return Duration.ofMillis(intervalMillis);
+    }
+
+    /**
+     * 最近的平均变化文档数
+     */
+    public synchronized double changeRate() {
+        return changeRate;
+    }
+
+    private long clamp(long millis) {
+        return Math.min(config.getMaxInterval().toMillis(), Math.max(config.getMinInterval().toMillis(), millis));
+    }
+}
@@ -0,0 +1,199 @@
+package com.xiaowu.common;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量模型的批量网关：把并发到达的小请求在 maxWait 内攒成一次向量接口调用，再把结果按顺序拆回给各个调用方。
+ * <p>
+ * 对话检索时每个问题只嵌入一条文本，高并发下逐条调用的 HTTP 开销远大于嵌入本身；合并后每次调用最多 maxBatchSize 条文本。
+ * 文本数已达到 maxBatchSize 的请求（如文档写入）直接调用，不参与合并；模型、维度不同的请求分开调用。
+ * 合并后的调用使用成员中优先级最高的通道，交互请求不会因为和后台请求同批而排在后面。
+ * <p>
+ * 每个请求的总耗时与排队时间记录在 embedding.gateway.latency / embedding.gateway.wait，
+ * 每次实际调用的文本数记录在 embedding.gateway.batch.size。
+ */
+@Slf4j
+public class BatchingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final int maxBatchSize;
+
+    private final long maxWaitNanos;
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    // 执行合并后的调用，调用本身的并发由 LimitedEmbeddingModel 限制
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Timer latency;
+
+    private final Timer wait;
+
+    private final DistributionSummary batchSize;
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration maxWait, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.latency = Timer.builder("embedding.gateway.latency")
+                .description("Time from submitting an embedding request to receiving its result")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.wait = Timer.builder("embedding.gateway.wait")
+                .description("Time an embedding request waits to be batched")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("embedding.gateway.batch.size")
+                .description("Number of texts per embedding call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        Thread.ofVirtual().name("embedding-gateway").start(this::dispatch);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        long start = System.nanoTime();
+        try {
+            if (request.getInstructions().size() >= maxBatchSize) {
+                batchSize.record(request.getInstructions().size());
+                return delegate.call(request);
+            }
+            Pending pending = new Pending(request, ModelLane.current(), start, new CompletableFuture<>());
+            queue.add(pending);
+            return pending.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for the embedding result", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException("failed to embed the texts", e.getCause());
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        // 文档的格式化方式由具体的模型决定，直接调用
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 取出第一个请求后最多再等待 maxWait，期间到达的请求合并到同一批，文本数达到 maxBatchSize 时立即发出
+     */
+    private void dispatch() {
+        Pending carried = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Pending first = carried != null ? carried : queue.take();
+                carried = null;
+                List<Pending> batch = new ArrayList<>(List.of(first));
+                int texts = first.request().getInstructions().size();
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (texts < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (texts + next.request().getInstructions().size() > maxBatchSize) {
+                        // 放不下的请求作为下一批的第一个
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    texts += next.request().getInstructions().size();
+                }
+                submit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("embedding gateway dispatch failed", e);
+            }
+        }
+    }
+
+    /**
+     * 按模型与维度分组，每组一次调用
+     */
+    private void submit(List<Pending> batch) {
+        long now = System.nanoTime();
+        Map<OptionsKey, List<Pending>> groups = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            wait.record(now - pending.submitted(), TimeUnit.NANOSECONDS);
+            groups.computeIfAbsent(OptionsKey.of(pending.request().getOptions()), k -> new ArrayList<>()).add(pending);
+        }
+        groups.values().forEach(group -> executor.execute(() -> execute(group)));
+    }
+
+    private void execute(List<Pending> group) {
+        try {
+            List<String> texts = group.stream().flatMap(v -> v.request().getInstructions().stream()).toList();
+            ModelLane lane = group.stream().anyMatch(v -> v.lane() == ModelLane.INTERACTIVE)
+                    ? ModelLane.INTERACTIVE : ModelLane.BACKGROUND;
+            batchSize.record(texts.size());
+            EmbeddingResponse response = lane.call(() -> delegate.call(
+                    new EmbeddingRequest(texts, group.get(0).request().getOptions())));
+
+            List<Embedding> results = response.getResults();
+            if (results.size() != texts.size()) {
+                throw new IllegalStateException("expected %d embeddings but got %d".formatted(texts.size(), results.size()));
+            }
+            int offset = 0;
+            for (Pending pending : group) {
+                int size = pending.request().getInstructions().size();
+                List<Embedding> embeddings = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    embeddings.add(new Embedding(results.get(offset + i).getOutput(), i));
+                }
+                offset += size;
+                pending.result().complete(new EmbeddingResponse(embeddings));
+            }
+        } catch (RuntimeException e) {
+            group.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 等待合并的请求
+     */
+    private record Pending(EmbeddingRequest request, ModelLane lane, long submitted,
+                           CompletableFuture<EmbeddingResponse> result) {
+    }
+
+    /**
+     * 只有模型与维度相同的请求才能合并
+     */
+    private record OptionsKey(String model, Integer dimensions) {
+
+        static OptionsKey of(EmbeddingOptions options) {
+            return options == null ? new OptionsKey(null, null) : new OptionsKey(options.getModel(), options.getDimensions());
+        }
+    }
+}
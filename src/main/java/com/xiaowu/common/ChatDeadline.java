@@ -0,0 +1,147 @@
+package com.xiaowu.common;
+
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 一轮对话的时间预算，以及预算不足时已经采取的降级措施。
+ * <p>
+ * 对话请求到达时按预算计算截止时间，拿到会话锁后通过 {@link #runBound} 按会话 ID 登记，
+ * 读取历史、检索、模型调用等阶段通过 {@link #of(String)} 查到它，据此设置超时或降级。
+ * 流式调用中的顾问可能在其他线程上执行，因此按会话 ID 而不是线程登记；
+ * 同一会话的对话由 ConversationTurnLock 串行执行，同一时刻只会有一个登记。
+ * 响应式对话链路在 ConversationTurnLock#streamExclusive 排到队首后通过 {@link #streamBound} 登记，
+ * 排队中的轮次不会覆盖正在执行的轮次的登记。
+ * 没有登记时返回一个不限时的实例，调用方无需判空。
+ */
+public final class ChatDeadline {
+
+    /**
+     * 预算不足时采取的降级措施
+     */
+    public enum Degradation {
+        // 读取历史消息超时，本轮不带历史
+        SKIP_HISTORY,
+        // 只保留最近的少量历史消息
+        SHRINK_HISTORY,
+        // 跳过知识库检索
+        SKIP_RETRIEVAL,
+        // 缩小检索的 ef_search，关闭自适应扩大
+        REDUCED_SEARCH,
+        // 模型输出到截止时间被截断
+        TRUNCATED_ANSWER
+    }
+
+    private static final ConcurrentMap<String, ChatDeadline> ACTIVE = new ConcurrentHashMap<>();
+
+    private static final ChatDeadline UNBOUNDED = new ChatDeadline(Long.MAX_VALUE);
+
+    // 截止时间（System.nanoTime），Long.MAX_VALUE 表示不限时
+    private final long deadlineNanos;
+
+    private final Set<Degradation> degradations = ConcurrentHashMap.newKeySet();
+
+    private ChatDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 从现在开始计算预算
+     *
+     * @param budget 时间预算
+     * @return 截止时间
+     */
+    public static ChatDeadline after(Duration budget) {
+        return new ChatDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * 按会话 ID 登记截止时间并执行操作，结束后移除登记
+     */
+    public <T> T runBound(String conversationId, Supplier<T> action) {
+        ACTIVE.put(conversationId, this);
+        try {
+            return action.get();
+        } finally {
+            ACTIVE.remove(conversationId, this);
+        }
+    }
+
+    /**
+     * 按会话 ID 登记截止时间，响应式流结束（完成、出错或被取消）时移除登记
+     */
+    public <T> Flux<T> streamBound(String conversationId, Flux<T> flux) {
+        return Flux.using(() -> {
+            ACTIVE.put(conversationId, this);
+            return this;
+        }, deadline -> flux, deadline -> ACTIVE.remove(conversationId, deadline));
+    }
+
+    /**
+     * 查询会话当前的截止时间
+     */
+    public static ChatDeadline of(String conversationId) {
+        return conversationId == null ? UNBOUNDED : ACTIVE.getOrDefault(conversationId, UNBOUNDED);
+    }
+
+    /**
+     * 根据 advise context 中的会话 ID 查询截止时间
+     */
+    public static ChatDeadline of(Map<String, Object> adviseContext) {
+        Object conversationId = adviseContext.get(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY);
+        return of(conversationId == null ? null : conversationId.toString());
+    }
+
+    public boolean bounded() {
+        return deadlineNanos != Long.MAX_VALUE;
+    }
+
+    /**
+     * 剩余时间，已超时返回 0
+     */
+    public Duration remaining() {
+        if (!bounded()) {
+            return Duration.ofNanos(Long.MAX_VALUE);
+        }
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * 剩余时间是否已低于阈值，不限时的实例始终返回 false
+     */
+    public boolean below(Duration threshold) {
+        return bounded() && remaining().compareTo(threshold) < 0;
+    }
+
+    /**
+     * 剩余时间向上取整的秒数（至少 1 秒），用于设置事务 / 查询超时
+     */
+    public int timeoutSeconds() {
+        long millis = remaining().toMillis();
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (millis + 999) / 1000));
+    }
+
+    /**
+     * 记录一项降级措施，不限时的实例不记录
+     */
+    public void degrade(Degradation degradation) {
+        if (bounded()) {
+            degradations.add(degradation);
+        }
+    }
+
+    /**
+     * 已采取的降级措施，按链路顺序排列
+     */
+    public List<Degradation> degradations() {
+        return degradations.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,178 @@
+package com.xiaowu.common;
+
+import com.xiaowu.entity.po.BaseConversationUsage;
+import com.xiaowu.service.MpConversationUsageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 对话链路的耗时与 token 用量统计。
+ * <p>
+ * 各阶段耗时记录到 chat.stage 计时器（按 stage 标签区分，带 p50/p95/p99 分位数），
+ * token 用量记录到 chat.prompt.tokens / chat.prompt.cached.tokens / chat.completion.tokens 计数器，
+ * 均可通过 /actuator/metrics 查看；每轮对话的用量同时异步写入 base_conversation_usage 表，不占用对话线程。
+ * 模型路由选中的路由另外记录到 chat.route.model 计时器与 chat.route.tokens 计数器（按 route 标签区分），
+ * 用于对比各路由的耗时与用量。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatTelemetry {
+
+    /**
+     * 对话链路中的阶段
+     */
+    public enum Stage {
+        // 对话准备：读取历史消息与检索，并行执行时小于两者之和
+        PREPARE,
+        // 读取历史消息
+        MEMORY_LOAD,
+        // 向量检索
+        RETRIEVAL,
+        // 模型调用首 token
+        MODEL_FIRST_TOKEN,
+        // 模型调用总耗时
+        MODEL_TOTAL,
+        // 写回历史消息
+        MEMORY_PERSIST
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final MpConversationUsageService conversationUsageService;
+
+    /**
+     * 执行并记录某个阶段的耗时
+     *
+     * @param stage  阶段
+     * @param action 阶段内的操作
+     * @return 操作结果
+     */
+    public <T> T time(Stage stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 记录某个阶段的耗时
+     *
+     * @param stage 阶段
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(Stage stage, long nanos) {
+        Timer.builder("chat.stage")
+                .description("Time spent in each stage of the chat pipeline")
+                .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次模型调用：阶段耗时、token 计数，并把用量写入 base_conversation_usage。
+     * 指标同步记录；写库只用于统计，交给弹性线程池执行，调用方（可能持有会话锁）不必等待
+     *
+     * @param conversationId  会话 ID，为空时只记录指标
+     * @param route           模型路由名称，为空时不记录按路由的指标
+     * @param response        带 usage 的模型响应，可能为空
+     * @param totalNanos      模型调用总耗时
+     * @param firstTokenNanos 首 token 耗时，非流式调用传 -1
+     */
+    public void recordModelCall(String conversationId, String route, ChatResponse response,
+                                long totalNanos, long firstTokenNanos) {
+        record(Stage.MODEL_TOTAL, totalNanos);
+        if (firstTokenNanos >= 0) {
+            record(Stage.MODEL_FIRST_TOKEN, firstTokenNanos);
+        }
+
+        Usage usage = Optional.ofNullable(response)
+                .map(ChatResponse::getMetadata)
+                .map(ChatResponseMetadata::getUsage)
+                .orElse(null);
+        long promptTokens = tokens(usage == null ? null : usage.getPromptTokens());
+        long totalTokens = tokens(usage == null ? null : usage.getTotalTokens());
+        long completionTokens = Math.max(0, totalTokens - promptTokens);
+        long cachedTokens = cachedTokens(usage);
+
+        meterRegistry.counter("chat.prompt.tokens").increment(promptTokens);
+        meterRegistry.counter("chat.prompt.cached.tokens").increment(cachedTokens);
+        meterRegistry.counter("chat.completion.tokens").increment(completionTokens);
+
+        if (route != null) {
+            Timer.builder("chat.route.model")
+                    .description("Model call time per routing decision")
+                    .tag("route", route)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(totalNanos, TimeUnit.NANOSECONDS);
+            meterRegistry.counter("chat.route.tokens", "route", route, "type", "prompt").increment(promptTokens);
+            meterRegistry.counter("chat.route.tokens", "route", route, "type", "completion").increment(completionTokens);
+        }
+
+        if (conversationId == null) {
+            return;
+        }
+        BaseConversationUsage conversationUsage = BaseConversationUsage.builder()
+                .conversationId(conversationId)
+                .model(response == null ? null : response.getMetadata().getModel())
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .cachedTokens(cachedTokens)
+                .firstTokenMillis(firstTokenNanos >= 0 ? TimeUnit.NANOSECONDS.toMillis(firstTokenNanos) : null)
+                .totalMillis(TimeUnit.NANOSECONDS.toMillis(totalNanos))
+                .build();
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                conversationUsageService.save(conversationUsage);
+            } catch (RuntimeException e) {
+                // 用量只用于统计，写入失败不影响对话
+                log.warn("failed to save the conversation usage, conversation id is {}", conversationId, e);
+            }
+        });
+    }
+
+    /**
+     * 判断响应中是否带有 usage（流式响应只有最后一个分片带 usage）
+     */
+    public static boolean hasUsage(ChatResponse response) {
+        return response != null
+                && response.getMetadata() != null
+                && response.getMetadata().getUsage() != null
+                && tokens(response.getMetadata().getUsage().getPromptTokens()) > 0;
+    }
+
+    private static long tokens(Number value) {
+        return value == null ? 0L : value.longValue();
+    }
+
+    /**
+     * 从 OpenAI 兼容接口的原始 usage 中读取命中前缀缓存的 token 数
+     */
+    private static long cachedTokens(Usage usage) {
+        return Optional.ofNullable(usage)
+                .map(Usage::getNativeUsage)
+                .filter(OpenAiApi.Usage.class::isInstance)
+                .map(OpenAiApi.Usage.class::cast)
+                .map(OpenAiApi.Usage::promptTokensDetails)
+                .map(OpenAiApi.Usage.PromptTokensDetails::cachedTokens)
+                .map(Integer::longValue)
+                .orElse(0L);
+    }
+}
@@ -0,0 +1,25 @@
+package com.xiaowu.common;
+
+import com.xiaowu.entity.po.BaseDocChunk;
+
+import java.util.List;
+
+/**
+ * 一篇文档的分块规划结果。
+ *
+ * @param docId        文档 ID
+ * @param chunks       文档的全部分块，vectorDocId 为分块实际使用的向量
+ * @param embedded     新嵌入的分块数，内容重复与未变化的分块不需要嵌入
+ * @param deduplicated 引用其他文档已有向量的分块数
+ * @param reused       沿用本文档上一版本向量的分块数
+ */
+public record ChunkPlan(String docId, List<BaseDocChunk> chunks, int embedded,
+                        int deduplicated, int reused) {
+
+    /**
+     * 文档被删除时的规划：没有分块
+     */
+    public static ChunkPlan empty(String docId) {
+        return new ChunkPlan(docId, List.of(), 0, 0, 0);
+    }
+}
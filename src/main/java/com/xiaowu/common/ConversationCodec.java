@@ -0,0 +1,26 @@
+package com.xiaowu.common;
+
+import java.util.List;
+
+/**
+ * 会话内容编解码器，负责 base_conversation.content 字段与消息列表之间的转换。
+ * 不同实现可以选择不同的存储格式，但 decode 必须兼容历史遗留的 JSON 数据。
+ */
+public interface ConversationCodec {
+
+    /**
+     * 将消息列表编码为数据库存储的字节内容
+     *
+     * @param messages 消息封装列表
+     * @return 编码后的字节
+     */
+    byte[] encode(List<MessageWrapper> messages);
+
+    /**
+     * 将数据库中的字节内容解码为消息列表
+     *
+     * @param content 数据库中存储的内容，可能为空
+     * @return 可修改的消息列表，内容为空时返回空列表
+     */
+    List<MessageWrapper> decode(byte[] content);
+}
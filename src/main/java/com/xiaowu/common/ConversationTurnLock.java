@@ -0,0 +1,135 @@
+package com.xiaowu.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 按会话 ID 串行化聊天轮次的锁。
+ * <p>
+ * 每个正在对话的会话 ID 对应一把公平锁，同一会话的多次请求按到达顺序依次执行，
+ * 不同会话之间互不影响、完全并行。锁对象按引用计数管理，没有请求持有时立即移除，
+ * 因此内存占用只与当前并发的会话数有关。
+ * <p>
+ * 响应式链路不能阻塞线程等锁，改为按会话维护一条轮次队列：每个轮次在上一个轮次结束（完成、出错或取消）后才订阅，
+ * 等待期间不占用线程，队列末尾的轮次结束时移除。
+ * <p>
+ * 该锁只保证单个进程内的顺序，多实例之间由 DbChatMemory 的乐观版本号保证不丢消息。
+ */
+@Component
+public class ConversationTurnLock {
+
+    private final ConcurrentMap<String, Entry> locks = new ConcurrentHashMap<>();
+
+    // 响应式轮次队列：会话 ID 到队列末尾轮次的结束信号
+    private final ConcurrentMap<String, Mono<Void>> tails = new ConcurrentHashMap<>();
+
+    // 需要等待其他请求释放锁的次数
+    private final Counter contended;
+
+    // 等待锁的耗时
+    private final Timer waitTimer;
+
+    public ConversationTurnLock(MeterRegistry meterRegistry) {
+        this.contended = Counter.builder("conversation.turn.contended")
+                .description("Chat turns that had to wait for another turn of the same conversation")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("conversation.turn.lock.wait")
+                .description("Time spent waiting for the per-conversation turn lock")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("conversation.turn.locks.active", this, v -> v.locks.size() + v.tails.size())
+                .description("Conversations that currently have a turn running or waiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 在指定会话的锁内执行操作
+     *
+     * @param conversationId 会话 ID
+     * @param action         需要串行执行的操作
+     * @return 操作结果
+     */
+    public <T> T runExclusive(String conversationId, Supplier<T> action) {
+        Entry entry = locks.compute(conversationId, (key, current) -> {
+            Entry value = current == null ? new Entry() : current;
+            value.holders++;
+            return value;
+        });
+        try {
+            if (!entry.lock.tryLock()) {
+                contended.increment();
+                long start = System.nanoTime();
+                entry.lock.lock();
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            try {
+                return action.get();
+            } finally {
+                entry.lock.unlock();
+            }
+        } finally {
+            // 最后一个持有者离开时移除锁对象
+            locks.computeIfPresent(conversationId, (key, value) -> --value.holders == 0 ? null : value);
+        }
+    }
+
+    /**
+     * 在指定会话的轮次队列中执行流式操作，不阻塞线程。
+     * 订阅时排到队列末尾，上一个轮次结束后才订阅 action 返回的流
+     *
+     * @param conversationId 会话 ID
+     * @param action         需要串行执行的流式操作
+     * @return 排队后的流
+     */
+    public <T> Flux<T> streamExclusive(String conversationId, Supplier<Flux<T>> action) {
+        return Flux.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            // 排在自己前面的轮次结束、且自己也结束后，队列末尾才算结束；
+            // 这样即使自己在等待中被取消，下一个轮次也不会越过仍在执行的轮次
+            List<Mono<Void>> previousHolder = new ArrayList<>(1);
+            Mono<Void> tail = tails.compute(conversationId, (key, current) -> {
+                previousHolder.add(current);
+                return current == null ? done.asMono() : Mono.when(current.onErrorComplete(), done.asMono());
+            });
+            Mono<Void> previous = previousHolder.get(0);
+            Flux<T> turn = Flux.defer(action);
+            if (previous != null) {
+                contended.increment();
+                long start = System.nanoTime();
+                // 上一个轮次的失败由它自己的订阅者处理，这里只等待其结束
+                turn = previous.onErrorComplete()
+                        .doFinally(s -> waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                        .thenMany(turn);
+            }
+            return turn.doFinally(s -> {
+                done.tryEmitEmpty();
+                // 自己仍是队列末尾时移除，之后到达的轮次直接执行
+                tails.remove(conversationId, tail);
+            });
+        });
+    }
+
+    /**
+     * 锁对象及其引用计数，holders 只在 ConcurrentHashMap 的 compute 中修改
+     */
+    private static final class Entry {
+
+        private final ReentrantLock lock = new ReentrantLock(true);
+
+        private int holders;
+    }
+}
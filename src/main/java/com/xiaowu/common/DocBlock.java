@@ -0,0 +1,20 @@
+package com.xiaowu.common;
+
+/**
+ * 飞书文档中的一个内容块，按文档顺序逐个读取，只保留切块需要的结构信息。
+ *
+ * @param kind  块类型
+ * @param level 标题级别（1 ~ 9）；表格单元格为所在列（0 表示新的一行）；其他类型为 0
+ * @param text  块的纯文本
+ */
+public record DocBlock(Kind kind, int level, String text) {
+
+    public enum Kind {
+        HEADING,
+        TEXT,
+        LIST_ITEM,
+        CODE,
+        QUOTE,
+        TABLE_CELL
+    }
+}
@@ -0,0 +1,85 @@
+package com.xiaowu.common;
+
+import com.lark.oapi.service.drive.v1.model.File;
+import com.xiaowu.entity.po.BaseDoc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 一次文档同步需要执行的变更：对比飞书文件列表与本地 base_doc 记录，
+ * 得到新增、删除与内容变化的文档。计算过程只用哈希查找，复杂度与文档数量成线性关系。
+ *
+ * @param newDocs     飞书中新增的文档（本地不存在）
+ * @param deletedDocs 飞书中已删除的文档（本地存在）
+ * @param updatedDocs 内容发生变化的文档（modifiedTime 不同），沿用本地记录的 ID 与向量 ID
+ * @param unchanged   未发生变化的文档数量
+ */
+public record DocSyncPlan(List<BaseDoc> newDocs, List<BaseDoc> deletedDocs, List<BaseDoc> updatedDocs,
+                          int unchanged) {
+
+    /**
+     * 根据飞书文件列表与本地文档记录计算同步计划
+     *
+     * @param files 飞书文件夹中的文件
+     * @param docs  本地已存储的文档
+     * @return 同步计划
+     */
+    public static DocSyncPlan of(List<File> files, List<BaseDoc> docs) {
+        // 以 docId 为 key 建立本地文档索引，便于 O(1) 比较
+        Map<String, BaseDoc> docMap = new HashMap<>(docs.size() * 2);
+        for (BaseDoc doc : docs) {
+            docMap.put(doc.getDocId(), doc);
+        }
+
+        List<BaseDoc> newDocs = new ArrayList<>();
+        List<BaseDoc> updatedDocs = new ArrayList<>();
+        Set<String> fileIds = new HashSet<>(files.size() * 2);
+        int unchanged = 0;
+
+        for (File file : files) {
+            fileIds.add(file.getToken());
+            BaseDoc baseDoc = docMap.get(file.getToken());
+            if (baseDoc == null) {
+                // 本地不存在，为新增文档
+                newDocs.add(BaseDoc.builder()
+                        .docId(file.getToken())
+                        .docName(file.getName())
+                        .url(file.getUrl())
+                        .modifiedTime(file.getModifiedTime())
+                        .build());
+            } else if (!Objects.equals(file.getModifiedTime(), baseDoc.getModifiedTime())) {
+                // 修改时间变化，为内容更新的文档
+                updatedDocs.add(BaseDoc.builder()
+                        .id(baseDoc.getId()) // 使用原本记录的数据库 ID
+                        .docId(baseDoc.getDocId())
+                        .docName(file.getName())
+                        .url(file.getUrl())
+                        .vectorDocId(baseDoc.getVectorDocId())
+                        .modifiedTime(file.getModifiedTime())
+                        .build());
+            } else {
+                unchanged++;
+            }
+        }
+
+        // 飞书中不存在但本地存在的文档
+        List<BaseDoc> deletedDocs = docs.stream()
+                .filter(v -> !fileIds.contains(v.getDocId()))
+                .toList();
+
+        return new DocSyncPlan(newDocs, deletedDocs, updatedDocs, unchanged);
+    }
+
+    /**
+     * 是否没有任何变更
+     */
+    public boolean isEmpty() {
+        return newDocs.isEmpty() && deletedDocs.isEmpty() && updatedDocs.isEmpty();
+    }
+}
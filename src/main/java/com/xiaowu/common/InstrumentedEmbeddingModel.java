@@ -0,0 +1,35 @@
+package com.xiaowu.common;
+
+import com.xiaowu.common.SyncRunContext.Phase;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * 向量模型的装饰器，把生成向量的耗时累加到当前同步运行的 EMBED 阶段。
+ * 向量库写入时会在同一线程内调用向量模型，借此把“生成向量”和“写入向量库”的耗时区分开。
+ */
+public class InstrumentedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    public InstrumentedEmbeddingModel(EmbeddingModel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return SyncRunContext.current().time(Phase.EMBED, () -> delegate.call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return SyncRunContext.current().time(Phase.EMBED, () -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,45 @@
+package com.xiaowu.common;
+
+import java.time.Duration;
+
+/**
+ * 按固定间隔发放许可的限流器：每秒最多 permitsPerSecond 次，超出时调用线程等待到下一个空闲时间点。
+ * 许可时间点在锁内预留，等待在锁外进行，多个线程排队时按预留顺序依次放行。
+ */
+public class IntervalRateLimiter {
+
+    // 相邻两次许可的间隔（纳秒）
+    private final long intervalNanos;
+
+    // 下一个可用的许可时间点
+    private long nextFreeNanos = System.nanoTime();
+
+    public IntervalRateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+    }
+
+    /**
+     * 获取一个许可，必要时等待
+     */
+    public void acquire() {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(nextFreeNanos, now);
+            nextFreeNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for the rate limiter", e);
+        }
+    }
+}
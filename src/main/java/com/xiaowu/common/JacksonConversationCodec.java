@@ -0,0 +1,116 @@
+package com.xiaowu.common;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileConstants;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 基于 Jackson 的会话编解码器。
+ * <p>
+ * 写入时按配置使用 JSON 或 Smile（二进制 JSON）格式，超过阈值的内容再做 GZIP 压缩；
+ * 读取时根据内容头部自动识别 GZIP、Smile 与旧版 JSON，因此切换格式无需迁移历史数据。
+ * ObjectReader / ObjectWriter 在构造时创建好并复用，它们是不可变且线程安全的。
+ */
+public class JacksonConversationCodec implements ConversationCodec {
+
+    /**
+     * 写入格式
+     */
+    public enum Format {
+        JSON,
+        SMILE
+    }
+
+    private static final TypeReference<List<MessageWrapper>> MESSAGES_TYPE = new TypeReference<>() {};
+
+    private final ObjectWriter writer;
+
+    private final ObjectReader jsonReader;
+
+    private final ObjectReader smileReader;
+
+    // 编码结果达到该字节数时进行 GZIP 压缩，小于等于 0 表示不压缩
+    private final int compressThreshold;
+
+    public JacksonConversationCodec(Format format, int compressThreshold) {
+        ObjectMapper jsonMapper = new ObjectMapper();
+        // 开启共享字符串值，消息类型等重复出现的短字符串只写一次
+        ObjectMapper smileMapper = new ObjectMapper(SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build());
+
+        this.jsonReader = jsonMapper.readerFor(MESSAGES_TYPE);
+        this.smileReader = smileMapper.readerFor(MESSAGES_TYPE);
+        this.writer = (format == Format.SMILE ? smileMapper : jsonMapper).writerFor(MESSAGES_TYPE);
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] encode(List<MessageWrapper> messages) {
+        try {
+            byte[] bytes = writer.writeValueAsBytes(messages);
+            if (compressThreshold > 0 && bytes.length >= compressThreshold) {
+                return gzip(bytes);
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to encode the conversation", e);
+        }
+    }
+
+    @Override
+    public List<MessageWrapper> decode(byte[] content) {
+        if (content == null || content.length == 0) {
+            return new ArrayList<>();
+        }
+        try {
+            byte[] bytes = isGzip(content) ? gunzip(content) : content;
+            // Smile 数据以固定的 ":)\n" 头部开始，否则按旧版 JSON 处理
+            ObjectReader reader = isSmile(bytes) ? smileReader : jsonReader;
+            List<MessageWrapper> messages = reader.readValue(bytes);
+            return messages == null ? new ArrayList<>() : new ArrayList<>(messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to decode the conversation", e);
+        }
+    }
+
+    private static boolean isGzip(byte[] bytes) {
+        return bytes.length > 2
+                && (bytes[0] & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff)
+                && (bytes[1] & 0xff) == (GZIPInputStream.GZIP_MAGIC >>> 8);
+    }
+
+    private static boolean isSmile(byte[] bytes) {
+        return bytes.length > 3
+                && bytes[0] == SmileConstants.HEADER_BYTE_1
+                && bytes[1] == SmileConstants.HEADER_BYTE_2
+                && bytes[2] == SmileConstants.HEADER_BYTE_3;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.xiaowu.common;
+
+import com.xiaowu.common.AdaptiveConcurrencyLimiter.Outcome;
+import com.xiaowu.common.AdaptiveConcurrencyLimiter.Permit;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 对话模型的装饰器，每次调用前从 AdaptiveConcurrencyLimiter 获取许可。
+ * 通道取自调用线程上的 ModelLane（流式调用优先取 Reactor Context 中的通道）；流式调用在弹性线程池上排队，不阻塞订阅线程，
+ * 并以首个分片的耗时作为调整并发上限的依据。
+ */
+public class LimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public LimitedChatModel(ChatModel delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        Permit permit = limiter.acquire(ModelLane.current());
+        long start = System.nanoTime();
+        try {
+            ChatResponse response = delegate.call(prompt);
+            permit.release(Outcome.SUCCESS, System.nanoTime() - start);
+            return response;
+        } catch (RuntimeException e) {
+            permit.release(e, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // 记忆顾问等会把流切换到其他线程执行，通道优先从 Reactor Context 中读取（见 ModelLane.CONTEXT_KEY）
+        ModelLane assembled = ModelLane.current();
+        return Flux.deferContextual(context -> limited(prompt, context.getOrDefault(ModelLane.CONTEXT_KEY, assembled)));
+    }
+
+    private Flux<ChatResponse> limited(Prompt prompt, ModelLane lane) {
+        return Mono.fromCallable(() -> limiter.acquire(lane))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(permit -> {
+                    long start = System.nanoTime();
+                    AtomicLong firstChunk = new AtomicLong(-1);
+                    AtomicReference<Throwable> error = new AtomicReference<>();
+                    return delegate.stream(prompt)
+                            .doOnNext(response -> firstChunk.compareAndSet(-1, System.nanoTime() - start))
+                            .doOnError(error::set)
+                            .doFinally(signal -> {
+                                long latency = firstChunk.get() >= 0 ? firstChunk.get() : System.nanoTime() - start;
+                                if (error.get() != null) {
+                                    permit.release(error.get(), latency);
+                                } else {
+                                    permit.release(firstChunk.get() >= 0 ? Outcome.SUCCESS : Outcome.IGNORED, latency);
+                                }
+                            });
+                });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+}
@@ -0,0 +1,53 @@
+package com.xiaowu.common;
+
+import com.xiaowu.common.AdaptiveConcurrencyLimiter.Outcome;
+import com.xiaowu.common.AdaptiveConcurrencyLimiter.Permit;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.function.Supplier;
+
+/**
+ * 向量模型的装饰器，每次调用前从 AdaptiveConcurrencyLimiter 获取许可，通道取自调用线程上的 ModelLane
+ */
+public class LimitedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public LimitedEmbeddingModel(EmbeddingModel delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return limited(() -> delegate.call(request));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return limited(() -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private <T> T limited(Supplier<T> call) {
+        Permit permit = limiter.acquire(ModelLane.current());
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            permit.release(Outcome.SUCCESS, System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            permit.release(e, System.nanoTime() - start);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.xiaowu.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaowu.mapper.ListingVersionMapper;
+import com.xiaowu.utils.RestResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 列表接口的版本号与响应体缓存，用于支持条件 GET（ETag / If-None-Match）。
+ * <p>
+ * 文档同步、会话增删改时递增对应列表的版本号，版本号以强 ETag 的形式返回给前端；
+ * 前端轮询时携带 If-None-Match，版本未变化则直接返回 304，只按主键查询一次版本号，不再查询列表。
+ * 每个版本的响应体只序列化一次，序列化后的字节缓存在内存中。
+ * <p>
+ * 版本号保存在 base_listing_version 表中，多个实例共享：任一实例上的修改都会让所有实例返回新的 ETag，
+ * 重启后版本号也不会回退。
+ */
+@Component
+@RequiredArgsConstructor
+public class ListingEtagCache {
+
+    /**
+     * 支持条件 GET 的列表类型
+     */
+    public enum Listing {
+        DOC,
+        CONVERSATION
+    }
+
+    // 使用 Spring 容器中的 ObjectMapper，保证与普通接口的序列化结果一致
+    private final ObjectMapper objectMapper;
+
+    // 列表版本号
+    private final ListingVersionMapper listingVersionMapper;
+
+    // 每种列表最近一个版本的序列化结果
+    private final ConcurrentMap<Listing, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * 递增指定列表的版本号。
+     * 如果当前处于事务中，版本号与数据在同一事务中提交，其他请求不会用新版本号缓存到旧数据，回滚时版本号也不变。
+     *
+     * @param listing 列表类型
+     */
+    public void bump(Listing listing) {
+        listingVersionMapper.bump(listing.name());
+    }
+
+    /**
+     * 按条件 GET 语义返回列表：ETag 命中返回 304，否则返回当前版本缓存的响应体
+     *
+     * @param listing     列表类型
+     * @param ifNoneMatch 请求头中的 If-None-Match
+     * @param loader      缓存未命中时加载列表数据
+     * @return 响应实体
+     */
+    public ResponseEntity<byte[]> respond(Listing listing, List<String> ifNoneMatch, Supplier<?> loader) {
+        // 先读取版本号再加载数据，加载期间发生的修改会让版本号继续递增，不会被错误缓存
+        long version = version(listing);
+        String etag = "\"%s-%d\"".formatted(listing.name().toLowerCase(Locale.ROOT), version);
+
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        // compute 保证同一列表同一版本只查询、序列化一次
+        Snapshot snapshot = snapshots.compute(listing, (key, current) -> {
+            if (current != null && current.version() >= version) {
+                return current;
+            }
+            return new Snapshot(version, serialize(RestResult.buildSuccessResult(loader.get())));
+        });
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.body());
+    }
+
+    private long version(Listing listing) {
+        Long version = listingVersionMapper.version(listing.name());
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * 判断 If-None-Match 是否命中当前 ETag（按 RFC 9110 对 If-None-Match 使用弱比较）
+     */
+    private boolean matches(List<String> ifNoneMatch, String etag) {
+        if (CollectionUtils.isEmpty(ifNoneMatch)) {
+            return false;
+        }
+        return ifNoneMatch.stream()
+                .map(String::trim)
+                .map(v -> v.startsWith("W/") ? v.substring(2) : v)
+                .anyMatch(v -> v.equals("*") || v.equals(etag));
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("json parse error", e);
+        }
+    }
+
+    /**
+     * 某个版本的序列化响应体
+     */
+    private record Snapshot(long version, byte[] body) {
+    }
+}
@@ -20,6 +20,9 @@ import java.util.List;
 @AllArgsConstructor // 生成全参构造函数
 public class MessageWrapper {
 
+    // 复用同一个类型引用，避免每次反序列化都创建匿名子类实例
+    private static final TypeReference<List<MessageWrapper>> MESSAGES_TYPE = new TypeReference<>() {};
+
     // 消息的类型（例如：用户、助手、系统）
     private MessageType type;
 
@@ -66,7 +69,6 @@ public class MessageWrapper {
         if (!StringUtils.hasText(conversationStr)) {
             return new ArrayList<>(); // 如果是空字符串，返回空列表
         }
-        TypeReference<List<MessageWrapper>> typeReference = new TypeReference<>() {};
-        return JsonUtil.toJsonObject(conversationStr, typeReference);
+        return JsonUtil.toJsonObject(conversationStr, MESSAGES_TYPE);
     }
 }
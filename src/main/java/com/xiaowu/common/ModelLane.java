@@ -0,0 +1,63 @@
+package com.xiaowu.common;
+
+import java.util.function.Supplier;
+
+/**
+ * 模型调用的优先级通道，绑定在当前线程上，由 AdaptiveConcurrencyLimiter 读取。
+ * 默认是 INTERACTIVE；文档同步等后台任务在 BACKGROUND 通道内执行，排队时总是让位于交互请求。
+ */
+public enum ModelLane {
+
+    // 用户对话等交互请求
+    INTERACTIVE,
+
+    // 文档同步、批量任务等后台请求
+    BACKGROUND;
+
+    /**
+     * 流式调用时通道在 Reactor Context 中的 key，订阅方通过 contextWrite 写入
+     */
+    public static final String CONTEXT_KEY = "model_lane";
+
+    private static final ThreadLocal<ModelLane> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程所在的通道，未设置时为 INTERACTIVE
+     */
+    public static ModelLane current() {
+        ModelLane lane = CURRENT.get();
+        return lane == null ? INTERACTIVE : lane;
+    }
+
+    /**
+     * 在当前通道内执行操作，结束后恢复原来的通道
+     *
+     * @param action 操作
+     * @return 操作结果
+     */
+    public <T> T call(Supplier<T> action) {
+        ModelLane previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 在当前通道内执行操作，结束后恢复原来的通道
+     *
+     * @param action 操作
+     */
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.xiaowu.common;
+
+/**
+ * 单次向量检索的参数。
+ *
+ * @param efSearch            HNSW 查询的候选集大小，通过 SET LOCAL hnsw.ef_search 只对本次查询生效
+ * @param topK                返回的文档数量
+ * @param similarityThreshold 相似度下限，低于该值的结果被过滤
+ * @param confidenceThreshold 自适应模式下最相关结果的相似度要求，低于该值时加大 efSearch 重新检索；0 表示不启用
+ * @param maxEfSearch         自适应模式下 efSearch 的上限
+ */
+public record SearchProfile(int efSearch, int topK, double similarityThreshold,
+                            double confidenceThreshold, int maxEfSearch) {
+
+    // pgvector 允许的 hnsw.ef_search 取值范围
+    private static final int MIN_EF_SEARCH = 1;
+
+    private static final int MAX_EF_SEARCH = 1000;
+
+    public SearchProfile {
+        if (topK <= 0) {
+            throw new IllegalArgumentException("topK must be positive, but was %d".formatted(topK));
+        }
+        // ef_search 小于 topK 时 HNSW 最多只能返回 ef_search 条结果
+        efSearch = clamp(Math.max(efSearch, topK));
+        maxEfSearch = clamp(Math.max(maxEfSearch, efSearch));
+    }
+
+    /**
+     * 是否启用自适应扩大检索
+     */
+    public boolean adaptive() {
+        return confidenceThreshold > 0 && maxEfSearch > efSearch;
+    }
+
+    /**
+     * 扩大一次检索范围：efSearch 翻倍，不超过 maxEfSearch
+     */
+    public SearchProfile widen() {
+        return new SearchProfile(Math.min(maxEfSearch, efSearch * 2), topK, similarityThreshold,
+                confidenceThreshold, maxEfSearch);
+    }
+
+    /**
+     * 时间预算不足时使用的检索参数：efSearch 减半（不低于 topK），关闭自适应扩大
+     */
+    public SearchProfile reduced() {
+        return new SearchProfile(efSearch / 2, topK, similarityThreshold, 0, 0);
+    }
+
+    /**
+     * 用请求参数覆盖部分设置，参数为空时沿用当前值
+     */
+    public SearchProfile override(Integer efSearch, Integer topK, Double similarityThreshold) {
+        return new SearchProfile(
+                efSearch == null ? this.efSearch : efSearch,
+                topK == null ? this.topK : topK,
+                similarityThreshold == null ? this.similarityThreshold : similarityThreshold,
+                confidenceThreshold,
+                maxEfSearch);
+    }
+
+    private static int clamp(int efSearch) {
+        return Math.max(MIN_EF_SEARCH, Math.min(MAX_EF_SEARCH, efSearch));
+    }
+}
@@ -0,0 +1,93 @@
+package com.xiaowu.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 按文档章节切块：遇到标题时结束当前分块，章节内容超过 maxChars 时在块的边界处切开，单个超长的块按长度硬切。
+ * 每个分块以所在章节的标题路径开头，脱离上下文检索到时仍能看出出处。
+ * <p>
+ * 内容块逐个传入，切好的分块立即交给 sink，任何时候只保留当前分块与标题路径，内存占用与文档大小无关。
+ */
+public class SectionChunker implements Consumer<DocBlock> {
+
+    // 飞书文档的标题级别
+    private static final int HEADING_LEVELS = 9;
+
+    private final int maxChars;
+
+    private final Consumer<String> sink;
+
+    private final String[] headings = new String[HEADING_LEVELS];
+
+    private final StringBuilder body = new StringBuilder();
+
+    public SectionChunker(int maxChars, Consumer<String> sink) {
+        this.maxChars = maxChars;
+        this.sink = sink;
+    }
+
+    @Override
+    public void accept(DocBlock block) {
+        if (block.text() == null || block.text().isBlank()) {
+            return;
+        }
+        if (block.kind() == DocBlock.Kind.HEADING) {
+            flush();
+            int level = Math.min(HEADING_LEVELS, Math.max(1, block.level()));
+            headings[level - 1] = block.text().strip();
+            // 新标题之下的更低级别标题不再属于当前章节
+            for (int i = level; i < HEADING_LEVELS; i++) {
+                headings[i] = null;
+            }
+            return;
+        }
+
+        // 表格同一行的单元格用 | 连接，其他块各占一行
+        boolean sameLine = block.kind() == DocBlock.Kind.TABLE_CELL && block.level() > 0 && !body.isEmpty();
+        String separator = body.isEmpty() ? "" : sameLine ? " | " : "\n";
+        String text = render(block);
+        if (!body.isEmpty() && body.length() + separator.length() + text.length() > maxChars) {
+            flush();
+            separator = "";
+        }
+        while (text.length() > maxChars) {
+            body.append(text, 0, maxChars);
+            flush();
+            text = text.substring(maxChars);
+        }
+        body.append(separator).append(text);
+    }
+
+    /**
+     * 文档读取完毕，输出最后一个分块
+     */
+    public void finish() {
+        flush();
+    }
+
+    private void flush() {
+        if (body.toString().isBlank()) {
+            body.setLength(0);
+            return;
+        }
+        List<String> path = new ArrayList<>();
+        for (String heading : headings) {
+            if (heading != null) {
+                path.add(heading);
+            }
+        }
+        sink.accept(path.isEmpty() ? body.toString() : String.join(" > ", path) + "\n" + body);
+        body.setLength(0);
+    }
+
+    private static String render(DocBlock block) {
+        String text = block.text().strip();
+        return switch (block.kind()) {
+            case LIST_ITEM -> "- " + text;
+            case QUOTE -> "> " + text;
+            default -> text;
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.xiaowu.common;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 结构化并发作用域：每个子任务在一个虚拟线程上执行，任一子任务失败或等待超时时取消（中断）其余子任务，
+ * 关闭作用域时等待所有子任务结束，子任务不会泄漏到作用域之外。
+ * <p>
+ * 语义参照 JDK 的 StructuredTaskScope.ShutdownOnFailure，它在 Java 21 中仍是预览 API（需要 --enable-preview），
+ * 这里用虚拟线程执行器实现同样的行为。用法：
+ * <pre>
+ * try (ShutdownOnFailureScope scope = new ShutdownOnFailureScope("prepare")) {
+ *     Supplier&lt;A&gt; a = scope.fork(...);
+ *     Supplier&lt;B&gt; b = scope.fork(...);
+ *     scope.join(timeout);
+ *     use(a.get(), b.get());
+ * }
+ * </pre>
+ * 作用域只能在创建它的线程上 fork / join。
+ */
+public final class ShutdownOnFailureScope implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    // 子任务失败时会在子任务线程上遍历取消，因此使用线程安全的列表
+    private final List<Future<?>> subtasks = new CopyOnWriteArrayList<>();
+
+    // 未结束的子任务数，初始的 1 代表作用域所有者，join 时释放，避免 fork 期间先完成的子任务提前触发结束
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    // 所有子任务成功结束时正常完成，第一个子任务失败时以该异常完成
+    private final CompletableFuture<Void> settled = new CompletableFuture<>();
+
+    /**
+     * @param name 子任务线程名前缀
+     */
+    public ShutdownOnFailureScope(String name) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /**
+     * 在新的虚拟线程上执行子任务
+     *
+     * @param task 子任务
+     * @return 子任务结果，只能在 join 成功返回之后读取
+     */
+    public <T> Supplier<T> fork(Callable<T> task) {
+        pending.incrementAndGet();
+        // 在 done 中（结果已设置之后）才更新状态，join 返回时每个子任务的结果都已可读
+        FutureTask<T> future = new FutureTask<>(task) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                if (state() == State.FAILED) {
+                    if (settled.completeExceptionally(exceptionNow())) {
+                        shutdown();
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    settled.complete(null);
+                }
+            }
+        };
+        subtasks.add(future);
+        executor.execute(future);
+        return future::resultNow;
+    }
+
+    /**
+     * 等待所有子任务成功结束。任一子任务失败时取消其余子任务并抛出该失败；超时同样取消所有子任务
+     *
+     * @param timeout 最长等待时间，为空表示不限时
+     * @throws TimeoutException     等待超时
+     * @throws InterruptedException 等待期间被中断
+     */
+    public void join(Duration timeout) throws TimeoutException, InterruptedException {
+        if (pending.decrementAndGet() == 0) {
+            settled.complete(null);
+        }
+        try {
+            if (timeout == null) {
+                settled.get();
+            } else {
+                settled.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            shutdown();
+            throw e;
+        }
+    }
+
+    /**
+     * 取消所有未结束的子任务
+     */
+    private void shutdown() {
+        subtasks.forEach(subtask -> subtask.cancel(true));
+    }
+
+    /**
+     * 取消未结束的子任务并等待所有子任务线程退出
+     */
+    @Override
+    public void close() {
+        shutdown();
+        executor.close();
+    }
+}
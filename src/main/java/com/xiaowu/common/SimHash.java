@@ -0,0 +1,87 @@
+package com.xiaowu.common;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 64 位 SimHash：内容相近的文本得到汉明距离很小的指纹，用于在检索结果中合并模板副本、轻微改动的文档分块。
+ * <p>
+ * 特征为归一化后文本的字符 3-gram（对中文同样有效），按出现次数加权。
+ * 距离小只说明文本相近，不说明内容相同：改动一个数字的两段文本距离通常不超过 3，因此指纹不用于共用向量。
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SimHash {
+
+    // n-gram 长度
+    private static final int GRAM = 3;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 计算文本的指纹
+     */
+    public static long of(String text) {
+        String normalized = normalize(text);
+        Map<String, Integer> features = new HashMap<>();
+        if (normalized.length() <= GRAM) {
+            features.put(normalized, 1);
+        } else {
+            for (int i = 0; i + GRAM <= normalized.length(); i++) {
+                features.merge(normalized.substring(i, i + GRAM), 1, Integer::sum);
+            }
+        }
+
+        int[] weights = new int[64];
+        features.forEach((feature, count) -> {
+            long hash = hash(feature);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? count : -count;
+            }
+        });
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * 两个指纹的汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 忽略大小写与空白差异
+     */
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * FNV-1a 后再做一次 murmur3 的末尾混合，让每一位都均匀分布
+     */
+    private static long hash(String feature) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < feature.length(); i++) {
+            hash ^= feature.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
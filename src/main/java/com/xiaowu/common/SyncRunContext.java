@@ -0,0 +1,171 @@
+package com.xiaowu.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 一次文档同步运行过程中的统计数据：各阶段耗时、各类文档数量以及耗时最长的文档。
+ * 同步本身只列出文档并写入 base_doc（LIST / DB 与各类数量），文档内容的读取与向量写入由发件箱完成，
+ * 记在触发方式为 RELAY 的运行中（READ_DOC / EMBED / VECTOR_STORE、失败数与耗时最长的文档）。
+ * <p>
+ * 同步开始时通过 {@link #open()} 绑定到当前线程，同步链路上的代码通过 {@link #current()} 累加数据；
+ * 没有绑定时 current() 返回一个不会被记录的临时实例，调用方无需判空。
+ */
+public final class SyncRunContext {
+
+    /**
+     * 同步过程中的阶段
+     */
+    public enum Phase {
+        // 列出飞书文件夹中的文档
+        LIST,
+        // 读取文档内容并切块（不含其间生成向量与写入向量库的时间）
+        READ_DOC,
+        // 调用向量模型生成向量
+        EMBED,
+        // 向量库写入与删除（不含生成向量的时间）
+        VECTOR_STORE,
+        // base_doc 表的读写；发件箱中为分块记录的替换
+        DB
+    }
+
+    /**
+     * 单个文档的处理耗时
+     */
+    public record DocTiming(String docId, String docName, long millis) {
+    }
+
+    // 保留耗时最长的文档数量
+    private static final int SLOWEST_LIMIT = 10;
+
+    private static final ThreadLocal<SyncRunContext> CURRENT = new ThreadLocal<>();
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    // 小顶堆，只保留耗时最长的若干个文档
+    private final PriorityQueue<DocTiming> slowest = new PriorityQueue<>(Comparator.comparingLong(DocTiming::millis));
+
+    private int added;
+
+    private int updated;
+
+    private int deleted;
+
+    private int skipped;
+
+    private int failed;
+
+    private SyncRunContext() {
+    }
+
+    /**
+     * 创建新的统计实例并绑定到当前线程
+     */
+    public static SyncRunContext open() {
+        SyncRunContext context = new SyncRunContext();
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * 解除当前线程绑定的统计实例
+     */
+    public static void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 获取当前线程绑定的统计实例，没有时返回不会被记录的临时实例
+     */
+    public static SyncRunContext current() {
+        SyncRunContext context = CURRENT.get();
+        return context == null ? new SyncRunContext() : context;
+    }
+
+    /**
+     * 执行操作并把耗时累加到指定阶段
+     */
+    public <T> T time(Phase phase, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            addTime(phase, System.nanoTime() - start);
+        }
+    }
+
+    public synchronized void addTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public synchronized long nanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public synchronized long millis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(phaseNanos[phase.ordinal()]);
+    }
+
+    /**
+     * 记录单个文档的处理耗时
+     */
+    public synchronized void recordDoc(String docId, String docName, long nanos) {
+        slowest.offer(new DocTiming(docId, docName, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        if (slowest.size() > SLOWEST_LIMIT) {
+            slowest.poll();
+        }
+    }
+
+    /**
+     * 耗时最长的文档，按耗时降序
+     */
+    public synchronized List<DocTiming> slowestDocs() {
+        List<DocTiming> docs = new ArrayList<>(slowest);
+        docs.sort(Comparator.comparingLong(DocTiming::millis).reversed());
+        return docs;
+    }
+
+    public synchronized void added(int count) {
+        added += count;
+    }
+
+    public synchronized void updated(int count) {
+        updated += count;
+    }
+
+    public synchronized void deleted(int count) {
+        deleted += count;
+    }
+
+    public synchronized void skipped(int count) {
+        skipped += count;
+    }
+
+    public synchronized void failed(int count) {
+        failed += count;
+    }
+
+    public synchronized int added() {
+        return added;
+    }
+
+    public synchronized int updated() {
+        return updated;
+    }
+
+    public synchronized int deleted() {
+        return deleted;
+    }
+
+    public synchronized int skipped() {
+        return skipped;
+    }
+
+    public synchronized int failed() {
+        return failed;
+    }
+}
@@ -0,0 +1,36 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 批量问答配置，对应 application.yml 中的 batch
+ */
+@Configuration
+@ConfigurationProperties(prefix = "batch")
+@Data
+public class BatchConfig {
+
+    // 请求未指定时同时执行的问题数
+    private int defaultParallelism = 4;
+
+    // 同时执行的问题数上限（模型调用另外受并发限制器约束）
+    private int maxParallelism = 16;
+
+    // 单个任务的最大问题数
+    private int maxQuestions = 1000;
+
+    // 任务执行租约，每完成一个问题续期；需要大于单个问题的最长时间预算（chat.deadline.max-budget）
+    private Duration lease = Duration.ofMinutes(5);
+
+    /**
+     * 计算本次任务的并发数：未指定时使用默认值，并限制在 1 到上限之间
+     */
+    public int parallelism(Integer requested) {
+        int parallelism = requested == null ? defaultParallelism : requested;
+        return Math.max(1, Math.min(maxParallelism, parallelism));
+    }
+}
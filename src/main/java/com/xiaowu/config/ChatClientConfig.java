@@ -1,10 +1,19 @@
 package com.xiaowu.config;
 
+import com.xiaowu.advisor.ChatTelemetryAdvisor;
+import com.xiaowu.advisor.CoalescingAdvisor;
+import com.xiaowu.advisor.DeadlineAdvisor;
+import com.xiaowu.advisor.ModelRoutingAdvisor;
+import com.xiaowu.advisor.PromptPrefixAdvisor;
+import com.xiaowu.advisor.RetrievalAdvisor;
+import com.xiaowu.common.ChatTelemetry;
+import com.xiaowu.service.RetrievalService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.InMemoryChatMemory;
-import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -28,22 +37,54 @@ public class ChatClientConfig {
     private Resource systemResource;
 
     /**
-     * 注册一个 ChatClient Bean，基于 OpenAiChatModel 创建。
+     * 知识库检索顾问，对话准备阶段也用它与读取历史消息并行检索
+     */
+    @Bean
+    public RetrievalAdvisor retrievalAdvisor(RetrievalService retrievalService, RetrievalConfig retrievalConfig,
+                                             ChatDeadlineConfig chatDeadlineConfig, ChatTelemetry chatTelemetry) {
+        return new RetrievalAdvisor(retrievalService, retrievalConfig, chatDeadlineConfig, chatTelemetry);
+    }
+
+    /**
+     * 注册一个 ChatClient Bean，基于带并发限制的对话模型创建。
      * ChatClient 是一个用于与 OpenAI 对话模型交互的封装客户端。
      *
-     * @param openAiChatModel 注入的 OpenAI 对话模型
+     * @param chatModel       注入的对话模型（OpenAiChatModel 外包装了并发限制）
+     * @param chatTelemetry   对话链路耗时与用量统计
+     * @param retrievalAdvisor 知识库检索顾问
+     * @param chatDeadlineConfig 对话时间预算配置
+     * @param modelRoutingConfig 模型路由配置
+     * @param coalescingConfig 相同请求合并配置
+     * @param meterRegistry   指标注册表
      * @return 配置好的 ChatClient 实例
      */
     @Bean
-    public ChatClient MoNika(OpenAiChatModel openAiChatModel) {
-        return ChatClient.builder(openAiChatModel) // 使用 OpenAiChatModel 构建 ChatClient
+    public ChatClient MoNika(ChatModel chatModel, ChatTelemetry chatTelemetry,
+                             RetrievalAdvisor retrievalAdvisor, ChatDeadlineConfig chatDeadlineConfig,
+                             ModelRoutingConfig modelRoutingConfig, CoalescingConfig coalescingConfig,
+                             MeterRegistry meterRegistry) {
+        return ChatClient.builder(chatModel) // 使用对话模型构建 ChatClient
                 .defaultOptions(OpenAiChatOptions.builder()
                         // temperature 控制生成回复的随机性（创造力），0.7 是一个中等值
                         .temperature(0.7)
+                        // 流式调用时在最后一个分片返回 token 用量
+                        .streamUsage(true)
                         .build()
                 )
                 // 设置系统提示词（用于定义 ChatGPT 的角色、行为等）
                 .defaultSystem(systemResource)
+                // 检索知识库，检索结果由 PromptPrefixAdvisor 拼接到提示词末尾
+                .defaultAdvisors(retrievalAdvisor,
+                        // 时间预算不足时缩减历史消息
+                        new DeadlineAdvisor(chatDeadlineConfig),
+                        // 按问题复杂度选择模型
+                        new ModelRoutingAdvisor(modelRoutingConfig))
+                // 固定提示词组装顺序，使多轮对话前缀保持一致以命中服务商的前缀缓存
+                .defaultAdvisors(new PromptPrefixAdvisor(),
+                        // 合并窗口内仍在进行、上下文完全相同的请求（主要是首轮问题），共享一次模型调用
+                        new CoalescingAdvisor(coalescingConfig, meterRegistry),
+                        // 记录模型调用的首 token 耗时、总耗时与 token 用量
+                        new ChatTelemetryAdvisor(chatTelemetry))
                 .build(); // 构建 ChatClient 实例
     }
 }
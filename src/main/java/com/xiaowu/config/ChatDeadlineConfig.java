@@ -0,0 +1,48 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 对话时间预算配置，对应 application.yml 中的 chat.deadline
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.deadline")
+@Data
+public class ChatDeadlineConfig {
+
+    // 请求未指定预算时使用的默认预算
+    private Duration defaultBudget = Duration.ofSeconds(60);
+
+    // 请求可以指定的最大预算
+    private Duration maxBudget = Duration.ofSeconds(120);
+
+    // 检索前剩余时间低于该值时跳过检索
+    private Duration skipRetrievalBelow = Duration.ofSeconds(5);
+
+    // 检索前剩余时间低于该值时缩小 ef_search 并关闭自适应扩大
+    private Duration reduceSearchBelow = Duration.ofSeconds(15);
+
+    // 组装提示词前剩余时间低于该值时只保留最近的历史消息
+    private Duration shrinkHistoryBelow = Duration.ofSeconds(15);
+
+    // 缩减历史时保留的消息条数
+    private int shrinkHistoryTo = 4;
+
+    /**
+     * 计算本次请求的预算：未指定时使用默认值，超过上限时取上限
+     *
+     * @param budgetMillis 请求指定的预算（毫秒），可以为空
+     * @return 预算
+     */
+    public Duration budget(Long budgetMillis) {
+        if (budgetMillis == null || budgetMillis <= 0) {
+            return defaultBudget;
+        }
+        Duration requested = Duration.ofMillis(budgetMillis);
+        return requested.compareTo(maxBudget) > 0 ? maxBudget : requested;
+    }
+}
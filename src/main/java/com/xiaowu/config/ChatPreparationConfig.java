@@ -0,0 +1,17 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话准备阶段（读取历史消息、检索知识库）的配置，对应 application.yml 中的 chat.preparation
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.preparation")
+@Data
+public class ChatPreparationConfig {
+
+    // 是否在虚拟线程上并行执行各准备步骤，关闭后依次执行，可对比 chat.stage{stage=prepare} 的耗时
+    private boolean parallel = true;
+}
@@ -0,0 +1,22 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 进行中的相同问题合并请求的配置，对应 application.yml 中的 chat.coalescing
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.coalescing")
+@Data
+public class CoalescingConfig {
+
+    // 是否启用请求合并
+    private boolean enabled = true;
+
+    // 合并窗口：第一个请求开始后这段时间内到达的相同请求等待并复用其结果；调用结束后不再复用
+    private Duration window = Duration.ofSeconds(10);
+}
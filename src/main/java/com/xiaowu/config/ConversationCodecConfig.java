@@ -0,0 +1,28 @@
+package com.xiaowu.config;
+
+import com.xiaowu.common.ConversationCodec;
+import com.xiaowu.common.JacksonConversationCodec;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 会话内容编解码配置，对应 application.yml 中的 conversation.codec
+ */
+@Configuration
+@ConfigurationProperties(prefix = "conversation.codec")
+@Data
+public class ConversationCodecConfig {
+
+    // 新写入会话使用的格式，读取时会自动识别各种格式
+    private JacksonConversationCodec.Format format = JacksonConversationCodec.Format.SMILE;
+
+    // 编码后超过该字节数时进行 GZIP 压缩，小于等于 0 表示不压缩
+    private int compressThreshold = 4096;
+
+    @Bean
+    public ConversationCodec conversationCodec() {
+        return new JacksonConversationCodec(format, compressThreshold);
+    }
+}
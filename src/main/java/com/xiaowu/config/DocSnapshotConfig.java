@@ -0,0 +1,27 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * 飞书文档内容本地快照配置，对应 application.yml 中的 feishu.snapshot
+ */
+@Configuration
+@ConfigurationProperties(prefix = "feishu.snapshot")
+@Data
+public class DocSnapshotConfig {
+
+    // 是否把读取到的文档内容保存到本地，内容未变化时直接从本地读取
+    private boolean enabled = true;
+
+    // 段文件所在目录
+    private String directory = "data/snapshots";
+
+    // 段文件写满该大小后切换到新的段文件，不能超过 2GB（按 int 偏移映射）
+    private DataSize segmentSize = DataSize.ofMegabytes(256);
+
+    // 段文件中失效内容（已更新或删除的文档）超过该比例时整理
+    private double compactionGarbageRatio = 0.5;
+}
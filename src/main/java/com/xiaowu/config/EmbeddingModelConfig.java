@@ -0,0 +1,51 @@
+package com.xiaowu.config;
+
+import com.xiaowu.common.AdaptiveConcurrencyLimiter;
+import com.xiaowu.common.BatchingEmbeddingModel;
+import com.xiaowu.common.InstrumentedEmbeddingModel;
+import com.xiaowu.common.LimitedEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+
+/**
+ * 向量模型配置：在 OpenAI 向量模型外依次包装并发限制、批量网关与耗时统计装饰器，
+ * 向量库等依赖 EmbeddingModel 的组件都会注入这个主 Bean。
+ * 统计装饰器在最外层，同步记录的 EMBED 耗时包含等待合并与排队等待许可的时间；
+ * 批量网关在并发限制之外，合并后的一次调用只占用一个许可。
+ * 批量网关参数对应 application.yml 中的 embedding.batch。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "embedding.batch")
+@Data
+public class EmbeddingModelConfig {
+
+    // 是否合并并发的向量请求
+    private boolean enabled = true;
+
+    // 每次调用最多包含的文本数
+    private int maxBatchSize = 64;
+
+    // 第一个请求到达后最多等待的时间
+    private Duration maxWait = Duration.ofMillis(5);
+
+    @Bean
+    @Primary
+    public EmbeddingModel embeddingModel(OpenAiEmbeddingModel openAiEmbeddingModel,
+                                         @Qualifier("embeddingModelLimiter") AdaptiveConcurrencyLimiter embeddingModelLimiter,
+                                         MeterRegistry meterRegistry) {
+        EmbeddingModel limited = new LimitedEmbeddingModel(openAiEmbeddingModel, embeddingModelLimiter);
+        if (!enabled) {
+            return new InstrumentedEmbeddingModel(limited);
+        }
+        return new InstrumentedEmbeddingModel(new BatchingEmbeddingModel(limited, maxBatchSize, maxWait, meterRegistry));
+    }
+}
@@ -0,0 +1,34 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 全文检索与混合检索配置，对应 application.yml 中的 retrieval.lexical
+ */
+@Configuration
+@ConfigurationProperties(prefix = "retrieval.lexical")
+@Data
+public class LexicalSearchConfig {
+
+    // 是否在向量检索的同时执行全文检索并融合结果
+    private boolean enabled = true;
+
+    // 查询使用的全文检索配置，需要与 vector_store.content_tsv 生成列使用的配置一致（中文分词如 zhparser 的 chinese）
+    private String textSearchConfig = "simple";
+
+    // 全文检索最多等待该时间后再开始向量检索，期间全文检索命中足够好时跳过向量检索与嵌入调用
+    private Duration fastPathDelay = Duration.ofMillis(20);
+
+    // 跳过向量检索需要的最低归一化得分（ts_rank_cd 归一化到 0 ~ 1）
+    private double fastPathRank = 0.5;
+
+    // 跳过向量检索需要的最少命中数
+    private int fastPathMinHits = 1;
+
+    // 倒数排名融合的平滑常数，越大越看重排名靠后的结果
+    private int rrfK = 60;
+}
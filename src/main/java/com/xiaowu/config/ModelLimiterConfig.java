@@ -0,0 +1,47 @@
+package com.xiaowu.config;
+
+import com.xiaowu.common.AdaptiveConcurrencyLimiter;
+import com.xiaowu.common.LimitedChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 模型调用并发限制配置，对应 application.yml 中的 model.limiter。
+ * 对话模型与向量模型各有一个自适应限制器；对话模型在这里包装为主 Bean，
+ * 向量模型的包装见 EmbeddingModelConfig。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "model.limiter")
+@Data
+public class ModelLimiterConfig {
+
+    // 对话模型的限制器参数
+    private AdaptiveConcurrencyLimiter.Settings chat = new AdaptiveConcurrencyLimiter.Settings();
+
+    // 向量模型的限制器参数
+    private AdaptiveConcurrencyLimiter.Settings embedding = new AdaptiveConcurrencyLimiter.Settings();
+
+    @Bean
+    public AdaptiveConcurrencyLimiter chatModelLimiter(MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyLimiter("chat", chat, meterRegistry);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter embeddingModelLimiter(MeterRegistry meterRegistry) {
+        return new AdaptiveConcurrencyLimiter("embedding", embedding, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public ChatModel chatModel(OpenAiChatModel openAiChatModel,
+                               @Qualifier("chatModelLimiter") AdaptiveConcurrencyLimiter chatModelLimiter) {
+        return new LimitedChatModel(openAiChatModel, chatModelLimiter);
+    }
+}
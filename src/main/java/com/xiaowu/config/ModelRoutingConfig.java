@@ -0,0 +1,57 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按问题复杂度选择模型的路由配置，对应 application.yml 中的 chat.routing
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat.routing")
+@Data
+public class ModelRoutingConfig {
+
+    // 是否启用路由，关闭时所有请求使用默认模型
+    private boolean enabled = true;
+
+    // 是否使用本地关键词分类器判断问题是否简单
+    private boolean classifierEnabled = true;
+
+    // 出现这些词时认为问题需要推理、分析，不是简单问题
+    private List<String> complexKeywords = new ArrayList<>();
+
+    // 候选路由，按顺序匹配第一个满足全部条件的路由
+    private List<Route> routes = new ArrayList<>();
+
+    // 没有路由匹配时使用的路由名称（使用默认模型）
+    private String defaultRoute = "default";
+
+    /**
+     * 单个路由：满足全部条件的请求使用该路由的模型，条件取值小于等于 0 表示不限制
+     */
+    @Data
+    public static class Route {
+
+        // 路由名称，用于指标标签
+        private String name;
+
+        // 使用的模型
+        private String model;
+
+        // 问题的最大字符数
+        private int maxQuestionChars;
+
+        // 检索到的参考资料的最大字符数
+        private int maxContextChars;
+
+        // 历史消息的最大条数
+        private int maxHistoryMessages;
+
+        // 是否要求分类器判断为简单问题
+        private boolean requireSimple;
+    }
+}
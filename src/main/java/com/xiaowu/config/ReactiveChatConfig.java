@@ -0,0 +1,64 @@
+package com.xiaowu.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * 响应式对话链路配置，对应 application.yml 中的 chat.reactive，仅在 chat.stack=reactive 时生效。
+ * <p>
+ * R2DBC 连接池在这里手动创建，并在 application.yml 中排除了 Spring Boot 的 R2DBC 自动配置：
+ * 自动配置会额外注册一个 R2DBC 事务管理器，与现有的 JDBC 事务管理器并存后 @Transactional 无法确定使用哪一个。
+ * 响应式链路只用 DatabaseClient 读写会话内容，不需要响应式事务。
+ * <p>
+ * 只有会话内容的读写走 R2DBC；接口仍由 Spring MVC 以异步请求处理，检索等阻塞阶段在 boundedElastic 线程池上执行。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "chat", name = "stack", havingValue = "reactive")
+@ConfigurationProperties(prefix = "chat.reactive")
+@Data
+public class ReactiveChatConfig {
+
+    // R2DBC 连接地址，与 spring.datasource.url 指向同一个库
+    private String url = "r2dbc:postgresql://localhost:5432/springai";
+
+    private String username;
+
+    private String password;
+
+    // 连接池初始连接数
+    private int initialPoolSize = 4;
+
+    // 连接池最大连接数，连接不随并发请求数增长，只在读写会话的短暂时间内占用
+    private int maxPoolSize = 20;
+
+    // 获取连接的最长等待时间
+    private Duration maxAcquireTime = Duration.ofSeconds(5);
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool chatConnectionFactory() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(initialPoolSize)
+                .maxSize(maxPoolSize)
+                .maxAcquireTime(maxAcquireTime)
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient chatDatabaseClient(ConnectionPool chatConnectionFactory) {
+        return DatabaseClient.create(chatConnectionFactory);
+    }
+}
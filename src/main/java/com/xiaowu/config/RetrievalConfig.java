@@ -0,0 +1,40 @@
+package com.xiaowu.config;
+
+import com.xiaowu.common.SearchProfile;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 向量检索配置，对应 application.yml 中的 retrieval，按名称定义多组检索参数
+ */
+@Configuration
+@ConfigurationProperties(prefix = "retrieval")
+@Data
+public class RetrievalConfig {
+
+    // 未指定检索参数名称时使用的配置
+    private String defaultProfile = "answer";
+
+    // 检索参数名称 -> 检索参数
+    private Map<String, SearchProfile> profiles = new LinkedHashMap<>();
+
+    /**
+     * 按名称获取检索参数，名称为空时返回默认配置
+     *
+     * @param name 检索参数名称
+     * @return 检索参数
+     */
+    public SearchProfile profile(String name) {
+        String key = StringUtils.hasText(name) ? name : defaultProfile;
+        SearchProfile profile = profiles.get(key);
+        if (profile == null) {
+            throw new IllegalArgumentException("unknown search profile: %s".formatted(key));
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,37 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 文档定时同步的自适应调度配置，对应 application.yml 中的 sync.schedule
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sync.schedule")
+@Data
+public class SyncScheduleConfig {
+
+    // 启动后的第一次同步间隔
+    private Duration initialInterval = Duration.ofMinutes(1);
+
+    // 同步间隔下限，文档频繁变化时收敛到这里
+    private Duration minInterval = Duration.ofSeconds(30);
+
+    // 同步间隔上限，文档长时间不变时收敛到这里
+    private Duration maxInterval = Duration.ofMinutes(30);
+
+    // 没有变化时间隔的放大倍数
+    private double backoffFactor = 1.5;
+
+    // 变化率的平滑系数，越大越看重最近几次同步
+    private double smoothing = 0.3;
+
+    // 间隔至少为上次同步耗时的倍数，保证同步只占用一部分时间
+    private double durationMultiplier = 2.0;
+
+    // 每次间隔随机浮动的比例，多个实例之间错开同步时间
+    private double jitter = 0.1;
+}
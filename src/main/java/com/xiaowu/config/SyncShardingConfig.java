@@ -0,0 +1,29 @@
+package com.xiaowu.config;
+
+import com.xiaowu.utils.IdUtil;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 多实例分片同步配置，对应 application.yml 中的 sync.sharding
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sync.sharding")
+@Data
+public class SyncShardingConfig {
+
+    // 实例 ID，未配置时每次启动随机生成
+    private String nodeId = IdUtil.gen32UUID();
+
+    // 心跳间隔
+    private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+    // 超过该时间没有心跳的实例视为下线，它的数据源由其他实例接管
+    private Duration nodeTtl = Duration.ofSeconds(30);
+
+    // 每个实例在哈希环上的虚拟节点数
+    private int virtualNodes = 64;
+}
@@ -0,0 +1,26 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 文档分块与检索结果合并配置，对应 application.yml 中的 vector.chunk
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vector.chunk")
+@Data
+public class VectorChunkConfig {
+
+    // 每个分块的最大字符数，章节超过该长度时在内容块边界处切开
+    private int maxChars = 800;
+
+    // 待写入的向量攒满该条数时写入一次，限制超大文档占用的内存
+    private int flushSize = 64;
+
+    // 检索结果中是否合并内容近似重复的分块
+    private boolean collapseResults = true;
+
+    // 检索结果合并时视为近似重复的最大 SimHash 汉明距离
+    private int maxDistance = 3;
+}
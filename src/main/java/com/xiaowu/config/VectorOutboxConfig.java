@@ -0,0 +1,28 @@
+package com.xiaowu.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 向量写入发件箱配置，对应 application.yml 中的 vector.outbox
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vector.outbox")
+@Data
+public class VectorOutboxConfig {
+
+    // 每批领取的记录数，同一批的向量合并为一次写入
+    private int batchSize = 20;
+
+    // 领取后的租约时长，处理者中途退出时租约到期后由其他处理者重新领取
+    private Duration lease = Duration.ofMinutes(5);
+
+    // 第一次失败后的重试间隔，之后每次翻倍
+    private Duration initialBackoff = Duration.ofSeconds(10);
+
+    // 重试间隔上限
+    private Duration maxBackoff = Duration.ofMinutes(30);
+}
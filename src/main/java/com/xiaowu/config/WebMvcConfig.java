@@ -34,6 +34,8 @@ public class WebMvcConfig implements WebMvcConfigurer {
                 .allowedOriginPatterns("*") // Spring 2.4+ 推荐用这个代替 allowedOrigins
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                // 允许前端读取条件请求的 ETag 与对话降级信息
+                .exposedHeaders("ETag", "X-Chat-Degradations")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
@@ -0,0 +1,46 @@
+package com.xiaowu.controller;
+
+
+import com.xiaowu.entity.vo.BatchJobVO;
+import com.xiaowu.entity.vo.BatchRequestVO;
+import com.xiaowu.service.BatchService;
+import com.xiaowu.utils.RestResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/batch")
+@RequiredArgsConstructor
+public class BatchController {
+
+    private final BatchService batchService;
+
+    /**
+     * 提交批量问答任务，以 SSE 推送结果：job（任务信息）→ item（每个问题完成时）→ done
+     */
+    @PostMapping(value = "/qa", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter submit(@RequestBody BatchRequestVO request) {
+        return batchService.submit(request);
+    }
+
+    /**
+     * 继续执行任务中未成功的问题，事件格式与提交时相同
+     */
+    @PostMapping(value = "/{jobId}/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter resume(@PathVariable("jobId") String jobId) {
+        return batchService.resume(jobId);
+    }
+
+    @GetMapping("/{jobId}")
+    public RestResult<BatchJobVO> get(@PathVariable("jobId") String jobId) {
+        return RestResult.buildSuccessResult(batchService.get(jobId));
+    }
+
+}
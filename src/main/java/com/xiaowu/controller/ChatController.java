@@ -1,19 +1,21 @@
 package com.xiaowu.controller;
 
 
-import java.util.List;
-
-import com.xiaowu.advisor.ChatMessageAdvisor;
+import com.xiaowu.common.ListingEtagCache;
+import com.xiaowu.common.ListingEtagCache.Listing;
+import com.xiaowu.config.ChatDeadlineConfig;
+import com.xiaowu.entity.vo.ChatReplyVO;
 import com.xiaowu.entity.vo.ConversationVO;
 import com.xiaowu.service.ChatService;
 import com.xiaowu.utils.RestResult;
 import lombok.RequiredArgsConstructor;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -23,11 +25,11 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/conversation")
 public class ChatController {
 
-    final ChatClient chatClient;
+    final ChatService chatService;
 
-    final ChatMemory chatMemory;
+    final ListingEtagCache listingEtagCache;
 
-    final ChatService chatService;
+    final ChatDeadlineConfig chatDeadlineConfig;
 
 
     @PostMapping("/create")
@@ -43,14 +45,20 @@ public class ChatController {
         return RestResult.buildSuccessResult();
     }
 
+    /**
+     * 对话，可以通过 X-Chat-Budget-Ms 请求头指定时间预算；
+     * 预算不足时采取的降级措施通过 X-Chat-Degradations 响应头返回
+     */
     @GetMapping("/chat")
-    public RestResult<String> chat(@RequestParam(value = "conversationId") String conversationId,
-        @RequestParam(value = "message") String message) {
-        return RestResult.buildSuccessResult(chatClient.prompt()
-            .user(message)
-            .advisors(new ChatMessageAdvisor(chatMemory, conversationId))
-            .call()
-            .content());
+    public ResponseEntity<RestResult<String>> chat(@RequestParam(value = "conversationId") String conversationId,
+        @RequestParam(value = "message") String message,
+        @RequestHeader(value = "X-Chat-Budget-Ms", required = false) Long budgetMillis) {
+        ChatReplyVO reply = chatService.chat(conversationId, message, chatDeadlineConfig.budget(budgetMillis));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!reply.getDegradations().isEmpty()) {
+            response.header("X-Chat-Degradations", String.join(",", reply.getDegradations()));
+        }
+        return response.body(RestResult.buildSuccessResult(reply.getContent()));
     }
 
     @DeleteMapping("/del")
@@ -59,9 +67,12 @@ public class ChatController {
         return RestResult.buildSuccessResult();
     }
 
+    /**
+     * 会话列表，支持 If-None-Match 条件请求，列表未变化时返回 304
+     */
     @GetMapping("/list")
-    public RestResult<List<ConversationVO>> list() {
-        return RestResult.buildSuccessResult(chatService.list());
+    public ResponseEntity<byte[]> list(@RequestHeader HttpHeaders headers) {
+        return listingEtagCache.respond(Listing.CONVERSATION, headers.getIfNoneMatch(), chatService::list);
     }
 
     @GetMapping("/get")
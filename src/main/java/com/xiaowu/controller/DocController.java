@@ -1,12 +1,25 @@
 package com.xiaowu.controller;
 
 
-import com.xiaowu.entity.vo.DocVO;
+import com.xiaowu.common.ListingEtagCache;
+import com.xiaowu.common.ListingEtagCache.Listing;
+import com.xiaowu.common.SearchProfile;
+import com.xiaowu.config.RetrievalConfig;
+import com.xiaowu.entity.vo.DedupStatsVO;
+import com.xiaowu.entity.vo.SyncRunVO;
+import com.xiaowu.service.DocChunkService;
 import com.xiaowu.service.DocService;
+import com.xiaowu.service.RetrievalService;
+import com.xiaowu.service.SyncRunService;
 import com.xiaowu.utils.RestResult;
 import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -18,15 +31,69 @@ public class DocController {
 
     private final DocService docService;
 
+    private final ListingEtagCache listingEtagCache;
+
+    private final SyncRunService syncRunService;
+
+    private final RetrievalService retrievalService;
+
+    private final RetrievalConfig retrievalConfig;
+
+    private final DocChunkService docChunkService;
+
+    /**
+     * 文档列表，支持 If-None-Match 条件请求，列表未变化时返回 304
+     */
     @GetMapping("/list")
-    public RestResult<List<DocVO>> list() {
-        return RestResult.buildSuccessResult(docService.list());
+    public ResponseEntity<byte[]> list(@RequestHeader HttpHeaders headers) {
+        return listingEtagCache.respond(Listing.DOC, headers.getIfNoneMatch(), docService::list);
     }
 
     @GetMapping("/load")
     public RestResult<String> load() {
-        docService.loadData();
+        syncRunService.run("MANUAL", docService::loadData);
         return RestResult.buildSuccessResult();
     }
 
+    /**
+     * 重新写入所有文档的向量，返回登记的文档数；内容未变化的文档从本地快照读取
+     */
+    @GetMapping("/rebuild")
+    public RestResult<Integer> rebuild() {
+        return RestResult.buildSuccessResult(docService.rebuild());
+    }
+
+    /**
+     * 最近的同步运行记录，可按触发方式过滤。
+     * SCHEDULED / MANUAL 的同步只列出文档并登记变更，记录列出文档与 base_doc 读写的耗时以及新增、更新、删除、跳过的文档数；
+     * 文档内容的读取与向量写入由发件箱异步完成，每批记为一条 RELAY 记录，包含读取、生成向量、写入向量库的耗时、
+     * 失败的文档数与耗时最长的文档
+     */
+    @GetMapping("/sync/runs")
+    public RestResult<List<SyncRunVO>> syncRuns(@RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                @RequestParam(value = "trigger", required = false) String trigger) {
+        return RestResult.buildSuccessResult(syncRunService.recentRuns(limit, trigger));
+    }
+
+    /**
+     * 重复分块去重的效果：节省的嵌入次数与存储
+     */
+    @GetMapping("/dedup/stats")
+    public RestResult<DedupStatsVO> dedupStats() {
+        return RestResult.buildSuccessResult(docChunkService.stats());
+    }
+
+    /**
+     * 检索知识库：先取 profile 对应的检索参数，再用请求中的 efSearch / topK / threshold 覆盖
+     */
+    @GetMapping("/search")
+    public RestResult<List<Document>> search(@RequestParam(value = "query") String query,
+        @RequestParam(value = "profile", required = false) String profile,
+        @RequestParam(value = "efSearch", required = false) Integer efSearch,
+        @RequestParam(value = "topK", required = false) Integer topK,
+        @RequestParam(value = "threshold", required = false) Double threshold) {
+        SearchProfile searchProfile = retrievalConfig.profile(profile).override(efSearch, topK, threshold);
+        return RestResult.buildSuccessResult(retrievalService.search(query, searchProfile));
+    }
+
 }
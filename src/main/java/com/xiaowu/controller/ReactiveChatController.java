@@ -0,0 +1,74 @@
+package com.xiaowu.controller;
+
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.config.ChatDeadlineConfig;
+import com.xiaowu.service.ReactiveChatService;
+import com.xiaowu.utils.RestResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 响应式对话接口（chat.stack=reactive 时启用），会话的创建、查询等仍使用 /api/conversation 下的接口。
+ * 接口返回 Mono / Flux，由 Spring MVC 以异步请求处理（应用不是 WebFlux），进行中的对话不占用 Tomcat 请求线程；
+ * 链路中的阻塞阶段（检索、用量写库、模型限流的等待）在 boundedElastic 线程池上执行，见 ReactiveChatService。
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/reactive/conversation")
+@ConditionalOnProperty(prefix = "chat", name = "stack", havingValue = "reactive")
+public class ReactiveChatController {
+
+    final ReactiveChatService reactiveChatService;
+
+    final ChatDeadlineConfig chatDeadlineConfig;
+
+    /**
+     * 对话，与 /api/conversation/chat 的请求与响应一致
+     */
+    @GetMapping("/chat")
+    public Mono<ResponseEntity<RestResult<String>>> chat(@RequestParam(value = "conversationId") String conversationId,
+        @RequestParam(value = "message") String message,
+        @RequestHeader(value = "X-Chat-Budget-Ms", required = false) Long budgetMillis) {
+        ChatDeadline deadline = ChatDeadline.after(chatDeadlineConfig.budget(budgetMillis));
+        return reactiveChatService.stream(conversationId, message, deadline)
+            .collect(Collectors.joining())
+            .map(content -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (!deadline.degradations().isEmpty()) {
+                    response.header("X-Chat-Degradations", degradations(deadline));
+                }
+                return response.body(RestResult.buildSuccessResult(content));
+            });
+    }
+
+    /**
+     * 流式对话：message 事件逐段返回回复内容，最后的 done 事件返回采取的降级措施（逗号分隔，未降级时为空）
+     */
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> stream(@RequestParam(value = "conversationId") String conversationId,
+        @RequestParam(value = "message") String message,
+        @RequestHeader(value = "X-Chat-Budget-Ms", required = false) Long budgetMillis) {
+        ChatDeadline deadline = ChatDeadline.after(chatDeadlineConfig.budget(budgetMillis));
+        return reactiveChatService.stream(conversationId, message, deadline)
+            .map(content -> ServerSentEvent.builder(content).event("message").build())
+            .concatWith(Mono.fromSupplier(() -> ServerSentEvent.builder(degradations(deadline)).event("done").build()));
+    }
+
+    private static String degradations(ChatDeadline deadline) {
+        List<String> degradations = deadline.degradations().stream().map(Enum::name).toList();
+        return String.join(",", degradations);
+    }
+}
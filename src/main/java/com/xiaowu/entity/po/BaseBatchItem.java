@@ -0,0 +1,56 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 批量问答任务中的单个问题，同时作为断点续跑的检查点
+ */
+@TableName(value = "base_batch_item", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseBatchItem {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String jobId;
+
+    // 问题在请求中的序号，从 0 开始
+    private Integer itemIndex;
+
+    private String question;
+
+    // 问题所在的会话，请求未指定时在执行前创建
+    private String conversationId;
+
+    // 执行状态：PENDING / SUCCEEDED / FAILED
+    private String status;
+
+    private String answer;
+
+    // 时间预算不足时采取的降级措施，逗号分隔
+    private String degradations;
+
+    private String errorMessage;
+
+    private Long elapsedMillis;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+
+}
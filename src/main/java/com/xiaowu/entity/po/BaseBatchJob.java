@@ -0,0 +1,57 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 批量问答任务
+ */
+@TableName(value = "base_batch_job", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseBatchJob {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String jobId;
+
+    // 任务状态：PENDING / RUNNING / COMPLETED
+    private String status;
+
+    // 同时执行的问题数
+    private Integer parallelism;
+
+    // 每个问题的时间预算
+    private Long budgetMillis;
+
+    private Integer totalCount;
+
+    private Integer succeededCount;
+
+    private Integer failedCount;
+
+    // 正在执行任务的领取者（每次领取生成新的 ID），完成时据此判断租约是否仍属于自己
+    private String owner;
+
+    // 执行租约到期时间，执行者每完成一个问题续期；进程退出后租约到期，任务可以被重新领取续跑
+    private Date leaseUntil;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+
+}
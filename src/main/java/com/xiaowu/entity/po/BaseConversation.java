@@ -27,7 +27,11 @@ public class BaseConversation {
 
     private String title;
 
-    private String content;
+    // 会话消息内容，由 ConversationCodec 编码（JSON / Smile，可能经过 GZIP 压缩）
+    private byte[] content;
+
+    // 乐观锁版本号，每次写入 content 时加一
+    private Long version;
 
     @TableField(fill = FieldFill.INSERT)
     private Date createdTime;
@@ -0,0 +1,51 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 每轮对话的 token 用量与模型耗时
+ */
+@TableName(value = "base_conversation_usage", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseConversationUsage {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String conversationId;
+
+    private String model;
+
+    private Long promptTokens;
+
+    private Long completionTokens;
+
+    // prompt 中命中服务商前缀缓存的 token 数
+    private Long cachedTokens;
+
+    // 模型调用首 token 耗时（毫秒）
+    private Long firstTokenMillis;
+
+    // 模型调用总耗时（毫秒）
+    private Long totalMillis;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+
+}
@@ -28,6 +28,9 @@ public class BaseDoc {
 
     private String vectorDocId;
 
+    // 所属的飞书数据源
+    private String sourceId;
+
     private String docName;
 
     private String url;
@@ -0,0 +1,53 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 文档分块：记录分块的 SimHash 指纹与实际使用的向量。
+ * 内容相同的分块不单独嵌入，vectorDocId 指向最先嵌入该内容的分块（canonical）的向量。
+ */
+@TableName(value = "base_doc_chunk", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseDocChunk {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String docId;
+
+    private String sourceId;
+
+    // 分块在文档中的序号
+    private Integer chunkIndex;
+
+    // SimHash 指纹，同时写入向量元数据，检索时据此合并近似重复的结果
+    private Long simhash;
+
+    // 分块字符数
+    private Integer contentLength;
+
+    // 分块使用的向量 ID，由内容生成，内容相同的分块相同
+    private String vectorDocId;
+
+    // 向量元数据中的出处是否为该分块，每个向量有且只有一个 canonical 分块
+    private Boolean canonical;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+}
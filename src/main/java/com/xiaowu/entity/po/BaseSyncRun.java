@@ -0,0 +1,74 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 文档同步运行历史
+ */
+@TableName(value = "base_sync_run", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseSyncRun {
+
+    /**
+     * 发件箱写入向量的一批记录，读取文档、生成向量、写入向量库的耗时与失败数记在这类运行中
+     */
+    public static final String RELAY = "RELAY";
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    // 触发方式：SCHEDULED / MANUAL / RELAY
+    private String triggerType;
+
+    // 运行状态：RUNNING / SUCCESS / FAILED
+    private String status;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    private Long listMillis;
+
+    private Long readDocMillis;
+
+    private Long embedMillis;
+
+    private Long vectorStoreMillis;
+
+    private Long dbMillis;
+
+    private Integer addedCount;
+
+    private Integer updatedCount;
+
+    private Integer deletedCount;
+
+    private Integer skippedCount;
+
+    private Integer failedCount;
+
+    // 耗时最长的文档，JSON 数组
+    private String slowestDocs;
+
+    private String errorMessage;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+
+}
@@ -0,0 +1,53 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 飞书数据源最近一次同步的状态，每个数据源一行
+ */
+@TableName(value = "base_sync_source", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseSyncSource {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String sourceId;
+
+    // 执行同步的实例
+    private String nodeId;
+
+    // RUNNING / SUCCESS / FAILED
+    private String status;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    // 同步后该数据源的文档数
+    private Integer docCount;
+
+    // 新增、更新、删除的文档总数
+    private Integer changedCount;
+
+    private String errorMessage;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+}
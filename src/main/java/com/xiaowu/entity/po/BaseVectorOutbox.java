@@ -0,0 +1,74 @@
+package com.xiaowu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 待写入向量存储的文档变更（发件箱记录），写入成功后删除
+ */
+@TableName(value = "base_vector_outbox", autoResultMap = true)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BaseVectorOutbox {
+
+    /**
+     * 重新读取文档内容并写入向量
+     */
+    public static final String UPSERT = "UPSERT";
+
+    /**
+     * 删除文档的向量
+     */
+    public static final String DELETE = "DELETE";
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private String docId;
+
+    // 文档所属的飞书数据源，读取文档内容时使用该数据源的凭证
+    private String sourceId;
+
+    // UPSERT / DELETE
+    private String operation;
+
+    // 文档级向量 ID（切块之前整篇写入的向量），处理时删除，分块的向量由 base_doc_chunk 记录
+    private String vectorDocId;
+
+    // 需要额外删除的旧向量 ID（随机 ID 时代写入的向量），没有时为空
+    private String staleVectorDocId;
+
+    // 登记时文档的修改时间，本地快照的修改时间相同时直接从本地读取内容
+    private String modifiedTime;
+
+    // 同一文档的变更合并到这条记录时递增，处理完成时据此判断期间是否又有新变更
+    private Long revision;
+
+    // 已尝试次数
+    private Integer attempts;
+
+    // 下次可以处理的时间
+    private Date nextAttemptTime;
+
+    // 被某个处理者领取后的租约到期时间，到期未完成时可以被重新领取
+    private Date leaseUntil;
+
+    private String lastError;
+
+    @TableField(fill = FieldFill.INSERT)
+    private Date createdTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private Date updatedTime;
+}
@@ -3,16 +3,78 @@ package com.xiaowu.entity.po;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @ConfigurationProperties(prefix = "feishu")
 @Data
 public class FeishuConfig {
 
+    /**
+     * 未配置 sources 时，由 appId / appSecret / rootFolder 组成的数据源 ID
+     */
+    public static final String DEFAULT_SOURCE = "default";
+
     private String appId;
 
     private String appSecret;
 
     private String rootFolder;
 
+    // 飞书开放平台地址，压测时可指向本地替身服务
+    private String baseUrl = "https://open.feishu.cn";
+
+    // 每个数据源每秒最多发起的接口请求数，数据源可以单独覆盖
+    private double rateLimit = 5;
+
+    // 多个数据源：每个数据源是一个文件夹，可以属于不同的应用
+    private List<Source> sources = new ArrayList<>();
+
+    /**
+     * 实际生效的数据源：配置了 sources 时使用 sources，否则使用单个应用与文件夹
+     */
+    public List<Source> effectiveSources() {
+        if (!sources.isEmpty()) {
+            return sources;
+        }
+        Source source = new Source();
+        source.setId(DEFAULT_SOURCE);
+        source.setAppId(appId);
+        source.setAppSecret(appSecret);
+        source.setRootFolder(rootFolder);
+        return List.of(source);
+    }
+
+    /**
+     * 按 ID 查找数据源，ID 为空时视为 default（升级前写入的数据）
+     */
+    public Source source(String id) {
+        String sourceId = StringUtils.hasText(id) ? id : DEFAULT_SOURCE;
+        return effectiveSources().stream()
+                .filter(v -> v.getId().equals(sourceId))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("unknown feishu source, source id is %s".formatted(sourceId)));
+    }
+
+    /**
+     * 单个飞书数据源
+     */
+    @Data
+    public static class Source {
+
+        // 数据源 ID，写入 base_doc.source_id，修改后该数据源的文档会被视为新文档
+        private String id;
+
+        private String appId;
+
+        private String appSecret;
+
+        private String rootFolder;
+
+        // 每秒最多发起的接口请求数，为空时使用 feishu.rate-limit
+        private Double rateLimit;
+    }
 }
@@ -0,0 +1,26 @@
+package com.xiaowu.entity.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BatchItemVO {
+
+    private Integer index;
+
+    private String question;
+
+    private String conversationId;
+
+    private String status;
+
+    private String answer;
+
+    private String degradations;
+
+    private String errorMessage;
+
+    private Long elapsedMillis;
+
+}
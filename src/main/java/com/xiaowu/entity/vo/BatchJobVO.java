@@ -0,0 +1,27 @@
+package com.xiaowu.entity.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BatchJobVO {
+
+    private String jobId;
+
+    private String status;
+
+    private Integer parallelism;
+
+    private Integer total;
+
+    private Integer succeeded;
+
+    private Integer failed;
+
+    // 查询任务详情时返回全部问题，流式推送时为空
+    private List<BatchItemVO> items;
+
+}
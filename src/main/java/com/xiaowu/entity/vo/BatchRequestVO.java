@@ -0,0 +1,29 @@
+package com.xiaowu.entity.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量问答请求
+ */
+@Data
+public class BatchRequestVO {
+
+    private List<Question> questions;
+
+    // 同时执行的问题数，为空时使用默认值
+    private Integer parallelism;
+
+    // 每个问题的时间预算（毫秒），为空时使用默认预算
+    private Long budgetMillis;
+
+    @Data
+    public static class Question {
+
+        private String question;
+
+        // 在已有会话中提问，为空时为每个问题新建会话
+        private String conversationId;
+    }
+}
@@ -0,0 +1,18 @@
+package com.xiaowu.entity.vo;
+
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ChatReplyVO {
+
+    private String content;
+
+    // 时间预算不足时采取的降级措施，未降级时为空
+    private List<String> degradations;
+
+}
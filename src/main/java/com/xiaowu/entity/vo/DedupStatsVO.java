@@ -0,0 +1,34 @@
+package com.xiaowu.entity.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 重复分块去重的效果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DedupStatsVO {
+
+    // 分块总数，即不去重时需要的向量数与嵌入次数
+    private Long chunkCount;
+
+    // 实际存储的向量数
+    private Long vectorCount;
+
+    // 分块表占用的字节数
+    private Long chunkTableBytes;
+
+    // 向量表平均每行（内容、元数据与向量）的字节数
+    private Long vectorRowBytes;
+
+    // 节省的嵌入次数
+    private Long savedEmbeddings;
+
+    // 节省的向量表存储，扣除分块表本身的开销，单位字节
+    private Long savedBytes;
+}
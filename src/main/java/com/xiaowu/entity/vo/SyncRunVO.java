@@ -0,0 +1,42 @@
+package com.xiaowu.entity.vo;
+
+import com.xiaowu.common.SyncRunContext.DocTiming;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class SyncRunVO {
+
+    private Long id;
+
+    private String triggerType;
+
+    private String status;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    // 各阶段耗时（毫秒），key 为阶段名称
+    private Map<String, Long> phaseMillis;
+
+    private Integer added;
+
+    private Integer updated;
+
+    private Integer deleted;
+
+    private Integer skipped;
+
+    private Integer failed;
+
+    // 耗时最长的文档，只有 RELAY 记录有；发件箱中没有文档名称，docName 为空
+    private List<DocTiming> slowestDocs;
+
+    private String errorMessage;
+}
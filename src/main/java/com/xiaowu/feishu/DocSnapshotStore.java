@@ -0,0 +1,625 @@
+package com.xiaowu.feishu;
+
+import com.xiaowu.common.DocBlock;
+import com.xiaowu.config.DocSnapshotConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 飞书文档内容的本地快照，按 docId + modifiedTime 保存文档的内容块。
+ * 重新嵌入、重建索引或调整切块方式时，修改时间未变的文档直接从本地读取，只有变化的文档才请求飞书。
+ * <p>
+ * 存储为只追加的段文件（segment-000001.dat ...），每条记录为：
+ * <pre>
+ * magic(int) | docId 长度(int) + 内容 | modifiedTime 长度(int) + 内容 | 内容长度(long，-1 表示删除) | 压缩后的内容块 | CRC32(int)
+ * </pre>
+ * 内容块在请求飞书时边读边压缩写入同目录下的临时文件，请求完成后整体复制到当前段文件；
+ * 读取时通过内存映射的段文件边解压边交给调用方，内存占用与文档大小无关。
+ * 每个文档只有最新的一条记录有效，索引在启动时扫描段文件重建；写入中途失败或进程退出留下的残缺记录会被截掉，
+ * 残留的临时文件被删除。
+ * 旧段文件中失效内容超过 compactionGarbageRatio 时，把其中仍有效的记录原样复制到当前段文件后删除旧文件。
+ * <p>
+ * 请求飞书不加锁，多个文档可以同时读取；只有追加到段文件（复制临时文件）、写入删除记录与整理互斥，读取快照不加锁。
+ * 读取时所在段文件已被整理删除的按未命中处理，已映射的内容在 Linux 上删除文件后仍可读。
+ */
+@Slf4j
+@Component
+public class DocSnapshotStore {
+
+    private static final int MAGIC = 0x44534e50;
+
+    private static final long TOMBSTONE = -1;
+
+    // 写入中的记录的内容长度
+    private static final long PENDING = Long.MIN_VALUE;
+
+    // 内容块流的结束标记
+    private static final int END_OF_BLOCKS = -1;
+
+    // 请求飞书期间写入的临时文件
+    private static final String PENDING_PREFIX = "pending-";
+
+    private static final String PENDING_SUFFIX = ".tmp";
+
+    private final DocSnapshotConfig config;
+
+    // docId -> 最新记录的位置
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<>();
+
+    // 段文件 ID -> 段文件
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    // 当前追加写入的段文件
+    private Segment active;
+
+    public DocSnapshotStore(DocSnapshotConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.hits = meterRegistry.counter("feishu.snapshot.reads", "result", "hit");
+        this.misses = meterRegistry.counter("feishu.snapshot.reads", "result", "miss");
+        Gauge.builder("feishu.snapshot.size", segments, v -> v.values().stream().mapToLong(Segment::size).sum())
+                .description("Total size of the local document snapshot segments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("feishu.snapshot.documents", index, Map::size)
+                .description("Number of documents with a local snapshot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 扫描已有的段文件重建索引
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Path directory = Path.of(config.getDirectory());
+        Files.createDirectories(directory);
+        // 写入临时文件期间进程退出，临时文件中的内容没有登记到段文件，直接删除
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(v -> isPendingFile(v.getFileName().toString())).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        List<Long> ids;
+        try (Stream<Path> files = Files.list(directory)) {
+            ids = files.map(v -> v.getFileName().toString())
+                    .filter(v -> v.matches("segment-\\d+\\.dat"))
+                    .map(v -> Long.parseLong(v.substring("segment-".length(), v.length() - ".dat".length())))
+                    .sorted()
+                    .toList();
+        }
+        for (Long id : ids) {
+            Segment segment = Segment.open(directory, id);
+            segments.put(id, segment);
+            scan(segment);
+        }
+        active = segments.isEmpty() ? newSegment() : segments.lastEntry().getValue();
+        log.info("opened the document snapshot store, {} documents in {} segments", index.size(), segments.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        segments.values().forEach(Segment::close);
+    }
+
+    /**
+     * 读取文档的内容块：本地有同一修改时间的快照时从本地读取，否则通过 fetch 请求飞书，边读边写入快照
+     *
+     * @param docId        飞书文档 ID
+     * @param modifiedTime 文档的修改时间，为空时不使用快照
+     * @param fetch        请求飞书读取内容块，按文档顺序交给传入的处理者
+     * @param consumer     内容块的处理者
+     */
+    public void readBlocks(String docId, String modifiedTime, Consumer<Consumer<DocBlock>> fetch,
+                           Consumer<DocBlock> consumer) {
+        if (!config.isEnabled() || modifiedTime == null) {
+            fetch.accept(consumer);
+            return;
+        }
+        Location location = index.get(docId);
+        if (location != null && modifiedTime.equals(location.modifiedTime()) && readLocal(docId, location, consumer)) {
+            hits.increment();
+            return;
+        }
+        misses.increment();
+        append(docId, modifiedTime, fetch, consumer);
+    }
+
+    /**
+     * 文档已删除，写入删除记录
+     */
+    public void remove(String docId) {
+        if (!config.isEnabled() || !index.containsKey(docId)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            rollIfFull();
+            long start = active.size();
+            try {
+                ByteBuffer header = header(docId, "", TOMBSTONE);
+                active.write(header, start);
+                ByteBuffer crc = ByteBuffer.allocate(Integer.BYTES).putInt(0).flip();
+                active.write(crc, start + header.capacity());
+            } catch (IOException e) {
+                active.truncate(start);
+                throw new UncheckedIOException("failed to write the snapshot tombstone, doc id is %s".formatted(docId), e);
+            }
+            Location removed = index.remove(docId);
+            if (removed != null) {
+                release(removed);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 整理失效内容超过阈值的旧段文件
+     */
+    public void compact() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (Segment segment : List.copyOf(segments.values())) {
+            if (segment == active || segment.size() == 0
+                    || 1 - (double) segment.live().get() / segment.size() < config.getCompactionGarbageRatio()) {
+                continue;
+            }
+            writeLock.lock();
+            try {
+                compact(segment);
+            } catch (IOException e) {
+                log.error("failed to compact the snapshot segment {}", segment.id(), e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        long before = segment.size();
+        int moved = 0;
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segmentId() != segment.id()) {
+                continue;
+            }
+            rollIfFull();
+            long offset = active.size();
+            segment.transferTo(location.offset(), location.length(), active);
+            Location copy = location.moveTo(active.id(), offset);
+            if (index.replace(entry.getKey(), location, copy)) {
+                active.live().addAndGet(copy.length());
+                moved++;
+            }
+        }
+        segments.remove(segment.id());
+        segment.close();
+        Files.deleteIfExists(segment.path());
+        log.info("compacted the snapshot segment {}, {} bytes, {} documents moved", segment.id(), before, moved);
+    }
+
+    /**
+     * 从本地快照读取，快照损坏或所在段文件已被整理删除时返回 false
+     */
+    private boolean readLocal(String docId, Location location, Consumer<DocBlock> consumer) {
+        Segment segment = segments.get(location.segmentId());
+        if (segment == null) {
+            return false;
+        }
+        ByteBuffer payload;
+        try {
+            payload = segment.map(location.payloadOffset(), location.payloadLength());
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("failed to map the snapshot, doc id is {}", docId, e);
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != location.crc()) {
+            log.warn("the snapshot is corrupted, doc id is {}", docId);
+            index.remove(docId, location);
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteBufferInputStream(payload)))) {
+            for (int kind = in.readByte(); kind != END_OF_BLOCKS; kind = in.readByte()) {
+                int level = in.readInt();
+                byte[] text = new byte[in.readInt()];
+                in.readFully(text);
+                consumer.accept(new DocBlock(DocBlock.Kind.values()[kind], level, new String(text, StandardCharsets.UTF_8)));
+            }
+            return true;
+        } catch (IOException e) {
+            // 已经交给调用方的内容块无法撤回，删除快照后由调用方重试
+            index.remove(docId, location);
+            throw new UncheckedIOException("failed to read the snapshot, doc id is %s".formatted(docId), e);
+        }
+    }
+
+    /**
+     * 请求飞书并把内容块边压缩边写入临时文件，不持有写锁；请求完成后在写锁内追加到当前段文件。
+     * 请求失败时临时文件随关闭删除，段文件不受影响
+     */
+    private void append(String docId, String modifiedTime, Consumer<Consumer<DocBlock>> fetch, Consumer<DocBlock> consumer) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (FileChannel pending = FileChannel.open(
+                Files.createTempFile(Path.of(config.getDirectory()), PENDING_PREFIX, PENDING_SUFFIX),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            CRC32 crc = new CRC32();
+            OutputStream channelOut = Channels.newOutputStream(pending);
+            DeflaterOutputStream deflated = new DeflaterOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(channelOut, crc)), deflater);
+            DataOutputStream out = new DataOutputStream(deflated);
+            fetch.accept(block -> {
+                write(out, block);
+                consumer.accept(block);
+            });
+            out.writeByte(END_OF_BLOCKS);
+            deflated.finish();
+            deflated.flush();
+
+            writeLock.lock();
+            try {
+                commit(docId, modifiedTime, pending, (int) crc.getValue());
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write the snapshot, doc id is %s".formatted(docId), e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 把临时文件中的压缩内容作为一条记录追加到当前段文件，失败时截掉写了一半的记录，调用方需持有写锁
+     */
+    private void commit(String docId, String modifiedTime, FileChannel pending, int crc) throws IOException {
+        rollIfFull();
+        long start = active.size();
+        try {
+            // 内容长度先写为 PENDING，扫描时视为残缺记录，内容与 CRC 写完后再回填
+            ByteBuffer header = header(docId, modifiedTime, PENDING);
+            active.write(header, start);
+            long payloadOffset = start + header.capacity();
+            long payloadLength = pending.size();
+            active.transferFrom(pending, payloadLength, payloadOffset);
+            active.write(ByteBuffer.allocate(Integer.BYTES).putInt(crc).flip(), payloadOffset + payloadLength);
+            active.write(ByteBuffer.allocate(Long.BYTES).putLong(payloadLength).flip(), payloadOffset - Long.BYTES);
+
+            Location location = new Location(active.id(), start, header.capacity() + payloadLength + Integer.BYTES,
+                    payloadOffset, payloadLength, crc, modifiedTime);
+            active.live().addAndGet(location.length());
+            Location previous = index.put(docId, location);
+            if (previous != null) {
+                release(previous);
+            }
+        } catch (IOException | RuntimeException e) {
+            active.truncate(start);
+            throw e;
+        }
+    }
+
+    private static boolean isPendingFile(String name) {
+        return name.startsWith(PENDING_PREFIX) && name.endsWith(PENDING_SUFFIX);
+    }
+
+    private static void write(DataOutputStream out, DocBlock block) {
+        try {
+            byte[] text = block.text() == null ? new byte[0] : block.text().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(block.kind().ordinal());
+            out.writeInt(block.level());
+            out.writeInt(text.length);
+            out.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer header(String docId, String modifiedTime, long payloadLength) {
+        byte[] key = docId.getBytes(StandardCharsets.UTF_8);
+        byte[] modified = modifiedTime.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES * 3 + key.length + modified.length + Long.BYTES)
+                .putInt(MAGIC)
+                .putInt(key.length).put(key)
+                .putInt(modified.length).put(modified)
+                .putLong(payloadLength)
+                .flip();
+    }
+
+    /**
+     * 顺序扫描段文件中的记录，遇到残缺的记录时截掉之后的内容
+     */
+    private void scan(Segment segment) throws IOException {
+        long position = 0;
+        long size = segment.size();
+        while (position < size) {
+            Record record = segment.readRecord(position, size);
+            if (record == null) {
+                log.warn("truncating the snapshot segment {} at {} of {} bytes", segment.id(), position, size);
+                segment.truncate(position);
+                break;
+            }
+            Location previous = record.payloadLength() == TOMBSTONE
+                    ? index.remove(record.docId())
+                    : index.put(record.docId(), record.location());
+            if (previous != null) {
+                release(previous);
+            }
+            if (record.payloadLength() != TOMBSTONE) {
+                segment.live().addAndGet(record.location().length());
+            }
+            position += record.length();
+        }
+    }
+
+    private void release(Location location) {
+        Segment segment = segments.get(location.segmentId());
+        if (segment != null) {
+            segment.live().addAndGet(-location.length());
+        }
+    }
+
+    private void rollIfFull() {
+        if (active.size() >= config.getSegmentSize().toBytes()) {
+            active = newSegment();
+        }
+    }
+
+    private Segment newSegment() {
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        try {
+            Segment segment = Segment.open(Path.of(config.getDirectory()), id);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to create the snapshot segment %d".formatted(id), e);
+        }
+    }
+
+    /**
+     * 记录在段文件中的位置
+     *
+     * @param offset        记录起始位置
+     * @param length        记录总长度
+     * @param payloadOffset 压缩内容的起始位置
+     * @param payloadLength 压缩内容的长度
+     */
+    private record Location(long segmentId, long offset, long length, long payloadOffset, long payloadLength,
+                            int crc, String modifiedTime) {
+
+        Location moveTo(long segmentId, long offset) {
+            return new Location(segmentId, offset, length, offset + (payloadOffset - this.offset), payloadLength,
+                    crc, modifiedTime);
+        }
+    }
+
+    private record Record(String docId, long payloadLength, long length, Location location) {
+    }
+
+    /**
+     * 一个段文件：写入通过 FileChannel 追加，读取通过内存映射
+     */
+    private static final class Segment {
+
+        private final long id;
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        // 仍有效的记录字节数
+        private final AtomicLong live = new AtomicLong();
+
+        // 最近一次映射，文件增长到映射范围之外时重新映射
+        private volatile MappedByteBuffer mapped;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        static Segment open(Path directory, long id) throws IOException {
+            Path path = directory.resolve("segment-%06d.dat".formatted(id));
+            return new Segment(id, path, FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        long id() {
+            return id;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        FileChannel channel() {
+            return channel;
+        }
+
+        AtomicLong live() {
+            return live;
+        }
+
+        long size() {
+            try {
+                return channel.size();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        void write(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        void truncate(long size) {
+            try {
+                channel.truncate(size);
+                channel.position(size);
+            } catch (IOException e) {
+                log.error("failed to truncate the snapshot segment {}", id, e);
+            }
+        }
+
+        void transferTo(long position, long count, Segment target) throws IOException {
+            long targetPosition = target.channel.size();
+            long transferred = 0;
+            while (transferred < count) {
+                transferred += channel.transferTo(position + transferred, count - transferred,
+                        target.channel.position(targetPosition + transferred));
+            }
+        }
+
+        /**
+         * 把 source 开头的 count 字节写入 position 处
+         */
+        void transferFrom(FileChannel source, long count, long position) throws IOException {
+            long transferred = 0;
+            while (transferred < count) {
+                transferred += source.transferTo(transferred, count - transferred, channel.position(position + transferred));
+            }
+        }
+
+        /**
+         * 映射 [offset, offset + length) 范围的内容，返回只读视图
+         */
+        ByteBuffer map(long offset, long length) throws IOException {
+            MappedByteBuffer current = mapped;
+            if (current == null || current.capacity() < offset + length) {
+                synchronized (this) {
+                    current = mapped;
+                    if (current == null || current.capacity() < offset + length) {
+                        current = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        mapped = current;
+                    }
+                }
+            }
+            return current.slice((int) offset, (int) length).asReadOnlyBuffer();
+        }
+
+        /**
+         * 读取 position 处的记录头，记录不完整时返回 null
+         */
+        Record readRecord(long position, long size) throws IOException {
+            ByteBuffer fixed = ByteBuffer.allocate(Integer.BYTES * 2);
+            if (size - position < fixed.capacity() || channel.read(fixed, position) < fixed.capacity()) {
+                return null;
+            }
+            fixed.flip();
+            int keyLength = fixed.getInt(Integer.BYTES);
+            if (fixed.getInt(0) != MAGIC || keyLength < 0 || keyLength > 1024) {
+                return null;
+            }
+            long cursor = position + fixed.capacity();
+            ByteBuffer key = ByteBuffer.allocate(keyLength + Integer.BYTES);
+            if (size - cursor < key.capacity() || channel.read(key, cursor) < key.capacity()) {
+                return null;
+            }
+            cursor += key.capacity();
+            int modifiedLength = key.getInt(keyLength);
+            if (modifiedLength < 0 || modifiedLength > 1024) {
+                return null;
+            }
+            ByteBuffer rest = ByteBuffer.allocate(modifiedLength + Long.BYTES);
+            if (size - cursor < rest.capacity() || channel.read(rest, cursor) < rest.capacity()) {
+                return null;
+            }
+            cursor += rest.capacity();
+            long payloadLength = rest.getLong(modifiedLength);
+            long stored = Math.max(0, payloadLength);
+            if (payloadLength < TOMBSTONE || size - cursor < stored + Integer.BYTES) {
+                return null;
+            }
+            ByteBuffer crc = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(crc, cursor + stored);
+
+            String docId = new String(key.array(), 0, keyLength, StandardCharsets.UTF_8);
+            String modifiedTime = new String(rest.array(), 0, modifiedLength, StandardCharsets.UTF_8);
+            long length = cursor + stored + Integer.BYTES - position;
+            return new Record(docId, payloadLength, length,
+                    new Location(id, position, length, cursor, stored, crc.getInt(0), modifiedTime));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("failed to close the snapshot segment {}", id, e);
+            }
+        }
+    }
+
+    /**
+     * 读取 ByteBuffer 的输入流，配合内存映射按需读取，不把内容复制到堆中
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
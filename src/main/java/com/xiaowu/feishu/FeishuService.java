@@ -5,9 +5,13 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.lark.oapi.Client;
 import com.lark.oapi.core.request.RequestOptions;
 import com.lark.oapi.core.response.BaseResponse;
-import com.lark.oapi.service.docx.v1.model.RawContentDocumentReq;
-import com.lark.oapi.service.docx.v1.model.RawContentDocumentResp;
-import com.lark.oapi.service.docx.v1.model.RawContentDocumentRespBody;
+import com.lark.oapi.service.docx.v1.model.Block;
+import com.lark.oapi.service.docx.v1.model.ListDocumentBlockReq;
+import com.lark.oapi.service.docx.v1.model.ListDocumentBlockResp;
+import com.lark.oapi.service.docx.v1.model.ListDocumentBlockRespBody;
+import com.lark.oapi.service.docx.v1.model.Table;
+import com.lark.oapi.service.docx.v1.model.Text;
+import com.lark.oapi.service.docx.v1.model.TextElement;
 import com.lark.oapi.service.drive.v1.model.File;
 import com.lark.oapi.service.drive.v1.model.ListFileReq;
 import com.lark.oapi.service.drive.v1.model.ListFileResp;
@@ -15,11 +19,19 @@ import com.lark.oapi.service.drive.v1.model.ListFileRespBody;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import com.xiaowu.common.DocBlock;
+import com.xiaowu.common.IntervalRateLimiter;
 import com.xiaowu.entity.po.FeishuConfig;
+import com.xiaowu.entity.po.FeishuConfig.Source;
 import com.xiaowu.feishu.model.FeishuAkRequest;
 import com.xiaowu.feishu.model.FeishuAkResponse;
 import com.xiaowu.utils.JsonUtil;
@@ -29,23 +41,48 @@ import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * 飞书接口调用，支持多个数据源：每个数据源有自己的 SDK 客户端、access token 缓存项与限流器。
+ */
 @Service
 @RequiredArgsConstructor
 public class FeishuService {
 
-    // 飞书 SDK 提供的 Client 对象，作为发起 API 请求的核心类
-    private final Client client;
-
     // 用于调用飞书 token 接口（非 SDK 调用，直接用 RestTemplate）
     private final RestTemplate restTemplate;
 
-    // 从配置类中读取飞书 AppID、AppSecret、根文件夹等信息
+    // 从配置类中读取各数据源的 AppID、AppSecret、根文件夹等信息
     private final FeishuConfig feishuConfig;
 
-    // 飞书开放平台获取应用访问令牌的地址
-    public static final String AK_URL = "https://open.feishu.cn/open-apis/auth/v3/app_access_token/internal";
+    // 每个数据源的客户端与限流器，首次使用时创建
+    private final ConcurrentMap<String, SourceClient> sourceClients = new ConcurrentHashMap<>();
+
+    // 飞书开放平台获取应用访问令牌的接口路径，完整地址为 feishu.base-url + AK_PATH
+    public static final String AK_PATH = "/open-apis/auth/v3/app_access_token/internal";
+
+    // 每页读取的内容块数，飞书接口上限为 500
+    private static final int BLOCK_PAGE_SIZE = 500;
+
+    // 飞书文档内容块类型，见 docx 文档的 block_type 定义
+    private static final int BLOCK_TEXT = 2;
+
+    private static final int BLOCK_HEADING1 = 3;
+
+    private static final int BLOCK_HEADING9 = 11;
+
+    private static final int BLOCK_BULLET = 12;
+
+    private static final int BLOCK_ORDERED = 13;
+
+    private static final int BLOCK_CODE = 14;
+
+    private static final int BLOCK_QUOTE = 15;
+
+    private static final int BLOCK_TODO = 17;
+
+    private static final int BLOCK_TABLE = 31;
 
-    // Caffeine 缓存，用于缓存 app access token（避免频繁请求）
+    // Caffeine 缓存，用于缓存 app access token（避免频繁请求），按 appId 区分
     private static final Cache<String, String> ACCESS_TOKEN_CACHE = Caffeine.newBuilder()
             .maximumSize(1000)
             .expireAfterWrite(100, TimeUnit.MINUTES) // token 有效期为 2 小时，这里缓存 100 分钟
@@ -54,18 +91,18 @@ public class FeishuService {
     /**
      * 获取飞书 access token（使用缓存）
      *
-     * @param appId 飞书应用 appId
+     * @param source 飞书数据源，使用它的 appId / appSecret
      * @return accessToken 字符串
      */
-    private String getAccessToken(String appId) {
-        return ACCESS_TOKEN_CACHE.get(appId, s -> {
+    private String getAccessToken(Source source) {
+        return ACCESS_TOKEN_CACHE.get(source.getAppId(), s -> {
             HttpEntity<FeishuAkRequest> request = new HttpEntity<>(new FeishuAkRequest(
-                    feishuConfig.getAppId(), feishuConfig.getAppSecret()
+                    source.getAppId(), source.getAppSecret()
             ));
 
             // 调用飞书官方 access_token 接口
             var response = Optional.of(
-                    restTemplate.exchange(AK_URL, HttpMethod.POST, request, FeishuAkResponse.class)
+                    restTemplate.exchange(feishuConfig.getBaseUrl() + AK_PATH, HttpMethod.POST, request, FeishuAkResponse.class)
             );
 
             // 如果返回值不正常则抛出异常
@@ -79,60 +116,185 @@ public class FeishuService {
     }
 
     /**
-     * 读取指定飞书文档的原始内容（纯文本）
-     *
-     * @param docId 飞书文档 ID
-     * @return 文档内容（字符串）
+     * 获取数据源的客户端，并占用一次限流许可
      */
-    public String readDoc(String docId) {
-        // 构造请求对象
-        RawContentDocumentReq req = RawContentDocumentReq.newBuilder()
-                .lang(0) // 中文语言代码
-                .documentId(docId)
+    private SourceClient acquire(String sourceId) {
+        SourceClient sourceClient = sourceClients.computeIfAbsent(
+                feishuConfig.source(sourceId).getId(), id -> newSourceClient(feishuConfig.source(id)));
+        sourceClient.rateLimiter().acquire();
+        return sourceClient;
+    }
+
+    private SourceClient newSourceClient(Source source) {
+        Client client = Client.newBuilder(source.getAppId(), source.getAppSecret()) // 设置 AppID 和 AppSecret
+                .marketplaceApp() // 声明为应用市场中的应用（第三方应用）
+                .openBaseUrl(feishuConfig.getBaseUrl()) // 设置请求地址，默认为飞书中国站接口
+                .requestTimeout(3, TimeUnit.SECONDS) // 设置请求超时时间为 3 秒
+                .logReqAtDebug(true) // 在 debug 模式下打印请求和响应日志，方便调试
                 .build();
+        double rateLimit = source.getRateLimit() == null ? feishuConfig.getRateLimit() : source.getRateLimit();
+        return new SourceClient(source, client, new IntervalRateLimiter(rateLimit));
+    }
+
+    /**
+     * 按文档顺序分页读取飞书文档的内容块，逐个交给 consumer。
+     * 每次只在内存中保留一页内容块，文档再大内存占用也不会随之增长，并保留标题、列表、表格等结构。
+     *
+     * @param sourceId 文档所属的数据源 ID
+     * @param docId    飞书文档 ID
+     * @param consumer 内容块的处理者，按文档顺序调用
+     */
+    public void readBlocks(String sourceId, String docId, Consumer<DocBlock> consumer) {
+        // 当前表格的单元格 ID 到列序号的映射，用于还原表格的行
+        Map<String, Integer> cellColumns = new HashMap<>();
+        String pageToken = null;
+        do {
+            ListDocumentBlockReq.Builder builder = ListDocumentBlockReq.newBuilder()
+                    .documentId(docId)
+                    .documentRevisionId(-1) // 最新版本
+                    .pageSize(BLOCK_PAGE_SIZE);
+            if (pageToken != null) {
+                builder.pageToken(pageToken);
+            }
+
+            Optional<ListDocumentBlockResp> resp;
+            try {
+                SourceClient sourceClient = acquire(sourceId);
+                resp = resolveException(sourceClient.client().docx().v1().documentBlock().list(builder.build(), RequestOptions.newBuilder()
+                        .userAccessToken(getAccessToken(sourceClient.source()))
+                        .build()));
+            } catch (Exception e) {
+                throw new RuntimeException("failed to read the document blocks, doc id is %s".formatted(docId), e);
+            }
+
+            Optional<ListDocumentBlockRespBody> body = resp.map(BaseResponse::getData);
+            body.map(ListDocumentBlockRespBody::getItems)
+                    .ifPresent(blocks -> {
+                        for (Block block : blocks) {
+                            toDocBlock(block, cellColumns).ifPresent(consumer);
+                        }
+                    });
 
-        Optional<RawContentDocumentResp> resp;
-        try {
-            // 发起请求并带上 access_token
-            resp = resolveException(client.docx().v1().document().rawContent(req, RequestOptions.newBuilder()
-                    .userAccessToken(getAccessToken(feishuConfig.getAppId()))
-                    .build()));
-        } catch (Exception e) {
-            throw new RuntimeException("failed to read the document", e);
+            pageToken = body.filter(v -> Boolean.TRUE.equals(v.getHasMore()))
+                    .map(ListDocumentBlockRespBody::getPageToken)
+                    .orElse(null);
+        } while (pageToken != null);
+    }
+
+    /**
+     * 把 SDK 的内容块转换为 DocBlock，页面、表格容器、图片等没有文本的块返回空
+     */
+    private static Optional<DocBlock> toDocBlock(Block block, Map<String, Integer> cellColumns) {
+        Integer type = block.getBlockType();
+        if (type == null) {
+            return Optional.empty();
+        }
+        if (type == BLOCK_TABLE) {
+            // 新表格开始，单元格按行优先排列
+            cellColumns.clear();
+            Table table = block.getTable();
+            if (table != null && table.getCells() != null && table.getProperty() != null
+                    && table.getProperty().getColumnSize() != null) {
+                int columns = Math.max(1, table.getProperty().getColumnSize());
+                String[] cells = table.getCells();
+                for (int i = 0; i < cells.length; i++) {
+                    cellColumns.put(cells[i], i % columns);
+                }
+            }
+            return Optional.empty();
         }
+        if (type >= BLOCK_HEADING1 && type <= BLOCK_HEADING9) {
+            return text(heading(block, type - BLOCK_HEADING1 + 1))
+                    .map(text -> new DocBlock(DocBlock.Kind.HEADING, type - BLOCK_HEADING1 + 1, text));
+        }
+        return switch (type) {
+            case BLOCK_TEXT -> text(block.getText()).map(text -> cellColumns.containsKey(block.getParentId())
+                    ? new DocBlock(DocBlock.Kind.TABLE_CELL, cellColumns.get(block.getParentId()), text)
+                    : new DocBlock(DocBlock.Kind.TEXT, 0, text));
+            case BLOCK_BULLET -> text(block.getBullet()).map(text -> new DocBlock(DocBlock.Kind.LIST_ITEM, 0, text));
+            case BLOCK_ORDERED -> text(block.getOrdered()).map(text -> new DocBlock(DocBlock.Kind.LIST_ITEM, 0, text));
+            case BLOCK_CODE -> text(block.getCode()).map(text -> new DocBlock(DocBlock.Kind.CODE, 0, text));
+            case BLOCK_QUOTE -> text(block.getQuote()).map(text -> new DocBlock(DocBlock.Kind.QUOTE, 0, text));
+            case BLOCK_TODO -> text(block.getTodo()).map(text -> new DocBlock(DocBlock.Kind.LIST_ITEM, 0, text));
+            default -> Optional.empty();
+        };
+    }
+
+    private static Text heading(Block block, int level) {
+        return switch (level) {
+            case 1 -> block.getHeading1();
+            case 2 -> block.getHeading2();
+            case 3 -> block.getHeading3();
+            case 4 -> block.getHeading4();
+            case 5 -> block.getHeading5();
+            case 6 -> block.getHeading6();
+            case 7 -> block.getHeading7();
+            case 8 -> block.getHeading8();
+            default -> block.getHeading9();
+        };
+    }
 
-        // 提取响应内容（如果有）
-        return resp.map(BaseResponse::getData)
-                .map(RawContentDocumentRespBody::getContent)
-                .orElse("");
+    /**
+     * 拼接文本块中的文字、@文档标题与公式
+     */
+    private static Optional<String> text(Text text) {
+        if (text == null || text.getElements() == null) {
+            return Optional.empty();
+        }
+        StringBuilder builder = new StringBuilder();
+        for (TextElement element : text.getElements()) {
+            if (element.getTextRun() != null && element.getTextRun().getContent() != null) {
+                builder.append(element.getTextRun().getContent());
+            } else if (element.getMentionDoc() != null && element.getMentionDoc().getTitle() != null) {
+                builder.append(element.getMentionDoc().getTitle());
+            } else if (element.getEquation() != null && element.getEquation().getContent() != null) {
+                builder.append(element.getEquation().getContent());
+            }
+        }
+        return builder.isEmpty() ? Optional.empty() : Optional.of(builder.toString());
     }
 
     /**
-     * 获取指定文件夹下的所有文件（飞书云文档）
+     * 获取数据源文件夹下的所有文件（飞书云文档），自动翻页直到取完
      *
+     * @param sourceId 数据源 ID
      * @return 文件列表（List<File>）
      */
-    public List<File> listDocs() {
-        // 构造请求，默认一次最多 50 个文件
-        ListFileReq req = ListFileReq.newBuilder()
-                .pageSize(50)
-                .folderToken(feishuConfig.getRootFolder()) // 根目录 token
-                .build();
+    public List<File> listDocs(String sourceId) {
+        Source source = feishuConfig.source(sourceId);
+        List<File> files = new ArrayList<>();
+        String pageToken = null;
+        do {
+            // 构造请求，一次最多 200 个文件
+            ListFileReq.Builder builder = ListFileReq.newBuilder()
+                    .pageSize(200)
+                    .folderToken(source.getRootFolder()); // 根目录 token
+            if (pageToken != null) {
+                builder.pageToken(pageToken);
+            }
 
-        Optional<ListFileResp> resp;
-        try {
-            resp = resolveException(client.drive().v1().file().list(req, RequestOptions.newBuilder()
-                    .userAccessToken(getAccessToken(feishuConfig.getAppId()))
-                    .build()));
-        } catch (Exception e) {
-            throw new RuntimeException("failed to list the docs", e);
-        }
+            Optional<ListFileResp> resp;
+            try {
+                SourceClient sourceClient = acquire(sourceId);
+                resp = resolveException(sourceClient.client().drive().v1().file().list(builder.build(), RequestOptions.newBuilder()
+                        .userAccessToken(getAccessToken(source))
+                        .build()));
+            } catch (Exception e) {
+                throw new RuntimeException("failed to list the docs", e);
+            }
+
+            // 提取文件列表
+            Optional<ListFileRespBody> body = resp.map(BaseResponse::getData);
+            body.map(ListFileRespBody::getFiles)
+                    .map(Arrays::asList)
+                    .ifPresent(files::addAll);
 
-        // 提取文件列表
-        return resp.map(BaseResponse::getData)
-                .map(ListFileRespBody::getFiles)
-                .map(Arrays::asList)
-                .orElse(new ArrayList<>());
+            // 还有下一页时继续请求
+            pageToken = body.filter(v -> Boolean.TRUE.equals(v.getHasMore()))
+                    .map(ListFileRespBody::getNextPageToken)
+                    .orElse(null);
+        } while (pageToken != null);
+        return files;
     }
 
     /**
@@ -145,4 +307,10 @@ public class FeishuService {
         }
         return Optional.of(response);
     }
+
+    /**
+     * 数据源的 SDK 客户端与限流器
+     */
+    private record SourceClient(Source source, Client client, IntervalRateLimiter rateLimiter) {
+    }
 }
@@ -0,0 +1,9 @@
+package com.xiaowu.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaowu.entity.po.BaseBatchItem;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface BatchItemMapper extends BaseMapper<BaseBatchItem> {
+}
@@ -0,0 +1,38 @@
+package com.xiaowu.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaowu.entity.po.BaseBatchJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface BatchJobMapper extends BaseMapper<BaseBatchJob> {
+
+    /**
+     * 领取任务：任务不在执行中、或执行者的租约已到期时设为 RUNNING 并记录新的领取者，返回是否领取成功。
+     * 多个实例同时领取同一任务时只有一个能成功
+     */
+    @Update("""
+            update base_batch_job
+            set status       = 'RUNNING',
+                owner        = #{owner},
+                lease_until  = localtimestamp + make_interval(secs => #{leaseSeconds}),
+                updated_time = localtimestamp
+            where job_id = #{jobId}
+              and (status <> 'RUNNING' or lease_until is null or lease_until < localtimestamp)
+            """)
+    int claim(@Param("jobId") String jobId, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 续期租约，租约已被其他领取者接管时返回 0
+     */
+    @Update("""
+            update base_batch_job
+            set lease_until  = localtimestamp + make_interval(secs => #{leaseSeconds}),
+                updated_time = localtimestamp
+            where job_id = #{jobId}
+              and owner = #{owner}
+            """)
+    int renew(@Param("jobId") String jobId, @Param("owner") String owner, @Param("leaseSeconds") long leaseSeconds);
+}
@@ -0,0 +1,85 @@
+package com.xiaowu.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaowu.entity.po.BaseDocChunk;
+import com.xiaowu.entity.vo.DedupStatsVO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+@Mapper
+public interface DocChunkMapper extends BaseMapper<BaseDocChunk> {
+
+    /**
+     * 查找使用指定向量的 canonical 分块，向量 ID 由内容生成，找到即说明已有内容相同的分块
+     */
+    @Select("""
+            select *
+            from base_doc_chunk
+            where vector_doc_id = #{vectorDocId}
+              and canonical
+            order by id
+            limit 1
+            """)
+    BaseDocChunk canonical(@Param("vectorDocId") String vectorDocId);
+
+    /**
+     * canonical 分块被删除后，如果向量仍被其他分块引用，把最早的引用分块提升为 canonical
+     */
+    @Update("""
+            update base_doc_chunk
+            set canonical = true, updated_time = localtimestamp
+            where id = (select min(id) from base_doc_chunk where vector_doc_id = #{vectorDocId})
+              and not exists (select 1 from base_doc_chunk where vector_doc_id = #{vectorDocId} and canonical)
+            """)
+    int promote(@Param("vectorDocId") String vectorDocId);
+
+    /**
+     * 把向量元数据中的出处（文档、数据源、分块序号）改为其 canonical 分块
+     */
+    @Update("""
+            update vector_store v
+            set metadata = (v.metadata::jsonb || jsonb_build_object(
+                    'doc_id', c.doc_id, 'source_id', c.source_id, 'chunk_index', c.chunk_index))::json
+            from base_doc_chunk c
+            where c.vector_doc_id = #{vectorDocId}
+              and c.canonical
+              and v.id = c.vector_doc_id::uuid
+            """)
+    void attributeVector(@Param("vectorDocId") String vectorDocId);
+
+    /**
+     * 文档的 canonical 分块中，向量元数据的出处与分块不一致的（沿用上一版本向量但位置变化）改为当前分块
+     */
+    @Update("""
+            update vector_store v
+            set metadata = (v.metadata::jsonb || jsonb_build_object(
+                    'doc_id', c.doc_id, 'source_id', c.source_id, 'chunk_index', c.chunk_index))::json
+            from base_doc_chunk c
+            where c.doc_id = #{docId}
+              and c.canonical
+              and v.id = c.vector_doc_id::uuid
+              and (v.metadata ->> 'doc_id' is distinct from c.doc_id
+                or v.metadata ->> 'source_id' is distinct from c.source_id
+                or v.metadata ->> 'chunk_index' is distinct from c.chunk_index::text)
+            """)
+    void attributeDoc(@Param("docId") String docId);
+
+    /**
+     * 分块与向量数量，以及向量行与分块行的存储大小
+     */
+    @Select("""
+            select c.chunk_count,
+                   c.vector_count,
+                   c.chunk_table_bytes,
+                   (select coalesce(avg(pg_column_size(v.*)), 0)::bigint from vector_store v) as vector_row_bytes
+            from (select count(*)                                   as chunk_count,
+                         count(distinct vector_doc_id)              as vector_count,
+                         coalesce(sum(pg_column_size(t.*)), 0)::bigint as chunk_table_bytes
+                  from base_doc_chunk t) c
+            """)
+    DedupStatsVO stats();
+}
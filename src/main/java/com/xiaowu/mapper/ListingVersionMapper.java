@@ -0,0 +1,33 @@
+package com.xiaowu.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 列表版本号，保存在数据库中，所有实例看到同一个版本
+ */
+@Mapper
+public interface ListingVersionMapper {
+
+    /**
+     * 递增列表版本号，不存在时创建。在事务中调用时随事务提交或回滚
+     */
+    @Insert("""
+            insert into base_listing_version (listing, version, updated_time)
+            values (#{listing}, 1, localtimestamp)
+            on conflict (listing) do update
+            set version      = base_listing_version.version + 1,
+                updated_time = excluded.updated_time
+            """)
+    void bump(@Param("listing") String listing);
+
+    /**
+     * 查询列表当前的版本号，从未递增过时返回 null
+     */
+    @Select("select version from base_listing_version where listing = #{listing}")
+    @Options(useCache = false)
+    Long version(@Param("listing") String listing);
+}
@@ -0,0 +1,44 @@
+package com.xiaowu.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * 同步实例心跳，使用数据库时间判断存活，不依赖各实例的时钟
+ */
+@Mapper
+public interface SyncNodeMapper {
+
+    /**
+     * 写入或刷新实例心跳
+     */
+    @Insert("""
+            insert into base_sync_node (node_id, heartbeat_time, created_time, updated_time)
+            values (#{nodeId}, localtimestamp, localtimestamp, localtimestamp)
+            on conflict (node_id) do update
+            set heartbeat_time = excluded.heartbeat_time,
+                updated_time   = excluded.updated_time
+            """)
+    void heartbeat(@Param("nodeId") String nodeId);
+
+    /**
+     * 查询最近 ttlSeconds 秒内有心跳的实例
+     */
+    @Select("""
+            select node_id
+            from base_sync_node
+            where heartbeat_time >= localtimestamp - make_interval(secs => #{ttlSeconds})
+            """)
+    List<String> liveNodes(@Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * 实例正常退出时删除心跳，其他实例立即接管它的数据源
+     */
+    @Delete("delete from base_sync_node where node_id = #{nodeId}")
+    void remove(@Param("nodeId") String nodeId);
+}
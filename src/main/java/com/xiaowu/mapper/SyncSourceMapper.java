@@ -0,0 +1,30 @@
+package com.xiaowu.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaowu.entity.po.BaseSyncSource;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface SyncSourceMapper extends BaseMapper<BaseSyncSource> {
+
+    /**
+     * 写入或覆盖数据源的同步状态，依赖 source_id 唯一索引，多个实例同时写入同一数据源也不会冲突
+     */
+    @Insert("""
+            insert into base_sync_source (source_id, node_id, status, start_time, end_time, doc_count, changed_count,
+                                          error_message, created_time, updated_time)
+            values (#{sourceId}, #{nodeId}, #{status}, #{startTime}, #{endTime}, #{docCount}, #{changedCount},
+                    #{errorMessage}, localtimestamp, localtimestamp)
+            on conflict (source_id) do update
+            set node_id       = excluded.node_id,
+                status        = excluded.status,
+                start_time    = excluded.start_time,
+                end_time      = excluded.end_time,
+                doc_count     = excluded.doc_count,
+                changed_count = excluded.changed_count,
+                error_message = excluded.error_message,
+                updated_time  = excluded.updated_time
+            """)
+    void upsert(BaseSyncSource state);
+}
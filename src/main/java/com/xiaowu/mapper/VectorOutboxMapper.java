@@ -0,0 +1,56 @@
+package com.xiaowu.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaowu.entity.po.BaseVectorOutbox;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+@Mapper
+public interface VectorOutboxMapper extends BaseMapper<BaseVectorOutbox> {
+
+    /**
+     * 写入一条文档变更；该文档已有待处理记录时合并为最新的操作，并递增 revision、清空重试状态
+     */
+    @Insert("""
+            insert into base_vector_outbox (doc_id, source_id, operation, vector_doc_id, stale_vector_doc_id, modified_time,
+                                            revision, attempts, next_attempt_time, created_time, updated_time)
+            values (#{docId}, #{sourceId}, #{operation}, #{vectorDocId}, #{staleVectorDocId}, #{modifiedTime},
+                    0, 0, localtimestamp, localtimestamp, localtimestamp)
+            on conflict (doc_id) do update
+            set source_id           = excluded.source_id,
+                operation           = excluded.operation,
+                vector_doc_id       = excluded.vector_doc_id,
+                stale_vector_doc_id = coalesce(excluded.stale_vector_doc_id, base_vector_outbox.stale_vector_doc_id),
+                modified_time       = excluded.modified_time,
+                revision            = base_vector_outbox.revision + 1,
+                attempts            = 0,
+                next_attempt_time   = excluded.next_attempt_time,
+                lease_until         = null,
+                last_error          = null,
+                updated_time        = excluded.updated_time
+            """)
+    void enqueue(BaseVectorOutbox entry);
+
+    /**
+     * 领取一批到期的记录：设置租约并递增尝试次数。多个实例同时领取时通过 skip locked 互不重复
+     */
+    @Select("""
+            update base_vector_outbox
+            set lease_until = localtimestamp + make_interval(secs => #{leaseSeconds}),
+                attempts    = attempts + 1
+            where id in (select id
+                         from base_vector_outbox
+                         where next_attempt_time <= localtimestamp
+                           and (lease_until is null or lease_until < localtimestamp)
+                         order by id
+                         limit #{limit} for update skip locked)
+            returning *
+            """)
+    @Options(flushCache = Options.FlushCachePolicy.TRUE, useCache = false)
+    List<BaseVectorOutbox> claim(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+}
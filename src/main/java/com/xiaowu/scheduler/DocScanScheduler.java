@@ -1,31 +1,94 @@
 package com.xiaowu.scheduler;
 
 
+import com.xiaowu.common.AdaptiveSyncInterval;
+import com.xiaowu.common.SyncRunContext;
+import com.xiaowu.config.SyncScheduleConfig;
 import com.xiaowu.service.DocService;
-import lombok.RequiredArgsConstructor;
+import com.xiaowu.service.SyncRunService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TriggerContext;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
+
 /**
  * DocScanScheduler 是一个定时任务类，
- * 每分钟自动调用 DocService 的 loadData() 方法，用于文档数据的定时加载或同步。
+ * 自动调用 DocService 的 loadData() 方法，用于文档数据的定时加载或同步。
+ * 每次运行的耗时与结果由 SyncRunService 记录到运行历史中。
+ * <p>
+ * 同步间隔不再固定：由 AdaptiveSyncInterval 根据最近的变化率与同步耗时调整，
+ * 下一次同步在本次结束后才开始计时，上一次（包括手动触发的）同步仍在执行时跳过本次。
+ * 当前间隔、变化率与跳过次数通过 sync.schedule.interval / sync.schedule.change.rate / sync.schedule.skipped 指标查看。
  */
+@Slf4j
 @EnableScheduling // 开启 Spring 定时任务功能
 @Component        // 注册为 Spring 组件（由 Spring 管理）
-@RequiredArgsConstructor // 使用 Lombok 自动生成构造方法注入 docService
-public class DocScanScheduler {
+public class DocScanScheduler implements SchedulingConfigurer {
 
     // 注入业务服务 DocService，用于执行实际的数据加载逻辑
     private final DocService docService;
 
+    // 同步运行记录服务
+    private final SyncRunService syncRunService;
+
+    // 自适应同步间隔
+    private final AdaptiveSyncInterval interval;
+
+    // 因上一次同步仍在执行而跳过的次数
+    private final Counter skipped;
+
+    public DocScanScheduler(DocService docService, SyncRunService syncRunService,
+                            SyncScheduleConfig syncScheduleConfig, MeterRegistry meterRegistry) {
+        this.docService = docService;
+        this.syncRunService = syncRunService;
+        this.interval = new AdaptiveSyncInterval(syncScheduleConfig);
+        this.skipped = meterRegistry.counter("sync.schedule.skipped");
+        Gauge.builder("sync.schedule.interval", interval, v -> v.interval().toMillis() / 1000.0)
+                .description("Current document sync interval")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("sync.schedule.change.rate", interval, AdaptiveSyncInterval::changeRate)
+                .description("Smoothed number of changed documents per sync run")
+                .register(meterRegistry);
+    }
+
     /**
-     * 每隔 60 秒执行一次该方法
-     * fixedRate：上一次任务开始执行后，延迟固定时间再开始下一次任务（单位：毫秒）
+     * 注册触发器任务：每次执行结束后按当前间隔计算下一次执行时间
      */
-    @Scheduled(fixedRate = 1000 * 60)
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.addTriggerTask(this::scan, this::nextExecution);
+    }
+
+    private Instant nextExecution(TriggerContext triggerContext) {
+        Instant lastCompletion = triggerContext.lastCompletion();
+        Instant base = lastCompletion == null ? Instant.now() : lastCompletion;
+        return base.plus(interval.nextDelay());
+    }
+
     public void scan() {
-        // 调用文档服务中的数据加载方法
-        docService.loadData();
+        if (syncRunService.running()) {
+            // 上一次同步（可能是手动触发的）仍在执行，跳过本次，间隔保持不变
+            skipped.increment();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // 调用文档服务中的数据加载方法，并记录运行历史
+            SyncRunContext run = syncRunService.run("SCHEDULED", docService::loadData);
+            interval.record(run.added() + run.updated() + run.deleted(), Duration.ofNanos(System.nanoTime() - start));
+        } catch (Exception e) {
+            // 失败信息已写入运行历史，这里只打印日志，按没有变化放大间隔，不影响下一次调度
+            log.error("scheduled document sync failed", e);
+            interval.record(0, Duration.ofNanos(System.nanoTime() - start));
+        }
     }
 }
@@ -0,0 +1,28 @@
+package com.xiaowu.scheduler;
+
+import com.xiaowu.feishu.DocSnapshotStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * DocSnapshotCompactor 定时整理本地文档快照中失效内容过多的段文件。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocSnapshotCompactor {
+
+    private final DocSnapshotStore docSnapshotStore;
+
+    @Scheduled(fixedDelayString = "${feishu.snapshot.compaction-interval:PT10M}")
+    public void compact() {
+        try {
+            docSnapshotStore.compact();
+        } catch (Exception e) {
+            // 整理失败只是多占磁盘，下一次继续整理
+            log.error("document snapshot compaction failed", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.xiaowu.scheduler;
+
+import com.xiaowu.service.SyncShardService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * SyncNodeHeartbeat 定时刷新当前实例的心跳，存活实例共同参与飞书数据源的分配。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SyncNodeHeartbeat {
+
+    private final SyncShardService syncShardService;
+
+    @Scheduled(fixedDelayString = "${sync.sharding.heartbeat-interval:PT10S}")
+    public void heartbeat() {
+        try {
+            syncShardService.heartbeat();
+        } catch (Exception e) {
+            // 心跳失败时其他实例会在 node-ttl 后接管本实例的数据源，这里只打印日志
+            log.error("sync node heartbeat failed", e);
+        }
+    }
+
+    /**
+     * 正常退出时删除心跳，不必等 node-ttl 过期
+     */
+    @PreDestroy
+    public void leave() {
+        try {
+            syncShardService.leave();
+        } catch (Exception e) {
+            log.warn("failed to remove the sync node heartbeat", e);
+        }
+    }
+}
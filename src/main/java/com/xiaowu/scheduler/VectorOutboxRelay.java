@@ -0,0 +1,42 @@
+package com.xiaowu.scheduler;
+
+import com.xiaowu.common.ModelLane;
+import com.xiaowu.config.VectorOutboxConfig;
+import com.xiaowu.service.VectorOutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * VectorOutboxRelay 定时把发件箱中的文档变更写入向量存储。
+ * 每次调度连续处理整批记录，直到没有到期的记录为止。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VectorOutboxRelay {
+
+    private final VectorOutboxService vectorOutboxService;
+
+    private final VectorOutboxConfig vectorOutboxConfig;
+
+    /**
+     * fixedDelay：上一次处理结束后间隔固定时间再开始下一次，处理时间较长时不会重叠执行
+     */
+    @Scheduled(fixedDelayString = "${vector.outbox.relay-interval:PT5S}")
+    public void relay() {
+        try {
+            // 读取文档与向量模型调用走后台通道，排队时让位于用户对话
+            ModelLane.BACKGROUND.run(() -> {
+                int claimed;
+                do {
+                    claimed = vectorOutboxService.relay();
+                } while (claimed >= vectorOutboxConfig.getBatchSize());
+            });
+        } catch (Exception e) {
+            // 记录级别的失败已由发件箱重试，这里只处理领取记录等整体失败，不影响下一次调度
+            log.error("vector outbox relay failed", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.xiaowu.service;
+
+import com.xiaowu.entity.vo.BatchJobVO;
+import com.xiaowu.entity.vo.BatchRequestVO;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 批量问答服务：按并发上限在虚拟线程上执行问题，每个问题的结果写入检查点表，任务可以断点续跑
+ */
+public interface BatchService {
+
+    /**
+     * 创建并开始执行一个批量问答任务。
+     * 先推送 job 事件（任务信息），每完成一个问题推送一个 item 事件，全部完成后推送 done 事件；
+     * 客户端断开不影响任务继续执行
+     * @param request 批量问答请求
+     * @return 结果事件流
+     */
+    SseEmitter submit(BatchRequestVO request);
+
+    /**
+     * 继续执行任务中未成功的问题（包括失败的问题），事件格式与 submit 相同
+     * @param jobId 任务 ID
+     * @return 结果事件流
+     */
+    SseEmitter resume(String jobId);
+
+    /**
+     * 查询任务及全部问题的执行结果
+     * @param jobId 任务 ID
+     * @return 任务详情
+     */
+    BatchJobVO get(String jobId);
+}
@@ -2,8 +2,10 @@ package com.xiaowu.service;
 
 
 
+import com.xiaowu.entity.vo.ChatReplyVO;
 import com.xiaowu.entity.vo.ConversationVO;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -25,6 +27,16 @@ public interface ChatService {
      */
     void edit(String conversationId, String name);
 
+    /**
+     * 在指定会话中进行一轮对话，同一会话的多次对话按到达顺序串行执行。
+     * 预算从调用时开始计算，预算不足时按需跳过检索、缩减历史或截断回复，而不是直接失败
+     * @param conversationId 会话 ID
+     * @param message 用户消息
+     * @param budget 本轮对话的时间预算
+     * @return AI 回复内容及采取的降级措施
+     */
+    ChatReplyVO chat(String conversationId, String message, Duration budget);
+
     /**
      * 获取所有会话的列表
      * @return 会话信息列表
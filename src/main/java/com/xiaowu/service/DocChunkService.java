@@ -0,0 +1,49 @@
+package com.xiaowu.service;
+
+import com.xiaowu.common.ChunkPlan;
+import com.xiaowu.common.DocBlock;
+import com.xiaowu.entity.po.BaseDocChunk;
+import com.xiaowu.entity.vo.DedupStatsVO;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 文档分块与重复去重：只为内容新的分块嵌入向量，内容相同的分块引用已有向量
+ */
+public interface DocChunkService {
+
+    /**
+     * 按章节把文档内容切块，并为每个分块查找内容相同、可以引用的已有向量。
+     * 内容块逐个读取、切好的分块逐个处理，需要嵌入的分块立即交给 vectorSink，不在内存中保留整篇文档。
+     * @param docId 文档 ID
+     * @param sourceId 文档所属的飞书数据源
+     * @param blocks 读取文档内容块，按文档顺序把内容块交给传入的处理者
+     * @param batchCanonicals 同一批中已规划、尚未保存的新分块，用于批内去重；本次规划出的新分块会追加到其中
+     * @param vectorSink 需要嵌入的分块，需要在调用 replace 之前写入向量存储
+     * @return 分块规划
+     */
+    ChunkPlan plan(String docId, String sourceId, Consumer<Consumer<DocBlock>> blocks,
+                   List<BaseDocChunk> batchCanonicals, Consumer<Document> vectorSink);
+
+    /**
+     * 在一个事务中用新的分块替换文档原有的分块，并删除不再被任何分块引用的向量
+     * @param plan 分块规划，为空分块时即删除文档的全部分块
+     * @param legacyVectorDocIds 需要一并删除的文档级向量 ID（切块之前整篇写入的向量）
+     * @return 删除的向量数
+     */
+    int replace(ChunkPlan plan, List<String> legacyVectorDocIds);
+
+    /**
+     * 删除没有被任何分块引用的向量，用于清理处理失败的文档已经写入的向量
+     * @param vectorDocIds 处理失败的文档新嵌入的向量 ID
+     * @return 删除的向量数
+     */
+    int discard(List<String> vectorDocIds);
+
+    /**
+     * 当前语料的去重效果
+     */
+    DedupStatsVO stats();
+}
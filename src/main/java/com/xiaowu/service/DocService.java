@@ -16,6 +16,14 @@ public interface DocService {
      */
     void loadData();
 
+    /**
+     * 重新写入所有文档的向量（调整切块方式或更换嵌入模型后使用），
+     * 内容未变化的文档从本地快照读取，不请求飞书
+     *
+     * @return 登记重新写入的文档数
+     */
+    int rebuild();
+
     /**
      * 获取当前所有文档信息列表
      * @return 文档视图对象集合
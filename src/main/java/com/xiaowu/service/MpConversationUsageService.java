@@ -0,0 +1,8 @@
+package com.xiaowu.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.xiaowu.entity.po.BaseConversationUsage;
+
+
+public interface MpConversationUsageService extends IService<BaseConversationUsage> {
+}
@@ -0,0 +1,22 @@
+package com.xiaowu.service;
+
+import com.xiaowu.common.ChatDeadline;
+import reactor.core.publisher.Flux;
+
+/**
+ * 响应式对话服务（chat.stack=reactive 时启用）：读取历史、检索、模型调用、写回历史串成一条流，
+ * 整轮对话不占用请求线程；其中读写历史与等待模型回复是非阻塞的，检索、用量写库与模型限流的等待仍是阻塞调用，
+ * 在 boundedElastic 线程池上执行。
+ */
+public interface ReactiveChatService {
+
+    /**
+     * 在指定会话中进行一轮流式对话。
+     * 到达截止时间时停止接收并正常结束，已采取的降级措施记录在 deadline 中；截止前没有任何回复时以错误结束
+     * @param conversationId 会话 ID
+     * @param message 用户消息
+     * @param deadline 本轮对话的截止时间
+     * @return 逐段返回的 AI 回复内容
+     */
+    Flux<String> stream(String conversationId, String message, ChatDeadline deadline);
+}
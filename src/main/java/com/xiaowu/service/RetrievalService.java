@@ -0,0 +1,37 @@
+package com.xiaowu.service;
+
+import com.xiaowu.common.SearchProfile;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * 向量检索服务，每次检索可以使用不同的检索参数
+ */
+public interface RetrievalService {
+
+    /**
+     * 使用指定的检索参数检索相关文档
+     * @param query 查询文本
+     * @param profile 检索参数
+     * @return 按相似度从高到低排列的文档
+     */
+    List<Document> search(String query, SearchProfile profile);
+
+    /**
+     * 使用指定的检索参数检索相关文档，并限制查询耗时
+     * @param query 查询文本
+     * @param profile 检索参数
+     * @param timeoutSeconds 查询超时（秒），小于等于 0 表示不限制
+     * @return 按相似度从高到低排列的文档
+     */
+    List<Document> search(String query, SearchProfile profile, int timeoutSeconds);
+
+    /**
+     * 使用 application.yml 中配置的检索参数检索相关文档
+     * @param query 查询文本
+     * @param profileName 检索参数名称，为空时使用默认配置
+     * @return 按相似度从高到低排列的文档
+     */
+    List<Document> search(String query, String profileName);
+}
@@ -0,0 +1,35 @@
+package com.xiaowu.service;
+
+import com.xiaowu.common.SyncRunContext;
+import com.xiaowu.entity.vo.SyncRunVO;
+
+import java.util.List;
+
+/**
+ * 文档同步运行记录服务，负责记录每次同步的耗时与结果
+ */
+public interface SyncRunService {
+
+    /**
+     * 执行一次同步，并把各阶段耗时、文档数量与结果写入运行历史和 Micrometer 指标。
+     * 同步失败时异常会继续向上抛出。
+     * @param triggerType 触发方式，例如 SCHEDULED / MANUAL，发件箱写入向量时为 RELAY
+     * @param sync 实际的同步操作
+     * @return 本次同步的耗时与文档数量统计
+     */
+    SyncRunContext run(String triggerType, Runnable sync);
+
+    /**
+     * 当前实例是否有同步正在执行（包括定时与手动触发，不含发件箱写入向量）
+     * @return 有同步正在执行时返回 true
+     */
+    boolean running();
+
+    /**
+     * 查询最近的同步运行记录
+     * @param limit 返回条数
+     * @param triggerType 只返回该触发方式的记录，为空时返回全部
+     * @return 运行记录，按开始时间倒序
+     */
+    List<SyncRunVO> recentRuns(int limit, String triggerType);
+}
@@ -0,0 +1,29 @@
+package com.xiaowu.service;
+
+import com.xiaowu.entity.po.FeishuConfig.Source;
+
+import java.util.List;
+
+/**
+ * 多实例之间分配飞书数据源
+ */
+public interface SyncShardService {
+
+    /**
+     * 刷新当前实例的心跳
+     */
+    void heartbeat();
+
+    /**
+     * 当前实例退出时删除心跳，其他实例在下一次同步时接管它的数据源
+     */
+    void leave();
+
+    /**
+     * 按一致性哈希计算当前实例负责同步的数据源
+     *
+     * @param sources 全部数据源
+     * @return 归属当前实例的数据源
+     */
+    List<Source> ownedSources(List<Source> sources);
+}
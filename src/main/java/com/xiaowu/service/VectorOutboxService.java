@@ -0,0 +1,28 @@
+package com.xiaowu.service;
+
+import com.xiaowu.entity.po.BaseDoc;
+
+/**
+ * 向量写入发件箱：文档元数据变更时在同一事务中登记向量变更，再由后台批量写入向量存储
+ */
+public interface VectorOutboxService {
+
+    /**
+     * 登记文档内容需要（重新）写入向量，需要在修改 base_doc 的事务中调用
+     * @param doc 文档，vectorDocId 为要写入的向量 ID
+     * @param staleVectorDocId 需要一并删除的旧向量 ID，没有时为空
+     */
+    void enqueueUpsert(BaseDoc doc, String staleVectorDocId);
+
+    /**
+     * 登记需要删除文档的向量，需要在删除 base_doc 的事务中调用
+     * @param doc 被删除的文档
+     */
+    void enqueueDelete(BaseDoc doc);
+
+    /**
+     * 领取一批到期的记录并写入向量存储，失败的记录按退避时间重试
+     * @return 本次领取的记录数
+     */
+    int relay();
+}
@@ -0,0 +1,331 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.xiaowu.common.ModelLane;
+import com.xiaowu.config.BatchConfig;
+import com.xiaowu.config.ChatDeadlineConfig;
+import com.xiaowu.entity.po.BaseBatchItem;
+import com.xiaowu.entity.po.BaseBatchJob;
+import com.xiaowu.entity.vo.BatchItemVO;
+import com.xiaowu.entity.vo.BatchJobVO;
+import com.xiaowu.entity.vo.BatchRequestVO;
+import com.xiaowu.entity.vo.ChatReplyVO;
+import com.xiaowu.mapper.BatchJobMapper;
+import com.xiaowu.service.BatchService;
+import com.xiaowu.service.ChatService;
+import com.xiaowu.service.MpBatchItemService;
+import com.xiaowu.service.MpBatchJobService;
+import com.xiaowu.utils.IdUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 批量问答服务实现。
+ * <p>
+ * 每个任务由一个虚拟线程调度，用 Semaphore 把同时执行的问题数限制在 parallelism 以内，
+ * 每个问题在自己的虚拟线程上执行，模型调用走后台通道，由并发限制器统一限流、让位于用户对话。
+ * 每个问题完成后立即把结果写入 base_batch_item（检查点），进程重启后可以通过 resume 只执行未成功的问题。
+ * <p>
+ * 任务执行前先在数据库中领取（条件更新为 RUNNING 并记录领取者与租约），多个实例中同一任务只会有一个在执行；
+ * 执行者每完成一个问题续期租约，进程退出后租约到期，任务可以在任意实例上续跑。
+ * 续期失败说明租约已被其他实例接管，此时不再调度新的问题，也不再把任务标记为 COMPLETED。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchServiceImpl implements BatchService {
+
+    private static final String PENDING = "PENDING";
+
+    private static final String SUCCEEDED = "SUCCEEDED";
+
+    private static final String FAILED = "FAILED";
+
+    // 批量任务表
+    private final MpBatchJobService mpBatchJobService;
+
+    // 批量问题表（检查点）
+    private final MpBatchItemService mpBatchItemService;
+
+    // 批量任务的领取与租约续期
+    private final BatchJobMapper batchJobMapper;
+
+    // 对话服务，每个问题按一轮普通对话执行
+    private final ChatService chatService;
+
+    // 对话时间预算配置
+    private final ChatDeadlineConfig chatDeadlineConfig;
+
+    // 批量问答配置
+    private final BatchConfig batchConfig;
+
+    // 指标注册表
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public SseEmitter submit(BatchRequestVO request) {
+        List<BatchRequestVO.Question> questions = request.getQuestions();
+        if (CollectionUtils.isEmpty(questions)) {
+            throw new IllegalArgumentException("questions must not be empty");
+        }
+        if (questions.size() > batchConfig.getMaxQuestions()) {
+            throw new IllegalArgumentException("too many questions, the limit is %d".formatted(batchConfig.getMaxQuestions()));
+        }
+
+        BaseBatchJob job = BaseBatchJob.builder()
+                .jobId(IdUtil.gen32UUID())
+                .status(PENDING)
+                .parallelism(batchConfig.parallelism(request.getParallelism()))
+                .budgetMillis(chatDeadlineConfig.budget(request.getBudgetMillis()).toMillis())
+                .totalCount(questions.size())
+                .succeededCount(0)
+                .failedCount(0)
+                .build();
+        mpBatchJobService.save(job);
+
+        List<BaseBatchItem> items = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            items.add(BaseBatchItem.builder()
+                    .jobId(job.getJobId())
+                    .itemIndex(i)
+                    .question(questions.get(i).getQuestion())
+                    .conversationId(questions.get(i).getConversationId())
+                    .status(PENDING)
+                    .build());
+        }
+        mpBatchItemService.saveBatch(items);
+
+        return start(job.getJobId());
+    }
+
+    @Override
+    public SseEmitter resume(String jobId) {
+        findJob(jobId);
+        return start(jobId);
+    }
+
+    @Override
+    public BatchJobVO get(String jobId) {
+        BaseBatchJob job = findJob(jobId);
+        List<BatchItemVO> items = mpBatchItemService.list(new LambdaQueryWrapper<BaseBatchItem>()
+                        .eq(BaseBatchItem::getJobId, jobId)
+                        .orderByAsc(BaseBatchItem::getItemIndex))
+                .stream()
+                .map(this::toVO)
+                .toList();
+        BatchJobVO vo = toVO(job);
+        vo.setItems(items);
+        return vo;
+    }
+
+    /**
+     * 领取任务后在后台虚拟线程上执行，返回推送结果的事件流。
+     * 领取成功后才读取未成功的问题，避免读到上一个执行者尚未写入的检查点
+     */
+    private SseEmitter start(String jobId) {
+        String owner = IdUtil.gen32UUID();
+        if (batchJobMapper.claim(jobId, owner, leaseSeconds()) == 0) {
+            throw new IllegalStateException("batch job %s is already running".formatted(jobId));
+        }
+        BaseBatchJob job = findJob(jobId);
+        List<BaseBatchItem> items = mpBatchItemService.list(new LambdaQueryWrapper<BaseBatchItem>()
+                .eq(BaseBatchItem::getJobId, jobId)
+                .ne(BaseBatchItem::getStatus, SUCCEEDED)
+                .orderByAsc(BaseBatchItem::getItemIndex));
+        // 不设置超时，任务时长取决于问题数量
+        SseEmitter emitter = new SseEmitter(0L);
+        Events events = new Events(emitter);
+        events.send("job", toVO(job));
+
+        Thread.ofVirtual().name("batch-" + job.getJobId()).start(() -> {
+            try {
+                run(job, owner, items, events);
+            } catch (RuntimeException e) {
+                log.error("batch job failed, job id is {}", job.getJobId(), e);
+            } finally {
+                events.complete();
+            }
+        });
+        return emitter;
+    }
+
+    private void run(BaseBatchJob job, String owner, List<BaseBatchItem> items, Events events) {
+        Duration budget = Duration.ofMillis(job.getBudgetMillis());
+        Semaphore permits = new Semaphore(job.getParallelism());
+        AtomicBoolean leased = new AtomicBoolean(true);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (BaseBatchItem item : items) {
+                permits.acquireUninterruptibly();
+                if (!leased.get()) {
+                    permits.release();
+                    break;
+                }
+                executor.submit(() -> {
+                    try {
+                        events.send("item", toVO(process(item, budget)));
+                        if (batchJobMapper.renew(job.getJobId(), owner, leaseSeconds()) == 0) {
+                            leased.set(false);
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        if (!leased.get()) {
+            log.warn("batch job lease was taken over by another runner, job id is {}", job.getJobId());
+            return;
+        }
+
+        // 以检查点表为准重新统计，续跑时也能得到整个任务的结果
+        long succeeded = mpBatchItemService.count(new LambdaQueryWrapper<BaseBatchItem>()
+                .eq(BaseBatchItem::getJobId, job.getJobId())
+                .eq(BaseBatchItem::getStatus, SUCCEEDED));
+        long failed = mpBatchItemService.count(new LambdaQueryWrapper<BaseBatchItem>()
+                .eq(BaseBatchItem::getJobId, job.getJobId())
+                .eq(BaseBatchItem::getStatus, FAILED));
+        boolean completed = mpBatchJobService.update(BaseBatchJob.builder()
+                        .status("COMPLETED")
+                        .succeededCount((int) succeeded)
+                        .failedCount((int) failed)
+                        .build(),
+                new LambdaUpdateWrapper<BaseBatchJob>()
+                        .eq(BaseBatchJob::getJobId, job.getJobId())
+                        .eq(BaseBatchJob::getOwner, owner));
+        if (!completed) {
+            log.warn("batch job lease was taken over before completion, job id is {}", job.getJobId());
+            return;
+        }
+        events.send("done", toVO(findJob(job.getJobId())));
+    }
+
+    private long leaseSeconds() {
+        return Math.max(1, batchConfig.getLease().toSeconds());
+    }
+
+    /**
+     * 执行单个问题并写入检查点，失败时记录错误，不影响其他问题
+     */
+    private BaseBatchItem process(BaseBatchItem item, Duration budget) {
+        long start = System.nanoTime();
+        try {
+            if (!StringUtils.hasText(item.getConversationId())) {
+                // 先记录新建的会话，续跑时沿用同一个会话
+                item.setConversationId(chatService.create().getConversationId());
+                mpBatchItemService.updateById(BaseBatchItem.builder()
+                        .id(item.getId())
+                        .conversationId(item.getConversationId())
+                        .build());
+            }
+            ChatReplyVO reply = ModelLane.BACKGROUND.call(
+                    () -> chatService.chat(item.getConversationId(), item.getQuestion(), budget));
+            item.setStatus(SUCCEEDED);
+            item.setAnswer(reply.getContent());
+            item.setDegradations(String.join(",", reply.getDegradations()));
+            item.setErrorMessage(null);
+        } catch (RuntimeException e) {
+            log.warn("batch question failed, job id is {}, index is {}", item.getJobId(), item.getItemIndex(), e);
+            item.setStatus(FAILED);
+            item.setErrorMessage(StringUtils.truncate(String.valueOf(e.getMessage()), 1024));
+        }
+        long nanos = System.nanoTime() - start;
+        item.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(nanos));
+        // 显式设置每个字段，续跑成功时清除上次失败留下的错误信息
+        mpBatchItemService.update(new LambdaUpdateWrapper<BaseBatchItem>()
+                .eq(BaseBatchItem::getId, item.getId())
+                .set(BaseBatchItem::getStatus, item.getStatus())
+                .set(BaseBatchItem::getAnswer, item.getAnswer())
+                .set(BaseBatchItem::getDegradations, item.getDegradations())
+                .set(BaseBatchItem::getErrorMessage, item.getErrorMessage())
+                .set(BaseBatchItem::getElapsedMillis, item.getElapsedMillis()));
+
+        Timer.builder("batch.question")
+                .description("Time to answer one question of a batch job")
+                .tag("status", item.getStatus().toLowerCase(Locale.ROOT))
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        return item;
+    }
+
+    private BaseBatchJob findJob(String jobId) {
+        return mpBatchJobService.getOneOpt(new LambdaQueryWrapper<BaseBatchJob>().eq(BaseBatchJob::getJobId, jobId))
+                .orElseThrow(() -> new RuntimeException("can not find batch job with id: %s".formatted(jobId)));
+    }
+
+    private BatchJobVO toVO(BaseBatchJob job) {
+        return BatchJobVO.builder()
+                .jobId(job.getJobId())
+                .status(job.getStatus())
+                .parallelism(job.getParallelism())
+                .total(job.getTotalCount())
+                .succeeded(job.getSucceededCount())
+                .failed(job.getFailedCount())
+                .build();
+    }
+
+    private BatchItemVO toVO(BaseBatchItem item) {
+        return BatchItemVO.builder()
+                .index(item.getItemIndex())
+                .question(item.getQuestion())
+                .conversationId(item.getConversationId())
+                .status(item.getStatus())
+                .answer(item.getAnswer())
+                .degradations(item.getDegradations())
+                .errorMessage(item.getErrorMessage())
+                .elapsedMillis(item.getElapsedMillis())
+                .build();
+    }
+
+    /**
+     * 事件流的包装：客户端断开后不再推送，任务继续执行
+     */
+    private static final class Events {
+
+        private final SseEmitter emitter;
+
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        private Events(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(() -> open.set(false));
+            emitter.onTimeout(() -> open.set(false));
+            emitter.onError(e -> open.set(false));
+        }
+
+        private void send(String name, Object data) {
+            if (!open.get()) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data));
+            } catch (IOException | IllegalStateException e) {
+                open.set(false);
+            }
+        }
+
+        private void complete() {
+            if (open.compareAndSet(true, false)) {
+                emitter.complete();
+            }
+        }
+    }
+}
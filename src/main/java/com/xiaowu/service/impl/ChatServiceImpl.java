@@ -2,17 +2,44 @@ package com.xiaowu.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 
-import com.xiaowu.common.MessageWrapper;
+import com.xiaowu.advisor.ChatMessageAdvisor;
+import com.xiaowu.advisor.PromptPrefixAdvisor;
+import com.xiaowu.advisor.RetrievalAdvisor;
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.common.ChatDeadline.Degradation;
+import com.xiaowu.common.ChatTelemetry;
+import com.xiaowu.common.ChatTelemetry.Stage;
+import com.xiaowu.common.ConversationCodec;
+import com.xiaowu.common.ConversationTurnLock;
+import com.xiaowu.common.ListingEtagCache;
+import com.xiaowu.common.ListingEtagCache.Listing;
+import com.xiaowu.common.ModelLane;
+import com.xiaowu.common.ShutdownOnFailureScope;
+import com.xiaowu.config.ChatPreparationConfig;
 import com.xiaowu.entity.po.BaseConversation;
+import com.xiaowu.entity.vo.ChatReplyVO;
 import com.xiaowu.entity.vo.ConversationVO;
 import com.xiaowu.service.ChatService;
 import com.xiaowu.service.MpConversationService;
 import com.xiaowu.utils.IdUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.util.context.Context;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service // 标识为 Spring 的服务组件（Service层）
 @RequiredArgsConstructor // 自动为构造函数注入 final 修饰的字段
@@ -21,6 +48,30 @@ public class ChatServiceImpl implements ChatService {
     // 注入 MyBatis-Plus 封装的数据库服务，用于操作 Conversation 表
     private final MpConversationService conversationService;
 
+    // 会话列表的版本号缓存，会话增删改后递增版本号
+    private final ListingEtagCache listingEtagCache;
+
+    // 会话内容编解码器
+    private final ConversationCodec conversationCodec;
+
+    // AI 对话客户端
+    private final ChatClient chatClient;
+
+    // 会话上下文存储
+    private final ChatMemory chatMemory;
+
+    // 按会话串行化对话轮次，避免同一会话并发读写丢失消息
+    private final ConversationTurnLock conversationTurnLock;
+
+    // 知识库检索，在对话准备阶段与读取历史消息并行执行
+    private final RetrievalAdvisor retrievalAdvisor;
+
+    // 对话准备阶段配置
+    private final ChatPreparationConfig chatPreparationConfig;
+
+    // 对话链路耗时统计，记录准备阶段的耗时
+    private final ChatTelemetry chatTelemetry;
+
     /**
      * 创建一个新的会话，并保存到数据库
      */
@@ -35,6 +86,7 @@ public class ChatServiceImpl implements ChatService {
             .conversationId(conversationId)
             .title(title)
             .build());
+        listingEtagCache.bump(Listing.CONVERSATION);
         // 返回会话信息视图对象
         return ConversationVO.builder().conversationId(conversationId)
             .title(title)
@@ -55,6 +107,89 @@ public class ChatServiceImpl implements ChatService {
             BaseConversation.builder().title(title).build(),
             new LambdaQueryWrapper<BaseConversation>().eq(BaseConversation::getConversationId, conversationId)
         );
+        listingEtagCache.bump(Listing.CONVERSATION);
+    }
+
+    /**
+     * 进行一轮对话：读取历史、调用模型、写回历史整体在会话锁内执行。
+     * 内部使用流式调用再拼接结果，以便统计首 token 耗时；到达截止时间时停止接收，返回已生成的部分。
+     */
+    @Override
+    public ChatReplyVO chat(String conversationId, String message, Duration budget) {
+        // 预算从请求到达开始计算，包含等待会话锁的时间
+        ChatDeadline deadline = ChatDeadline.after(budget);
+        String content = conversationTurnLock.runExclusive(conversationId,
+            () -> deadline.runBound(conversationId, () -> complete(conversationId, message, deadline)));
+        return ChatReplyVO.builder()
+            .content(content)
+            .degradations(deadline.degradations().stream().map(Enum::name).toList())
+            .build();
+    }
+
+    /**
+     * 调用模型并拼接回复，模型在截止时间前没有完成时截断。
+     * 问题与回复（包括截断的回复）在本轮结束后一起写回历史；一个字都没有回复时不写入，保持历史中问答成对
+     */
+    private String complete(String conversationId, String message, ChatDeadline deadline) {
+        Preparation preparation = prepare(conversationId, message, deadline);
+        AtomicBoolean finished = new AtomicBoolean();
+        String content = chatClient.prompt()
+            .user(message)
+            .advisors(new ChatMessageAdvisor(chatMemory, conversationId, preparation.history()))
+            // 会话 ID 放入 advise context，供统计、检索等顾问按会话记录用量、读取时间预算；
+            // 已检索到的文档一并放入，检索顾问不再重复检索
+            .advisors(a -> a.param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, conversationId)
+                .param(PromptPrefixAdvisor.RETRIEVED_DOCUMENTS, preparation.documents()))
+            .stream()
+            .content()
+            .doOnComplete(() -> finished.set(true))
+            .take(deadline.remaining())
+            // 顾问链会切换线程，把调用线程的模型通道放入 Reactor Context 传给模型调用
+            .contextWrite(Context.of(ModelLane.CONTEXT_KEY, ModelLane.current()))
+            .collect(Collectors.joining())
+            .block();
+        if (!finished.get()) {
+            if (!StringUtils.hasText(content)) {
+                throw new RuntimeException(
+                    "chat deadline exceeded before the model replied, conversation id is %s".formatted(conversationId));
+            }
+            deadline.degrade(Degradation.TRUNCATED_ANSWER);
+        }
+        chatMemory.add(conversationId, List.of(new UserMessage(message), new AssistantMessage(content)));
+        return content;
+    }
+
+    /**
+     * 对话准备：读取历史消息与检索知识库互不依赖，各自在一个虚拟线程上并行执行。
+     * 任一步骤失败时取消另一个步骤；准备阶段超过截止时间时取消全部步骤并报错
+     */
+    private Preparation prepare(String conversationId, String message, ChatDeadline deadline) {
+        long start = System.nanoTime();
+        try {
+            if (!chatPreparationConfig.isParallel()) {
+                return new Preparation(chatMemory.get(conversationId, ChatMessageAdvisor.HISTORY_SIZE),
+                    retrievalAdvisor.search(message, null, deadline));
+            }
+            // 检索会调用向量模型，子任务沿用调用线程的模型通道
+            ModelLane lane = ModelLane.current();
+            try (ShutdownOnFailureScope scope = new ShutdownOnFailureScope("chat-prepare")) {
+                Supplier<List<Message>> history = scope.fork(
+                    () -> chatMemory.get(conversationId, ChatMessageAdvisor.HISTORY_SIZE));
+                Supplier<List<Document>> documents = scope.fork(
+                    () -> lane.call(() -> retrievalAdvisor.search(message, null, deadline)));
+                scope.join(deadline.bounded() ? deadline.remaining() : null);
+                return new Preparation(history.get(), documents.get());
+            } catch (TimeoutException e) {
+                throw new RuntimeException(
+                    "chat deadline exceeded while preparing the conversation, conversation id is %s".formatted(conversationId), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(
+                    "interrupted while preparing the conversation, conversation id is %s".formatted(conversationId), e);
+            }
+        } finally {
+            chatTelemetry.record(Stage.PREPARE, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -81,6 +216,7 @@ public class ChatServiceImpl implements ChatService {
         conversationService.remove(
             new LambdaQueryWrapper<BaseConversation>().eq(BaseConversation::getConversationId, conversationId)
         );
+        listingEtagCache.bump(Listing.CONVERSATION);
     }
 
     /**
@@ -94,12 +230,18 @@ public class ChatServiceImpl implements ChatService {
             .map(v -> ConversationVO.builder()
                 .conversationId(v.getConversationId())
                 .title(v.getTitle())
-                // 将 JSON 字符串形式的 content 转换为消息对象列表
-                .messages(MessageWrapper.fromConversationStr(v.getContent()))
+                // 将编码后的 content 转换为消息对象列表
+                .messages(conversationCodec.decode(v.getContent()))
                 .build()
             )
             .orElseThrow(() ->
                 new RuntimeException("can not find conversation with id: %s ".formatted(conversationId))
             );
     }
+
+    /**
+     * 对话准备阶段的结果
+     */
+    private record Preparation(List<Message> history, List<Document> documents) {
+    }
 }
@@ -0,0 +1,212 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xiaowu.common.ChunkPlan;
+import com.xiaowu.common.DocBlock;
+import com.xiaowu.common.SectionChunker;
+import com.xiaowu.common.SimHash;
+import com.xiaowu.config.VectorChunkConfig;
+import com.xiaowu.entity.po.BaseDocChunk;
+import com.xiaowu.entity.vo.DedupStatsVO;
+import com.xiaowu.mapper.DocChunkMapper;
+import com.xiaowu.service.DocChunkService;
+import com.xiaowu.service.MpDocChunkService;
+import com.xiaowu.utils.IdUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 文档分块与重复去重实现。
+ * <p>
+ * 向量 ID 由分块内容生成，只有内容完全相同的分块共用一个向量（引用最先嵌入的 canonical 分块的向量），
+ * 文档更新时未变化的分块沿用原向量，不重新嵌入。内容相近但不相同的分块（模板副本、改了个别数字的文档）
+ * 各自嵌入，向量中保存的始终是分块自己的内容；检索时再按 SimHash 合并近似重复的结果。
+ * 文档按章节切块，内容块与分块逐个处理，单篇文档的内存占用只有当前分块与分块的指纹记录。
+ * 向量按引用计数删除：分块表与向量表在同一个数据库中，替换分块与删除无引用的向量在同一事务中提交；
+ * canonical 分块被删除后由引用分块接替，向量元数据中的出处随之更新。
+ */
+@Service
+@RequiredArgsConstructor
+public class DocChunkServiceImpl implements DocChunkService {
+
+    private final DocChunkMapper docChunkMapper;
+
+    private final MpDocChunkService mpDocChunkService;
+
+    private final VectorStore vectorStore;
+
+    private final VectorChunkConfig vectorChunkConfig;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public ChunkPlan plan(String docId, String sourceId, Consumer<Consumer<DocBlock>> blocks,
+                          List<BaseDocChunk> batchCanonicals, Consumer<Document> vectorSink) {
+        List<BaseDocChunk> chunks = new ArrayList<>();
+        int[] counts = new int[3]; // 嵌入、去重、沿用的分块数
+        SectionChunker chunker = new SectionChunker(vectorChunkConfig.getMaxChars(), text -> {
+            BaseDocChunk chunk = chunk(docId, sourceId, chunks.size(), text);
+            String vectorDocId = IdUtil.nameUUID("chunk:" + text);
+            BaseDocChunk batchMatch = match(vectorDocId, batchCanonicals);
+            BaseDocChunk storedMatch = batchMatch == null ? docChunkMapper.canonical(vectorDocId) : null;
+            if (batchMatch != null) {
+                // 同一批中已有内容相同的新分块
+                chunk.setVectorDocId(batchMatch.getVectorDocId());
+                chunk.setCanonical(false);
+                counts[1]++;
+            } else if (storedMatch != null && docId.equals(storedMatch.getDocId())) {
+                // 本文档上一版本中内容相同的分块，替换后由当前分块接替 canonical
+                chunk.setVectorDocId(storedMatch.getVectorDocId());
+                chunk.setCanonical(true);
+                batchCanonicals.add(chunk);
+                counts[2]++;
+            } else if (storedMatch != null) {
+                chunk.setVectorDocId(storedMatch.getVectorDocId());
+                chunk.setCanonical(false);
+                counts[1]++;
+            } else {
+                chunk.setVectorDocId(vectorDocId);
+                chunk.setCanonical(true);
+                vectorSink.accept(new Document(vectorDocId, text, metadata(chunk)));
+                batchCanonicals.add(chunk);
+                counts[0]++;
+            }
+            chunks.add(chunk);
+        });
+        blocks.accept(chunker);
+        chunker.finish();
+        return new ChunkPlan(docId, chunks, counts[0], counts[1], counts[2]);
+    }
+
+    @Override
+    public int replace(ChunkPlan plan, List<String> legacyVectorDocIds) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return transactionTemplate.execute(status -> {
+            LambdaQueryWrapper<BaseDocChunk> byDoc = new LambdaQueryWrapper<BaseDocChunk>()
+                    .eq(BaseDocChunk::getDocId, plan.docId());
+            List<BaseDocChunk> previous = mpDocChunkService.list(byDoc);
+            mpDocChunkService.remove(byDoc);
+            if (!plan.chunks().isEmpty()) {
+                mpDocChunkService.saveBatch(plan.chunks());
+            }
+            // 引用的 canonical 分块可能在规划之后被删除（或来自同一批中处理失败的文档），确保每个向量都有 canonical 分块
+            plan.chunks().stream()
+                    .filter(chunk -> !chunk.getCanonical())
+                    .map(BaseDocChunk::getVectorDocId)
+                    .distinct()
+                    .forEach(this::promote);
+            // 沿用上一版本向量的分块位置可能变化，向量元数据的出处与当前分块保持一致
+            docChunkMapper.attributeDoc(plan.docId());
+
+            // 原分块的向量：仍被引用的确保有 canonical 分块，不再被引用的删除
+            Set<String> released = new LinkedHashSet<>();
+            for (String vectorDocId : previous.stream().map(BaseDocChunk::getVectorDocId).distinct().toList()) {
+                boolean referenced = mpDocChunkService.count(new LambdaQueryWrapper<BaseDocChunk>()
+                        .eq(BaseDocChunk::getVectorDocId, vectorDocId)) > 0;
+                if (referenced) {
+                    promote(vectorDocId);
+                } else {
+                    released.add(vectorDocId);
+                }
+            }
+            List<String> deleted = Stream.concat(released.stream(), legacyVectorDocIds.stream()).toList();
+            if (!deleted.isEmpty()) {
+                // PgVectorStore 使用同一个数据源，删除向量加入当前事务
+                vectorStore.delete(deleted);
+            }
+            return released.size();
+        });
+    }
+
+    @Override
+    public int discard(List<String> vectorDocIds) {
+        if (vectorDocIds.isEmpty()) {
+            return 0;
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return transactionTemplate.execute(status -> {
+            // 同一批中其他文档可能已经引用了这些向量并替换成功，这样的向量保留
+            Set<String> referenced = mpDocChunkService.list(new LambdaQueryWrapper<BaseDocChunk>()
+                            .select(BaseDocChunk::getVectorDocId)
+                            .in(BaseDocChunk::getVectorDocId, vectorDocIds))
+                    .stream()
+                    .map(BaseDocChunk::getVectorDocId)
+                    .collect(Collectors.toSet());
+            List<String> unreferenced = vectorDocIds.stream().distinct().filter(v -> !referenced.contains(v)).toList();
+            if (!unreferenced.isEmpty()) {
+                vectorStore.delete(unreferenced);
+            }
+            return unreferenced.size();
+        });
+    }
+
+    /**
+     * 向量没有 canonical 分块时提升最早的引用分块，并把向量元数据的出处改为该分块
+     */
+    private void promote(String vectorDocId) {
+        if (docChunkMapper.promote(vectorDocId) > 0) {
+            docChunkMapper.attributeVector(vectorDocId);
+        }
+    }
+
+    /**
+     * 分块记录：只保存指纹与长度，分块内容只存在于向量中
+     */
+    private static BaseDocChunk chunk(String docId, String sourceId, int chunkIndex, String text) {
+        long simhash = SimHash.of(text);
+        return BaseDocChunk.builder()
+                .docId(docId)
+                .sourceId(sourceId)
+                .chunkIndex(chunkIndex)
+                .simhash(simhash)
+                .contentLength(text.length())
+                .build();
+    }
+
+    @Override
+    public DedupStatsVO stats() {
+        DedupStatsVO stats = docChunkMapper.stats();
+        long savedEmbeddings = stats.getChunkCount() - stats.getVectorCount();
+        stats.setSavedEmbeddings(savedEmbeddings);
+        stats.setSavedBytes(savedEmbeddings * stats.getVectorRowBytes() - stats.getChunkTableBytes());
+        return stats;
+    }
+
+    /**
+     * 在同一批的新分块中查找内容相同（向量 ID 相同）的分块
+     */
+    private static BaseDocChunk match(String vectorDocId, List<BaseDocChunk> batchCanonicals) {
+        for (BaseDocChunk candidate : batchCanonicals) {
+            if (vectorDocId.equals(candidate.getVectorDocId())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, Object> metadata(BaseDocChunk chunk) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("doc_id", chunk.getDocId());
+        if (chunk.getSourceId() != null) {
+            metadata.put("source_id", chunk.getSourceId());
+        }
+        metadata.put("chunk_index", chunk.getChunkIndex());
+        // 十六进制字符串，避免 JSON 读回时超出范围的 long 变为浮点数
+        metadata.put("simhash", Long.toHexString(chunk.getSimhash()));
+        return metadata;
+    }
+}
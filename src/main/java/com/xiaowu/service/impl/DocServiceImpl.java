@@ -3,26 +3,41 @@ package com.xiaowu.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.lark.oapi.service.drive.v1.model.File;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
+import java.util.Objects;
+
+import com.xiaowu.common.DocSyncPlan;
+import com.xiaowu.common.ListingEtagCache;
+import com.xiaowu.common.ListingEtagCache.Listing;
+import com.xiaowu.common.SyncRunContext;
+import com.xiaowu.common.SyncRunContext.Phase;
+import com.xiaowu.config.SyncShardingConfig;
 import com.xiaowu.entity.po.BaseDoc;
+import com.xiaowu.entity.po.BaseSyncSource;
+import com.xiaowu.entity.po.FeishuConfig;
+import com.xiaowu.entity.po.FeishuConfig.Source;
 import com.xiaowu.entity.vo.DocVO;
 import com.xiaowu.feishu.FeishuService;
+import com.xiaowu.mapper.SyncSourceMapper;
 import com.xiaowu.service.DocService;
 import com.xiaowu.service.MpDocService;
+import com.xiaowu.service.SyncShardService;
+import com.xiaowu.service.VectorOutboxService;
+import com.xiaowu.utils.IdUtil;
 import lombok.RequiredArgsConstructor;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
 /**
- * 文档服务实现类，用于同步飞书文档数据到本地数据库及向向量存储中写入内容。
+ * 文档服务实现类，用于同步飞书文档数据到本地数据库，并通过向量发件箱把内容写入向量存储。
+ * 各阶段耗时与文档数量累加到当前线程的 SyncRunContext 中，由 SyncRunService 写入运行历史。
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor // 自动注入构造函数中的 final 成员变量
 public class DocServiceImpl implements DocService {
@@ -33,79 +48,166 @@ public class DocServiceImpl implements DocService {
     // 注入本地数据库操作服务
     private final MpDocService mpDocService;
 
-    // 注入向量存储，用于存储文档向量信息
-    private final VectorStore vectorStore;
+    // 向量写入发件箱，向量由 VectorOutboxRelay 在事务外批量写入
+    private final VectorOutboxService vectorOutboxService;
+
+    // 文档列表的版本号缓存，同步有变更时递增版本号
+    private final ListingEtagCache listingEtagCache;
+
+    // 事务管理器，只把元数据与发件箱的写入放在事务中
+    private final PlatformTransactionManager transactionManager;
+
+    // 飞书数据源配置
+    private final FeishuConfig feishuConfig;
+
+    // 多实例之间分配数据源
+    private final SyncShardService syncShardService;
+
+    // 数据源同步状态
+    private final SyncSourceMapper syncSourceMapper;
+
+    // 当前实例 ID，写入数据源同步状态
+    private final SyncShardingConfig syncShardingConfig;
 
     /**
      * 加载飞书文档数据，并进行同步处理：
-     * 1. 新增文档添加到本地数据库和向量存储
-     * 2. 已删除文档从数据库和向量存储中删除
-     * 3. 修改过的文档更新至向量存储
+     * 1. 新增文档写入本地数据库，登记写入向量
+     * 2. 已删除文档从数据库中删除，登记删除向量
+     * 3. 修改过的文档更新数据库，登记重新写入向量
+     * 数据库与发件箱的修改在同一个事务中提交，读取文档内容与写向量由发件箱异步批量执行，失败时单独重试，
+     * 不会出现元数据与向量不一致、也不需要下一次同步重做全部工作。
+     * <p>
+     * 配置了多个数据源时，每个实例只同步按一致性哈希分配给自己的数据源，各数据源独立同步、独立记录状态，
+     * 一个数据源失败不影响其他数据源，全部处理完后再整体报告失败。
      */
     @Override
-    @Transactional(rollbackFor = Exception.class) // 添加事务控制，操作失败时回滚
     public void loadData() {
-        // 1. 获取飞书的所有文档列表
-        List<File> files = feishuService.listDocs();
-
-        // 2. 获取本地数据库已存储的所有文档
-        List<BaseDoc> docs = mpDocService.list();
-
-        // 3. 将本地文档转换为 Map，以 docId 为 key 便于后续比较
-        /*
-           .stream()：把 List<BaseDoc> 转成“流”
-            .collect(...)：收集器，用来生成新集合，比如 Map
-            Collectors.toMap(...)：这是收集成 Map 的方法
-            第一个参数：BaseDoc::getDocId，表示用 doc.getDocId() 作为 Map 的 key
-            第二个参数：doc -> doc，表示 value 就是 doc 本身
-          */
-        Map<String, BaseDoc> docMap = docs.stream()
-                .collect(Collectors.toMap(BaseDoc::getDocId, doc -> doc));
-        //doc是本地的飞书云文档
-        // 4. 找出飞书中新增的文档（本地不存在）
-        List<BaseDoc> newDocs = files.stream()
-                .filter(v -> !docMap.containsKey(v.getToken()))
-                .map(v -> BaseDoc.builder()
-                        .docId(v.getToken())
-                        .docName(v.getName())
-                        .url(v.getUrl())
-                        .modifiedTime(v.getModifiedTime())
-                        .build())
-                .toList();
+        SyncRunContext run = SyncRunContext.current();
+        List<Source> sources = syncShardService.ownedSources(feishuConfig.effectiveSources());
+
+        List<String> failedSources = new ArrayList<>();
+        RuntimeException failure = null;
+        for (Source source : sources) {
+            Date startTime = new Date();
+            try {
+                int changed = loadSource(run, source.getId());
+                saveState(source.getId(), startTime, "SUCCESS", changed, null);
+            } catch (RuntimeException e) {
+                log.error("failed to sync the feishu source, source id is {}", source.getId(), e);
+                failedSources.add(source.getId());
+                failure = e;
+                saveState(source.getId(), startTime, "FAILED", 0, Objects.toString(e.getMessage(), e.getClass().getName()));
+            }
+        }
+        if (failure != null) {
+            throw new RuntimeException("failed to sync the feishu sources %s".formatted(failedSources), failure);
+        }
+    }
 
-        // 5. 将新增文档写入向量存储和本地数据库
-        addToVectorStore(newDocs);
+    /**
+     * 同步单个数据源，返回变更的文档数
+     */
+    private int loadSource(SyncRunContext run, String sourceId) {
+        // 1. 获取该数据源的所有飞书文档
+        List<File> files = run.time(Phase.LIST, () -> feishuService.listDocs(sourceId));
+
+        // 2. 获取本地数据库中属于该数据源的文档
+        List<BaseDoc> docs = run.time(Phase.DB, () -> mpDocService.list(
+                new LambdaQueryWrapper<BaseDoc>().eq(BaseDoc::getSourceId, sourceId)));
+
+        // 3. 对比飞书与本地文档，得到新增、删除、内容变化的文档
+        DocSyncPlan plan = DocSyncPlan.of(files, docs);
+        plan.newDocs().forEach(doc -> doc.setSourceId(sourceId));
+        plan.updatedDocs().forEach(doc -> doc.setSourceId(sourceId));
+
+        // 4. 在一个短事务中写入元数据与发件箱（事务中不再调用飞书与向量模型）
+        if (!plan.isEmpty()) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            run.time(Phase.DB, () -> transactionTemplate.execute(status -> {
+                apply(plan);
+                return null;
+            }));
+        }
 
-        // 6. 找出已被删除的文档（飞书中不存在但本地存在）
-        List<String> fileIds = files.stream().map(File::getToken).toList();
-        List<BaseDoc> deletedDocs = docs.stream()
-                .filter(v -> !fileIds.contains(v.getDocId()))
-                .toList();
+        // 5. 汇总本次同步的文档数量，写向量失败由发件箱重试，不再计入同步失败
+        run.added(plan.newDocs().size());
+        run.updated(plan.updatedDocs().size());
+        run.deleted(plan.deletedDocs().size());
+        run.skipped(plan.unchanged());
+        return plan.newDocs().size() + plan.updatedDocs().size() + plan.deletedDocs().size();
+    }
+
+    /**
+     * 记录数据源最近一次同步的状态，按 source_id 覆盖
+     */
+    private void saveState(String sourceId, Date startTime, String status, int changed, String errorMessage) {
+        BaseSyncSource state = BaseSyncSource.builder()
+                .sourceId(sourceId)
+                .nodeId(syncShardingConfig.getNodeId())
+                .status(status)
+                .startTime(startTime)
+                .endTime(new Date())
+                .docCount(Math.toIntExact(mpDocService.count(
+                        new LambdaQueryWrapper<BaseDoc>().eq(BaseDoc::getSourceId, sourceId))))
+                .changedCount(changed)
+                .errorMessage(errorMessage != null && errorMessage.length() > 1000 ? errorMessage.substring(0, 1000) : errorMessage)
+                .build();
+        try {
+            syncSourceMapper.upsert(state);
+        } catch (RuntimeException e) {
+            // 状态只用于观察，写入失败不影响同步结果
+            log.warn("failed to save the sync state, source id is {}", sourceId, e);
+        }
+    }
+
+    /**
+     * 写入元数据与发件箱，需要在事务中调用
+     */
+    private void apply(DocSyncPlan plan) {
+        // 新增文档：保存元数据，登记写入向量
+        List<BaseDoc> newDocs = plan.newDocs();
+        newDocs.forEach(doc -> doc.setVectorDocId(vectorDocId(doc)));
+        if (!newDocs.isEmpty()) {
+            mpDocService.saveBatch(newDocs);
+        }
+        newDocs.forEach(doc -> vectorOutboxService.enqueueUpsert(doc, null));
+
+        // 内容变化的文档：更新元数据，登记重新写入向量；旧版本随机生成的向量 ID 一并删除
+        List<BaseDoc> updatedDocs = plan.updatedDocs();
+        for (BaseDoc doc : updatedDocs) {
+            String previous = doc.getVectorDocId();
+            doc.setVectorDocId(vectorDocId(doc));
+            vectorOutboxService.enqueueUpsert(doc, Objects.equals(previous, doc.getVectorDocId()) ? null : previous);
+        }
+        if (!updatedDocs.isEmpty()) {
+            mpDocService.updateBatchById(updatedDocs);
+        }
 
-        // 7. 从向量存储和本地数据库中移除已删除文档
+        // 已删除的文档：删除元数据，登记删除向量
+        List<BaseDoc> deletedDocs = plan.deletedDocs();
         if (!CollectionUtils.isEmpty(deletedDocs)) {
-            removeFromVectorStore(deletedDocs);
+            mpDocService.remove(new LambdaQueryWrapper<BaseDoc>().in(BaseDoc::getDocId,
+                    deletedDocs.stream().map(BaseDoc::getDocId).toList()));
+            deletedDocs.forEach(vectorOutboxService::enqueueDelete);
         }
 
-        // 8. 找出内容发生变化的文档（通过 modifiedTime 判断）
-        List<BaseDoc> updatedDocs = files.stream()
-                .filter(v -> docMap.containsKey(v.getToken()))
-                .filter(v -> !v.getModifiedTime().equals(docMap.get(v.getToken()).getModifiedTime()))
-                .map(v -> {
-                    BaseDoc baseDoc = docMap.get(v.getToken());
-                    return BaseDoc.builder()
-                            .id(baseDoc.getId()) // 使用原本记录的数据库 ID
-                            .docId(baseDoc.getDocId())
-                            .docName(v.getName())
-                            .url(v.getUrl())
-                            .vectorDocId(baseDoc.getVectorDocId())
-                            .modifiedTime(v.getModifiedTime())
-                            .build();
-                })
-                .toList();
+        // 有任何变更时递增文档列表版本号（事务结束后生效），前端轮询即可拿到新列表
+        listingEtagCache.bump(Listing.DOC);
+    }
 
-        // 9. 更新已更改文档至向量存储和数据库
-        updateVectorStore(updatedDocs);
+    /**
+     * 为所有文档登记重新写入向量，由发件箱异步处理
+     */
+    @Override
+    public int rebuild() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Integer count = transactionTemplate.execute(status -> {
+            List<BaseDoc> docs = mpDocService.list();
+            docs.forEach(doc -> vectorOutboxService.enqueueUpsert(doc, null));
+            return docs.size();
+        });
+        log.info("enqueued {} documents for rebuilding", count);
+        return count == null ? 0 : count;
     }
 
     /**
@@ -125,59 +227,9 @@ public class DocServiceImpl implements DocService {
     }
 
     /**
-     * 将新文档添加到向量存储，并存入数据库
-     *
-     * @param docs 新增文档列表
+     * 文档的向量 ID 由文档 ID 固定生成，发件箱重复写入同一文档时覆盖而不是新增
      */
-    private void addToVectorStore(List<BaseDoc> docs) {
-        for (BaseDoc doc : docs) {
-            // 从飞书读取文档内容，创建向量文档
-            Document document = new Document(feishuService.readDoc(doc.getDocId()), new HashMap<>());
-
-            // 写入向量存储系统
-            vectorStore.write(List.of(document));
-
-            // 设置文档向量 ID（用于后续更新/删除）
-            doc.setVectorDocId(document.getId());
-        }
-
-        // 批量保存文档元数据到数据库
-        mpDocService.saveBatch(docs);
-    }
-
-    /**
-     * 更新文档内容到向量存储和数据库
-     *
-     * @param updatedDocs 被更新的文档列表
-     */
-    private void updateVectorStore(List<BaseDoc> updatedDocs) {
-        // 先删除旧的向量记录
-        removeFromVectorStore(updatedDocs);
-
-        // 添加新的向量内容
-        addToVectorStore(updatedDocs);
-
-        // 更新数据库记录
-        mpDocService.updateBatchById(updatedDocs);
-    }
-
-    /**
-     * 从向量存储和数据库中移除文档
-     *
-     * @param docs 需要删除的文档列表
-     */
-    private void removeFromVectorStore(List<BaseDoc> docs) {
-        if (CollectionUtils.isEmpty(docs)) {
-            return;
-        }
-
-        // 删除向量存储中的向量文档
-        vectorStore.delete(docs.stream().map(BaseDoc::getVectorDocId).toList());
-
-        // 从数据库中删除对应记录
-        mpDocService.remove(
-                new LambdaQueryWrapper<BaseDoc>().in(BaseDoc::getDocId,
-                        docs.stream().map(BaseDoc::getDocId).toList())
-        );
+    private static String vectorDocId(BaseDoc doc) {
+        return IdUtil.nameUUID("doc:" + doc.getDocId());
     }
 }
@@ -0,0 +1,11 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseBatchItem;
+import com.xiaowu.mapper.BatchItemMapper;
+import com.xiaowu.service.MpBatchItemService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpBatchItemServiceImpl extends ServiceImpl<BatchItemMapper, BaseBatchItem> implements MpBatchItemService {
+}
@@ -0,0 +1,11 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseBatchJob;
+import com.xiaowu.mapper.BatchJobMapper;
+import com.xiaowu.service.MpBatchJobService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpBatchJobServiceImpl extends ServiceImpl<BatchJobMapper, BaseBatchJob> implements MpBatchJobService {
+}
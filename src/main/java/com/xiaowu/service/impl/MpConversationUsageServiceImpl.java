@@ -0,0 +1,12 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseConversationUsage;
+import com.xiaowu.mapper.ConversationUsageMapper;
+import com.xiaowu.service.MpConversationUsageService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpConversationUsageServiceImpl extends ServiceImpl<ConversationUsageMapper, BaseConversationUsage>
+        implements MpConversationUsageService {
+}
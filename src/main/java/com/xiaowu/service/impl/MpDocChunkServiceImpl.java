@@ -0,0 +1,11 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseDocChunk;
+import com.xiaowu.mapper.DocChunkMapper;
+import com.xiaowu.service.MpDocChunkService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpDocChunkServiceImpl extends ServiceImpl<DocChunkMapper, BaseDocChunk> implements MpDocChunkService {
+}
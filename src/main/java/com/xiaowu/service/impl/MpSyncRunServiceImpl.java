@@ -0,0 +1,11 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseSyncRun;
+import com.xiaowu.mapper.SyncRunMapper;
+import com.xiaowu.service.MpSyncRunService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpSyncRunServiceImpl extends ServiceImpl<SyncRunMapper, BaseSyncRun> implements MpSyncRunService {
+}
@@ -0,0 +1,11 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseSyncSource;
+import com.xiaowu.mapper.SyncSourceMapper;
+import com.xiaowu.service.MpSyncSourceService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpSyncSourceServiceImpl extends ServiceImpl<SyncSourceMapper, BaseSyncSource> implements MpSyncSourceService {
+}
@@ -0,0 +1,11 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.xiaowu.entity.po.BaseVectorOutbox;
+import com.xiaowu.mapper.VectorOutboxMapper;
+import com.xiaowu.service.MpVectorOutboxService;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MpVectorOutboxServiceImpl extends ServiceImpl<VectorOutboxMapper, BaseVectorOutbox> implements MpVectorOutboxService {
+}
@@ -0,0 +1,83 @@
+package com.xiaowu.service.impl;
+
+import com.xiaowu.advisor.ReactiveChatMemory;
+import com.xiaowu.advisor.ReactiveChatMemoryAdvisor;
+import com.xiaowu.common.ChatDeadline;
+import com.xiaowu.common.ChatDeadline.Degradation;
+import com.xiaowu.common.ConversationTurnLock;
+import com.xiaowu.common.ModelLane;
+import com.xiaowu.service.ReactiveChatService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+@ConditionalOnProperty(prefix = "chat", name = "stack", havingValue = "reactive")
+@RequiredArgsConstructor
+public class ReactiveChatServiceImpl implements ReactiveChatService {
+
+    // AI 对话客户端，与阻塞链路共用同一套顾问（检索、路由、合并、统计等）
+    private final ChatClient chatClient;
+
+    // 非阻塞的会话存储
+    private final ReactiveChatMemory reactiveChatMemory;
+
+    // 按会话串行化聊天轮次
+    private final ConversationTurnLock conversationTurnLock;
+
+    /**
+     * 进行一轮流式对话。同一会话的轮次按到达顺序排队执行（不阻塞线程），
+     * 后一轮读取历史时已包含前一轮的问答；多实例之间仍由版本号保证不丢消息
+     */
+    @Override
+    public Flux<String> stream(String conversationId, String message, ChatDeadline deadline) {
+        // 排到队首后才登记截止时间，与阻塞链路先 runExclusive 再 runBound 一致
+        return conversationTurnLock.streamExclusive(conversationId,
+                () -> deadline.streamBound(conversationId, turn(conversationId, message, deadline)));
+    }
+
+    /**
+     * 执行一轮对话，在排到队首后才组装，截止时间按此时的剩余时间计算
+     */
+    private Flux<String> turn(String conversationId, String message, ChatDeadline deadline) {
+        AtomicBoolean finished = new AtomicBoolean();
+        StringBuilder answer = new StringBuilder();
+        return chatClient.prompt()
+            .user(message)
+            .advisors(new ReactiveChatMemoryAdvisor(reactiveChatMemory))
+            // 会话 ID 放入 advise context，供记忆、统计、检索等顾问使用
+            .advisors(a -> a.param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, conversationId))
+            .stream()
+            .content()
+            .doOnNext(answer::append)
+            .doOnComplete(() -> finished.set(true))
+            .take(deadline.remaining())
+            // 模型截止前没有完成时截断，一个字都没有回复时报错。
+            // 截断时记忆顾问不会写回，这里把问题与已返回的部分回复写入历史，与返回给客户端的内容一致
+            .concatWith(Mono.defer(() -> {
+                if (finished.get()) {
+                    return Mono.empty();
+                }
+                if (answer.isEmpty()) {
+                    return Mono.error(new RuntimeException(
+                        "chat deadline exceeded before the model replied, conversation id is %s".formatted(conversationId)));
+                }
+                deadline.degrade(Degradation.TRUNCATED_ANSWER);
+                return reactiveChatMemory.add(conversationId,
+                        List.of(new UserMessage(message), new AssistantMessage(answer.toString())))
+                    .then(Mono.<String>empty());
+            }))
+            // 交互请求走模型限流的交互通道
+            .contextWrite(Context.of(ModelLane.CONTEXT_KEY, ModelLane.INTERACTIVE));
+    }
+}
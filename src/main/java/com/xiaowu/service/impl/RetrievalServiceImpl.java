@@ -0,0 +1,328 @@
+package com.xiaowu.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.pgvector.PGvector;
+import com.xiaowu.common.SearchProfile;
+import com.xiaowu.common.SimHash;
+import com.xiaowu.config.LexicalSearchConfig;
+import com.xiaowu.config.RetrievalConfig;
+import com.xiaowu.config.VectorChunkConfig;
+import com.xiaowu.service.RetrievalService;
+import com.xiaowu.utils.JsonUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 基于 pgvector 的检索服务实现。
+ * <p>
+ * 问题先在事务之外嵌入一次，再在独立的只读事务中通过 SET LOCAL 设置 hnsw.ef_search 并查询 vector_store，
+ * 设置只在当前事务内生效，事务结束后连接恢复为连接池的默认值，不会影响其他请求。
+ * 嵌入调用可能在模型限流与攒批队列中等待，放在事务之外，等待期间不占用数据库连接。
+ * <p>
+ * 自适应模式下，如果最相关结果的相似度低于 confidenceThreshold，则把 efSearch 翻倍重新检索，
+ * 直到结果达标或达到 maxEfSearch，从而只对难查询付出更高的延迟；重新检索沿用同一个问题向量。
+ * <p>
+ * 写入时只有内容完全相同的分块共用同一向量；模板副本、轻微改动的文档仍各自有向量，
+ * 检索结果按内容与 SimHash 合并近似重复的分块，避免 topK 被重复内容占满。
+ * <p>
+ * 混合检索：全文检索（vector_store.content_tsv 上的 GIN 索引）与向量检索并行执行，结果按倒数排名融合。
+ * 全文检索先行一小段时间（fastPathDelay），命中足够好时直接返回，省去问题的嵌入调用与 HNSW 检索。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetrievalServiceImpl implements RetrievalService {
+
+    // pgvector 返回结果中表示余弦距离的元数据字段
+    private static final String DISTANCE_METADATA = "distance";
+
+    // 分块的 SimHash 指纹元数据字段
+    private static final String SIMHASH_METADATA = "simhash";
+
+    // 全文检索得分的元数据字段
+    private static final String LEXICAL_RANK_METADATA = "lexical_rank";
+
+    // 执行全文检索
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final EmbeddingModel embeddingModel;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final RetrievalConfig retrievalConfig;
+
+    private final VectorChunkConfig vectorChunkConfig;
+
+    private final LexicalSearchConfig lexicalSearchConfig;
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public List<Document> search(String query, SearchProfile profile) {
+        return search(query, profile, -1);
+    }
+
+    @Override
+    public List<Document> search(String query, SearchProfile profile, int timeoutSeconds) {
+        if (!lexicalSearchConfig.isEnabled()) {
+            return vectorSearch(query, profile, timeoutSeconds);
+        }
+
+        // 全文检索在虚拟线程上执行，向量检索留在调用线程上，沿用调用方的模型通道
+        CompletableFuture<List<Document>> lexical = CompletableFuture.supplyAsync(
+                () -> lexicalSearch(query, profile.topK(), timeoutSeconds), executor);
+        List<Document> lexicalDocuments = await(lexical, lexicalSearchConfig.getFastPathDelay());
+        if (lexicalDocuments != null && strong(lexicalDocuments)) {
+            // 快速路径：标识符、错误码等精确匹配命中足够好，不再嵌入问题、不做向量检索
+            meterRegistry.counter("retrieval.lexical.fast.path").increment();
+            return top(lexicalDocuments, profile.topK());
+        }
+
+        List<Document> vectorDocuments = vectorSearch(query, profile, timeoutSeconds);
+        if (lexicalDocuments == null) {
+            lexicalDocuments = await(lexical, timeoutSeconds > 0 ? Duration.ofSeconds(timeoutSeconds) : null);
+        }
+        if (lexicalDocuments == null || lexicalDocuments.isEmpty()) {
+            return vectorDocuments;
+        }
+        return top(fuse(vectorDocuments, lexicalDocuments), profile.topK());
+    }
+
+    /**
+     * 取前 topK 个结果，开启合并时先合并近似重复的结果
+     */
+    private List<Document> top(List<Document> documents, int topK) {
+        return vectorChunkConfig.isCollapseResults() ? collapse(documents, topK)
+                : documents.subList(0, Math.min(topK, documents.size()));
+    }
+
+    /**
+     * 向量检索，自适应模式下结果不达标时扩大 ef_search 重新检索
+     */
+    private List<Document> vectorSearch(String query, SearchProfile profile, int timeoutSeconds) {
+        PGvector embedding = new PGvector(embeddingModel.embed(query));
+        List<Document> documents = searchOnce(embedding, profile, timeoutSeconds);
+        SearchProfile current = profile;
+        while (current.adaptive() && topScore(documents) < current.confidenceThreshold()) {
+            current = current.widen();
+            meterRegistry.counter("retrieval.widened").increment();
+            documents = searchOnce(embedding, current, timeoutSeconds);
+        }
+        return documents;
+    }
+
+    @Override
+    public List<Document> search(String query, String profileName) {
+        return search(query, retrievalConfig.profile(profileName));
+    }
+
+    /**
+     * 在只读事务中设置 ef_search 并用已嵌入的问题向量执行一次检索，事务超时会作为查询超时应用到其中的 SQL。
+     * 查询与 PgVectorStore.similaritySearch 一致：余弦距离，相似度 = 1 - 距离
+     */
+    private List<Document> searchOnce(PGvector embedding, SearchProfile profile, int timeoutSeconds) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        if (timeoutSeconds > 0) {
+            transactionTemplate.setTimeout(timeoutSeconds);
+        }
+        List<Document> documents = transactionTemplate.execute(status -> {
+            // SET 语句不支持参数绑定，efSearch 为 SearchProfile 中校验过范围的整数
+            jdbcTemplate.execute("SET LOCAL hnsw.ef_search = " + profile.efSearch());
+            // 合并近似重复时多取一倍结果，合并后仍尽量凑满 topK
+            return jdbcTemplate.query("""
+                            select id, content, metadata, embedding <=> ? as distance
+                            from vector_store
+                            where embedding <=> ? < ?
+                            order by distance
+                            limit ?""",
+                    (rs, rowNum) -> {
+                        double distance = rs.getDouble("distance");
+                        Map<String, Object> metadata = metadata(rs);
+                        metadata.put(DISTANCE_METADATA, distance);
+                        return document(rs, metadata, 1 - distance);
+                    },
+                    embedding, embedding, 1 - profile.similarityThreshold(),
+                    vectorChunkConfig.isCollapseResults() ? profile.topK() * 2 : profile.topK());
+        });
+        return vectorChunkConfig.isCollapseResults() ? collapse(documents, profile.topK()) : documents;
+    }
+
+    /**
+     * 全文检索：按 ts_rank_cd 归一化得分排序，失败或超时时返回空列表，只使用向量检索的结果
+     */
+    private List<Document> lexicalSearch(String query, int topK, int timeoutSeconds) {
+        long start = System.nanoTime();
+        try {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            if (timeoutSeconds > 0) {
+                transactionTemplate.setTimeout(timeoutSeconds);
+            }
+            // 多取一倍结果，与向量检索结果融合、合并重复后仍尽量凑满 topK
+            return transactionTemplate.execute(status -> jdbcTemplate.query("""
+                            select v.id, v.content, v.metadata, ts_rank_cd(v.content_tsv, q, 32) as rank
+                            from vector_store v, websearch_to_tsquery(cast(? as regconfig), ?) q
+                            where v.content_tsv @@ q
+                            order by rank desc
+                            limit ?""",
+                    (rs, rowNum) -> {
+                        Map<String, Object> metadata = metadata(rs);
+                        metadata.put(LEXICAL_RANK_METADATA, rs.getDouble("rank"));
+                        return document(rs, metadata, rs.getDouble("rank"));
+                    },
+                    lexicalSearchConfig.getTextSearchConfig(), query, topK * 2));
+        } catch (RuntimeException e) {
+            log.warn("lexical search failed, falling back to vector search only", e);
+            meterRegistry.counter("retrieval.lexical.failed").increment();
+            return List.of();
+        } finally {
+            meterRegistry.timer("retrieval.lexical.latency").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Map<String, Object> metadata(ResultSet rs) throws SQLException {
+        String metadata = rs.getString("metadata");
+        return metadata == null ? new HashMap<>()
+                : JsonUtil.toJsonObject(metadata, new TypeReference<Map<String, Object>>() {
+        });
+    }
+
+    private static Document document(ResultSet rs, Map<String, Object> metadata, double score) throws SQLException {
+        return Document.builder()
+                .id(rs.getString("id"))
+                .text(rs.getString("content"))
+                .metadata(metadata)
+                .score(score)
+                .build();
+    }
+
+    /**
+     * 等待全文检索结果，超时返回 null；timeout 为空时一直等待
+     */
+    private static List<Document> await(CompletableFuture<List<Document>> future, Duration timeout) {
+        try {
+            return timeout == null ? future.get() : future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * 全文检索命中是否足够好，可以跳过向量检索
+     */
+    private boolean strong(List<Document> documents) {
+        return documents.size() >= lexicalSearchConfig.getFastPathMinHits()
+                && !documents.isEmpty()
+                && documents.get(0).getScore() != null
+                && documents.get(0).getScore() >= lexicalSearchConfig.getFastPathRank();
+    }
+
+    /**
+     * 倒数排名融合（RRF）：每个结果的得分为它在各路结果中 1 / (k + 排名) 之和，两路都靠前的结果排在最前
+     */
+    private List<Document> fuse(List<Document> vectorDocuments, List<Document> lexicalDocuments) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Document> ranked : List.of(vectorDocuments, lexicalDocuments)) {
+            for (int i = 0; i < ranked.size(); i++) {
+                Document document = ranked.get(i);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (lexicalSearchConfig.getRrfK() + i + 1), Double::sum);
+            }
+        }
+        return documents.values().stream()
+                .sorted(Comparator.comparingDouble((Document v) -> scores.get(v.getId())).reversed())
+                .map(v -> Document.builder()
+                        .id(v.getId())
+                        .text(v.getText())
+                        .metadata(v.getMetadata())
+                        .score(scores.get(v.getId()))
+                        .build())
+                .toList();
+    }
+
+    /**
+     * 合并近似重复的结果：与排名更靠前的结果内容相同或 SimHash 距离不超过阈值的结果被丢弃
+     */
+    private List<Document> collapse(List<Document> documents, int topK) {
+        List<Document> collapsed = new ArrayList<>();
+        List<Long> fingerprints = new ArrayList<>();
+        Set<String> texts = new HashSet<>();
+        for (Document document : documents) {
+            if (collapsed.size() >= topK) {
+                break;
+            }
+            if (document.getText() != null && !texts.add(document.getText())) {
+                meterRegistry.counter("retrieval.collapsed").increment();
+                continue;
+            }
+            Long fingerprint = simhash(document);
+            if (fingerprint != null && fingerprints.stream().anyMatch(
+                    v -> SimHash.distance(v, fingerprint) <= vectorChunkConfig.getMaxDistance())) {
+                meterRegistry.counter("retrieval.collapsed").increment();
+                continue;
+            }
+            if (fingerprint != null) {
+                fingerprints.add(fingerprint);
+            }
+            collapsed.add(document);
+        }
+        return collapsed;
+    }
+
+    /**
+     * 分块写入时记录在元数据中的 SimHash，切块之前写入的整篇向量没有指纹
+     */
+    private static Long simhash(Document document) {
+        Object simhash = document.getMetadata().get(SIMHASH_METADATA);
+        return simhash == null ? null : Long.parseUnsignedLong(simhash.toString(), 16);
+    }
+
+    /**
+     * 最相关结果的相似度，没有结果时返回 0
+     */
+    private static double topScore(List<Document> documents) {
+        if (documents == null || documents.isEmpty()) {
+            return 0;
+        }
+        Document top = documents.get(0);
+        if (top.getScore() != null) {
+            return top.getScore();
+        }
+        Object distance = top.getMetadata().get(DISTANCE_METADATA);
+        return distance instanceof Number number ? 1 - number.doubleValue() : 0;
+    }
+}
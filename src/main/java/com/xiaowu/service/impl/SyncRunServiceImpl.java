@@ -0,0 +1,165 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.xiaowu.common.ModelLane;
+import com.xiaowu.common.SyncRunContext;
+import com.xiaowu.common.SyncRunContext.DocTiming;
+import com.xiaowu.common.SyncRunContext.Phase;
+import com.xiaowu.entity.po.BaseSyncRun;
+import com.xiaowu.entity.vo.SyncRunVO;
+import com.xiaowu.service.MpSyncRunService;
+import com.xiaowu.service.SyncRunService;
+import com.xiaowu.utils.JsonUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@RequiredArgsConstructor
+public class SyncRunServiceImpl implements SyncRunService {
+
+    private static final TypeReference<List<DocTiming>> DOC_TIMINGS_TYPE = new TypeReference<>() {};
+
+    // 同步运行历史表
+    private final MpSyncRunService mpSyncRunService;
+
+    // 指标注册表
+    private final MeterRegistry meterRegistry;
+
+    // 当前实例正在执行的同步数，不含发件箱写入向量
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * 先插入一条 RUNNING 记录，同步结束后（无论成功失败）回写耗时与数量
+     */
+    @Override
+    public SyncRunContext run(String triggerType, Runnable sync) {
+        BaseSyncRun record = BaseSyncRun.builder()
+                .triggerType(triggerType)
+                .status("RUNNING")
+                .startTime(new Date())
+                .build();
+        mpSyncRunService.save(record);
+
+        SyncRunContext context = SyncRunContext.open();
+        long start = System.nanoTime();
+        RuntimeException error = null;
+        boolean relay = BaseSyncRun.RELAY.equals(triggerType);
+        if (!relay) {
+            active.incrementAndGet();
+        }
+        try {
+            // 同步中的向量模型调用走后台通道，排队时让位于用户对话
+            ModelLane.BACKGROUND.run(sync);
+            return context;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            if (!relay) {
+                active.decrementAndGet();
+            }
+            SyncRunContext.close();
+            finish(record, context, System.nanoTime() - start, error);
+        }
+    }
+
+    @Override
+    public boolean running() {
+        return active.get() > 0;
+    }
+
+    @Override
+    public List<SyncRunVO> recentRuns(int limit, String triggerType) {
+        return mpSyncRunService.list(new LambdaQueryWrapper<BaseSyncRun>()
+                        .eq(StringUtils.hasText(triggerType), BaseSyncRun::getTriggerType, triggerType)
+                        .orderByDesc(BaseSyncRun::getStartTime)
+                        .last("limit " + Math.max(1, limit)))
+                .stream()
+                .map(this::toVO)
+                .toList();
+    }
+
+    /**
+     * 回写运行记录并上报 Micrometer 指标
+     */
+    private void finish(BaseSyncRun record, SyncRunContext context, long nanos, RuntimeException error) {
+        String status = error == null ? "SUCCESS" : "FAILED";
+
+        mpSyncRunService.updateById(BaseSyncRun.builder()
+                .id(record.getId())
+                .status(status)
+                .endTime(new Date())
+                .listMillis(context.millis(Phase.LIST))
+                .readDocMillis(context.millis(Phase.READ_DOC))
+                .embedMillis(context.millis(Phase.EMBED))
+                .vectorStoreMillis(context.millis(Phase.VECTOR_STORE))
+                .dbMillis(context.millis(Phase.DB))
+                .addedCount(context.added())
+                .updatedCount(context.updated())
+                .deletedCount(context.deleted())
+                .skippedCount(context.skipped())
+                .failedCount(context.failed())
+                .slowestDocs(JsonUtil.toJsonString(context.slowestDocs()))
+                .errorMessage(error == null ? null : StringUtils.truncate(String.valueOf(error.getMessage()), 1024))
+                .build());
+
+        Timer.builder("doc.sync.run")
+                .description("Duration of a document sync run")
+                .tag("trigger", record.getTriggerType().toLowerCase(Locale.ROOT))
+                .tag("status", status.toLowerCase(Locale.ROOT))
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        for (Phase phase : Phase.values()) {
+            Timer.builder("doc.sync.phase")
+                    .description("Time spent in each phase of a document sync run")
+                    .tag("trigger", record.getTriggerType().toLowerCase(Locale.ROOT))
+                    .tag("phase", phase.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry)
+                    .record(context.nanos(phase), TimeUnit.NANOSECONDS);
+        }
+        meterRegistry.counter("doc.sync.documents", "result", "added").increment(context.added());
+        meterRegistry.counter("doc.sync.documents", "result", "updated").increment(context.updated());
+        meterRegistry.counter("doc.sync.documents", "result", "deleted").increment(context.deleted());
+        meterRegistry.counter("doc.sync.documents", "result", "skipped").increment(context.skipped());
+        meterRegistry.counter("doc.sync.documents", "result", "failed").increment(context.failed());
+    }
+
+    private SyncRunVO toVO(BaseSyncRun run) {
+        Map<String, Long> phaseMillis = new LinkedHashMap<>();
+        phaseMillis.put("list", run.getListMillis());
+        phaseMillis.put("read_doc", run.getReadDocMillis());
+        phaseMillis.put("embed", run.getEmbedMillis());
+        phaseMillis.put("vector_store", run.getVectorStoreMillis());
+        phaseMillis.put("db", run.getDbMillis());
+        return SyncRunVO.builder()
+                .id(run.getId())
+                .triggerType(run.getTriggerType())
+                .status(run.getStatus())
+                .startTime(run.getStartTime())
+                .endTime(run.getEndTime())
+                .phaseMillis(phaseMillis)
+                .added(run.getAddedCount())
+                .updated(run.getUpdatedCount())
+                .deleted(run.getDeletedCount())
+                .skipped(run.getSkippedCount())
+                .failed(run.getFailedCount())
+                .slowestDocs(StringUtils.hasText(run.getSlowestDocs())
+                        ? JsonUtil.toJsonObject(run.getSlowestDocs(), DOC_TIMINGS_TYPE)
+                        : List.of())
+                .errorMessage(run.getErrorMessage())
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.xiaowu.service.impl;
+
+import com.xiaowu.common.ConsistentHashRing;
+import com.xiaowu.config.SyncShardingConfig;
+import com.xiaowu.entity.po.FeishuConfig.Source;
+import com.xiaowu.mapper.SyncNodeMapper;
+import com.xiaowu.service.SyncShardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于数据库心跳与一致性哈希的数据源分配。
+ * 各实例读取同一份存活实例列表，独立计算出相同的分配结果，不需要额外的协调服务；
+ * 实例上下线期间各实例看到的列表可能短暂不一致，同一数据源可能被两个实例同时同步，
+ * 同步本身是幂等的（发件箱按文档去重、向量 ID 固定），只会多做一次工作。
+ */
+@Service
+@RequiredArgsConstructor
+public class SyncShardServiceImpl implements SyncShardService {
+
+    private final SyncNodeMapper syncNodeMapper;
+
+    private final SyncShardingConfig syncShardingConfig;
+
+    @Override
+    public void heartbeat() {
+        syncNodeMapper.heartbeat(syncShardingConfig.getNodeId());
+    }
+
+    @Override
+    public void leave() {
+        syncNodeMapper.remove(syncShardingConfig.getNodeId());
+    }
+
+    @Override
+    public List<Source> ownedSources(List<Source> sources) {
+        String self = syncShardingConfig.getNodeId();
+        // 当前实例的心跳可能还没写入（刚启动或数据库短暂不可用），总是把自己算作存活
+        Set<String> nodes = new LinkedHashSet<>(
+                syncNodeMapper.liveNodes(syncShardingConfig.getNodeTtl().toSeconds()));
+        nodes.add(self);
+        ConsistentHashRing ring = new ConsistentHashRing(nodes, syncShardingConfig.getVirtualNodes());
+        return sources.stream()
+                .filter(source -> self.equals(ring.nodeFor(source.getId())))
+                .toList();
+    }
+}
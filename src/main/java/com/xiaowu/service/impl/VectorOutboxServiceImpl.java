@@ -0,0 +1,297 @@
+package com.xiaowu.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.xiaowu.common.ChunkPlan;
+import com.xiaowu.common.SyncRunContext;
+import com.xiaowu.common.SyncRunContext.Phase;
+import com.xiaowu.config.VectorChunkConfig;
+import com.xiaowu.config.VectorOutboxConfig;
+import com.xiaowu.entity.po.BaseDoc;
+import com.xiaowu.entity.po.BaseDocChunk;
+import com.xiaowu.entity.po.BaseSyncRun;
+import com.xiaowu.entity.po.BaseVectorOutbox;
+import com.xiaowu.feishu.DocSnapshotStore;
+import com.xiaowu.feishu.FeishuService;
+import com.xiaowu.mapper.VectorOutboxMapper;
+import com.xiaowu.service.DocChunkService;
+import com.xiaowu.service.MpVectorOutboxService;
+import com.xiaowu.service.SyncRunService;
+import com.xiaowu.service.VectorOutboxService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 向量写入发件箱实现。
+ * <p>
+ * 向量 ID 由分块内容固定生成，pgvector 写入时按 ID 覆盖，删除不存在的 ID 也不会报错，
+ * 因此同一条记录被重复处理（租约到期被重新领取、处理完成但删除记录失败等）不会产生重复或遗漏的向量。
+ * <p>
+ * 文档按分块写入向量，内容相同的分块由 DocChunkService 指向已有向量，不再重复嵌入与存储。
+ * 文档内容通过 DocSnapshotStore 读取，修改时间未变的文档从本地快照读取，不再请求飞书。
+ * <p>
+ * 每批记录作为一次 RELAY 运行写入同步运行历史：读取、生成向量、写入向量库与替换分块的耗时，失败的文档数以及耗时最长的文档。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VectorOutboxServiceImpl implements VectorOutboxService {
+
+    private final VectorOutboxMapper vectorOutboxMapper;
+
+    private final MpVectorOutboxService mpVectorOutboxService;
+
+    private final FeishuService feishuService;
+
+    private final DocSnapshotStore docSnapshotStore;
+
+    private final DocChunkService docChunkService;
+
+    private final VectorStore vectorStore;
+
+    private final VectorOutboxConfig vectorOutboxConfig;
+
+    private final VectorChunkConfig vectorChunkConfig;
+
+    private final MeterRegistry meterRegistry;
+
+    private final SyncRunService syncRunService;
+
+    // 待处理的记录数，每次处理后刷新
+    private final AtomicLong pending = new AtomicLong();
+
+    @Override
+    public void enqueueUpsert(BaseDoc doc, String staleVectorDocId) {
+        vectorOutboxMapper.enqueue(BaseVectorOutbox.builder()
+                .docId(doc.getDocId())
+                .sourceId(doc.getSourceId())
+                .operation(BaseVectorOutbox.UPSERT)
+                .vectorDocId(doc.getVectorDocId())
+                .staleVectorDocId(staleVectorDocId)
+                .modifiedTime(doc.getModifiedTime())
+                .build());
+    }
+
+    @Override
+    public void enqueueDelete(BaseDoc doc) {
+        vectorOutboxMapper.enqueue(BaseVectorOutbox.builder()
+                .docId(doc.getDocId())
+                .sourceId(doc.getSourceId())
+                .operation(BaseVectorOutbox.DELETE)
+                .vectorDocId(doc.getVectorDocId())
+                .modifiedTime(doc.getModifiedTime())
+                .build());
+    }
+
+    @Override
+    public int relay() {
+        List<BaseVectorOutbox> entries = vectorOutboxMapper.claim(
+                vectorOutboxConfig.getBatchSize(), vectorOutboxConfig.getLease().toSeconds());
+        if (!entries.isEmpty()) {
+            syncRunService.run(BaseSyncRun.RELAY, () -> {
+                applyDeletes(entries.stream().filter(v -> BaseVectorOutbox.DELETE.equals(v.getOperation())).toList());
+                applyUpserts(entries.stream().filter(v -> BaseVectorOutbox.UPSERT.equals(v.getOperation())).toList());
+            });
+        }
+        meterRegistry.gauge("vector.outbox.pending", pending).set(mpVectorOutboxService.count());
+        return entries.size();
+    }
+
+    /**
+     * 逐个删除文档的分块，不再被其他文档引用的向量随之删除
+     */
+    private void applyDeletes(List<BaseVectorOutbox> entries) {
+        SyncRunContext run = SyncRunContext.current();
+        for (BaseVectorOutbox entry : entries) {
+            try {
+                released(run.time(Phase.DB,
+                        () -> docChunkService.replace(ChunkPlan.empty(entry.getDocId()), legacyVectorDocIds(entry))));
+                docSnapshotStore.remove(entry.getDocId());
+                complete(entry);
+            } catch (RuntimeException e) {
+                retry(entry, e);
+            }
+        }
+    }
+
+    /**
+     * 逐个分页读取文档内容块并按章节切块，只有内容新的分块需要嵌入；
+     * 待写入的向量跨文档攒满 flushSize 条写入一次，超大文档在读取过程中分多次写入，内存占用有上限。
+     * 单个文档读取失败只重试该文档。
+     * <p>
+     * 向量先于分块记录写入，文档在替换分块之前失败时，它新嵌入的向量没有分块引用：
+     * 尚未写入的从待写入列表中移除，已经写入的交给 DocChunkService#discard 删除（仍被分块引用的保留）
+     */
+    private void applyUpserts(List<BaseVectorOutbox> entries) {
+        SyncRunContext run = SyncRunContext.current();
+        List<BaseVectorOutbox> readEntries = new ArrayList<>();
+        // 与 readEntries 一一对应：每个文档读取、切块以及其间攒满写入向量的耗时
+        List<Long> readNanos = new ArrayList<>();
+        List<ChunkPlan> plans = new ArrayList<>();
+        // 与 readEntries 一一对应：每个文档新嵌入的向量 ID
+        List<List<String>> embedded = new ArrayList<>();
+        List<BaseDocChunk> batchCanonicals = new ArrayList<>();
+        List<Document> vectors = new ArrayList<>();
+        for (BaseVectorOutbox entry : entries) {
+            int canonicals = batchCanonicals.size();
+            List<String> vectorDocIds = new ArrayList<>();
+            long start = System.nanoTime();
+            long written = run.nanos(Phase.EMBED) + run.nanos(Phase.VECTOR_STORE);
+            try {
+                plans.add(docChunkService.plan(entry.getDocId(), entry.getSourceId(),
+                        consumer -> docSnapshotStore.readBlocks(entry.getDocId(), entry.getModifiedTime(),
+                                fetch -> feishuService.readBlocks(entry.getSourceId(), entry.getDocId(), fetch), consumer),
+                        batchCanonicals,
+                        document -> {
+                            vectorDocIds.add(document.getId());
+                            vectors.add(document);
+                            if (vectors.size() >= vectorChunkConfig.getFlushSize()) {
+                                flush(vectors);
+                            }
+                        }));
+                long nanos = System.nanoTime() - start;
+                run.addTime(Phase.READ_DOC, nanos - (run.nanos(Phase.EMBED) + run.nanos(Phase.VECTOR_STORE) - written));
+                readEntries.add(entry);
+                readNanos.add(nanos);
+                embedded.add(vectorDocIds);
+            } catch (RuntimeException e) {
+                // 处理失败的文档的分块不再作为批内去重的目标，它的向量不再写入，已写入的删除
+                batchCanonicals.subList(canonicals, batchCanonicals.size()).clear();
+                Set<String> failed = new HashSet<>(vectorDocIds);
+                vectors.removeIf(document -> failed.contains(document.getId()));
+                discard(entry, vectorDocIds);
+                retry(entry, e);
+            }
+        }
+        if (readEntries.isEmpty()) {
+            return;
+        }
+
+        try {
+            flush(vectors);
+        } catch (RuntimeException e) {
+            // 之前攒满时已经写入的向量同样没有分块引用
+            for (int i = 0; i < readEntries.size(); i++) {
+                discard(readEntries.get(i), embedded.get(i));
+                retry(readEntries.get(i), e);
+            }
+            return;
+        }
+
+        // 向量按内容生成 ID，写入后某个文档替换分块失败时重试会覆盖同一向量
+        List<Integer> failed = new ArrayList<>();
+        for (int i = 0; i < readEntries.size(); i++) {
+            BaseVectorOutbox entry = readEntries.get(i);
+            ChunkPlan plan = plans.get(i);
+            long start = System.nanoTime();
+            try {
+                released(run.time(Phase.DB, () -> docChunkService.replace(plan, legacyVectorDocIds(entry))));
+                meterRegistry.counter("vector.chunk.embedded").increment(plan.embedded());
+                meterRegistry.counter("vector.chunk.deduplicated").increment(plan.deduplicated());
+                meterRegistry.counter("vector.chunk.reused").increment(plan.reused());
+                complete(entry);
+                run.recordDoc(entry.getDocId(), null, readNanos.get(i) + System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                failed.add(i);
+                retry(entry, e);
+            }
+        }
+        // 批内后面的文档可能沿用了失败文档嵌入的向量，等所有文档替换完再删除没有引用的
+        failed.forEach(i -> discard(readEntries.get(i), embedded.get(i)));
+    }
+
+    /**
+     * 删除处理失败的文档新嵌入、且没有被任何分块引用的向量；删除失败只记录日志，不影响该文档的重试
+     */
+    private void discard(BaseVectorOutbox entry, List<String> vectorDocIds) {
+        if (vectorDocIds.isEmpty()) {
+            return;
+        }
+        try {
+            int discarded = docChunkService.discard(vectorDocIds);
+            meterRegistry.counter("vector.chunk.discarded").increment(discarded);
+        } catch (RuntimeException e) {
+            log.warn("failed to discard the vectors of a failed document, doc id is {}", entry.getDocId(), e);
+        }
+    }
+
+    /**
+     * 写入攒下的向量；失败时保留，由后续的写入重试。
+     * 向量库写入时在同一线程内调用向量模型，生成向量的耗时由 InstrumentedEmbeddingModel 记入 EMBED，这里扣除
+     */
+    private void flush(List<Document> vectors) {
+        if (vectors.isEmpty()) {
+            return;
+        }
+        SyncRunContext run = SyncRunContext.current();
+        long embed = run.nanos(Phase.EMBED);
+        long start = System.nanoTime();
+        try {
+            vectorStore.add(vectors);
+        } finally {
+            run.addTime(Phase.VECTOR_STORE, System.nanoTime() - start - (run.nanos(Phase.EMBED) - embed));
+        }
+        vectors.clear();
+    }
+
+    /**
+     * 切块之前按整篇文档写入的向量，处理时一并删除
+     */
+    private static List<String> legacyVectorDocIds(BaseVectorOutbox entry) {
+        return Stream.of(entry.getVectorDocId(), entry.getStaleVectorDocId())
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void released(int count) {
+        meterRegistry.counter("vector.chunk.released").increment(count);
+    }
+
+    /**
+     * 处理成功后删除记录；处理期间该文档又有新变更（revision 变化）时保留记录，等待下一轮处理
+     */
+    private void complete(BaseVectorOutbox entry) {
+        mpVectorOutboxService.remove(new LambdaQueryWrapper<BaseVectorOutbox>()
+                .eq(BaseVectorOutbox::getId, entry.getId())
+                .eq(BaseVectorOutbox::getRevision, entry.getRevision()));
+        meterRegistry.counter("vector.outbox.applied", "operation", entry.getOperation()).increment();
+    }
+
+    /**
+     * 释放租约并按尝试次数指数退避
+     */
+    private void retry(BaseVectorOutbox entry, RuntimeException e) {
+        log.warn("failed to apply the vector outbox entry, doc id is {}, attempts {}",
+                entry.getDocId(), entry.getAttempts(), e);
+        SyncRunContext.current().failed(1);
+        Duration backoff = backoff(entry.getAttempts());
+        String error = Objects.toString(e.getMessage(), e.getClass().getName());
+        mpVectorOutboxService.update(new LambdaUpdateWrapper<BaseVectorOutbox>()
+                .set(BaseVectorOutbox::getNextAttemptTime, new Date(System.currentTimeMillis() + backoff.toMillis()))
+                .set(BaseVectorOutbox::getLeaseUntil, null)
+                .set(BaseVectorOutbox::getLastError, error.length() > 1000 ? error.substring(0, 1000) : error)
+                .eq(BaseVectorOutbox::getId, entry.getId())
+                .eq(BaseVectorOutbox::getRevision, entry.getRevision()));
+        meterRegistry.counter("vector.outbox.retried", "operation", entry.getOperation()).increment();
+    }
+
+    private Duration backoff(Integer attempts) {
+        int exponent = Math.min(20, Math.max(0, (attempts == null ? 1 : attempts) - 1));
+        Duration backoff = vectorOutboxConfig.getInitialBackoff().multipliedBy(1L << exponent);
+        return backoff.compareTo(vectorOutboxConfig.getMaxBackoff()) > 0 ? vectorOutboxConfig.getMaxBackoff() : backoff;
+    }
+}
@@ -3,6 +3,7 @@ package com.xiaowu.utils;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -11,4 +12,11 @@ public class IdUtil {
     public static String gen32UUID() {
         return UUID.randomUUID().toString().replace("-", "");
     }
+
+    /**
+     * 根据名称生成固定的 UUID，同一名称总是得到同一个 ID，重复写入时可以幂等覆盖
+     */
+    public static String nameUUID(String name) {
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+    }
 }
@@ -0,0 +1,89 @@
+package com.xiaowu.advisor;
+
+import com.xiaowu.config.CoalescingConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class CoalescingAdvisorTest {
+
+    private final CoalescingConfig config = new CoalescingConfig();
+
+    private final CoalescingAdvisor advisor = new CoalescingAdvisor(config, new SimpleMeterRegistry());
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private final Sinks.Many<AdvisedResponse> upstream = Sinks.many().multicast().onBackpressureBuffer();
+
+    private final StreamAroundAdvisorChain chain = new StreamAroundAdvisorChain() {
+        @Override
+        public reactor.core.publisher.Flux<AdvisedResponse> nextAroundStream(AdvisedRequest advisedRequest) {
+            upstreamCalls.incrementAndGet();
+            return upstream.asFlux();
+        }
+    };
+
+    @Test
+    void identicalFirstTurnsInFlightShareOneCall() {
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void sameQuestionWithDifferentHistoryIsNotCoalesced() {
+        advisor.aroundStream(request(List.of(new UserMessage("部署在哪个集群？"), new AssistantMessage("prod"))), chain).subscribe();
+        advisor.aroundStream(request(List.of(new UserMessage("回滚怎么做？"), new AssistantMessage("执行 rollback"))), chain).subscribe();
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+
+        assertThat(upstreamCalls).hasValue(3);
+    }
+
+    @Test
+    void callsOlderThanTheWindowAreNotJoined() {
+        config.setWindow(Duration.ZERO);
+
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+
+        assertThat(upstreamCalls).hasValue(2);
+    }
+
+    @Test
+    void finishedCallsAreNotReplayed() {
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+        upstream.tryEmitNext(new AdvisedResponse(new ChatResponse(List.of()), Map.of()));
+        upstream.tryEmitComplete();
+
+        advisor.aroundStream(request(List.of()), chain).subscribe();
+
+        assertThat(upstreamCalls).hasValue(2);
+    }
+
+    private static AdvisedRequest request(List<Message> history) {
+        return AdvisedRequest.builder()
+                .chatModel(mock(ChatModel.class))
+                .systemText("你是知识库助手")
+                .messages(history)
+                .userText("副本数是多少？")
+                .adviseContext(Map.of())
+                .build();
+    }
+}
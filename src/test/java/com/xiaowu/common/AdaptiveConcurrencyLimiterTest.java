@@ -0,0 +1,132 @@
+package com.xiaowu.common;
+
+import com.xiaowu.common.AdaptiveConcurrencyLimiter.Outcome;
+import com.xiaowu.common.AdaptiveConcurrencyLimiter.Permit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void callsBeyondTheLimitWaitAndTimeOut() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2);
+        limiter.acquire(ModelLane.INTERACTIVE);
+        limiter.acquire(ModelLane.INTERACTIVE);
+
+        assertThatThrownBy(() -> limiter.acquire(ModelLane.INTERACTIVE))
+                .hasMessageContaining("timed out waiting");
+    }
+
+    @Test
+    void throttlingShrinksTheLimitMultiplicatively() {
+        AdaptiveConcurrencyLimiter limiter = limiter(10);
+
+        limiter.acquire(ModelLane.INTERACTIVE).release(Outcome.THROTTLED, 0);
+        assertThat(limit()).isEqualTo(7.0);
+        limiter.acquire(ModelLane.INTERACTIVE).release(new RuntimeException("429 - rate limit exceeded"), 0);
+        assertThat(limit()).isCloseTo(4.9, offset(1e-9));
+        assertThat(meterRegistry.get("model.limiter.throttled").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void slowSuccessShrinksAndFastSuccessUnderLoadGrows() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2);
+
+        Permit first = limiter.acquire(ModelLane.INTERACTIVE);
+        Permit second = limiter.acquire(ModelLane.INTERACTIVE);
+        first.release(Outcome.SUCCESS, 0);
+        assertThat(limit()).isEqualTo(2.5);
+        second.release(Outcome.SUCCESS, Duration.ofSeconds(11).toNanos());
+        assertThat(limit()).isEqualTo(1.75);
+    }
+
+    @Test
+    void ignoredOutcomeAndRepeatedReleaseDoNotChangeTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4);
+
+        Permit permit = limiter.acquire(ModelLane.INTERACTIVE);
+        permit.release(new IllegalStateException("connection reset"), 0);
+        permit.release(Outcome.THROTTLED, 0);
+
+        assertThat(limit()).isEqualTo(4.0);
+        assertThat(meterRegistry.get("model.limiter.inflight").gauge().value()).isZero();
+    }
+
+    @Test
+    void backgroundCallsAreCappedByTheirShare() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4);
+        limiter.acquire(ModelLane.BACKGROUND);
+        limiter.acquire(ModelLane.BACKGROUND);
+
+        assertThatThrownBy(() -> limiter.acquire(ModelLane.BACKGROUND)).hasMessageContaining("timed out waiting");
+        limiter.acquire(ModelLane.INTERACTIVE);
+        limiter.acquire(ModelLane.INTERACTIVE);
+    }
+
+    @Test
+    void waitingInteractiveCallsGoBeforeBackgroundCalls() throws Exception {
+        AdaptiveConcurrencyLimiter.Settings settings = settings(1);
+        settings.setQueueTimeout(Duration.ofSeconds(5));
+        settings.setBackgroundQueueTimeout(Duration.ofSeconds(5));
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", settings, meterRegistry);
+        Permit running = limiter.acquire(ModelLane.BACKGROUND);
+        List<ModelLane> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> background = CompletableFuture.runAsync(() -> run(limiter, ModelLane.BACKGROUND, order));
+        awaitQueued();
+        CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> run(limiter, ModelLane.INTERACTIVE, order));
+        awaitQueued();
+
+        running.release(Outcome.IGNORED, 0);
+        CompletableFuture.allOf(background, interactive).get(5, TimeUnit.SECONDS);
+        assertThat(order).containsExactly(ModelLane.INTERACTIVE, ModelLane.BACKGROUND);
+    }
+
+    @Test
+    void recognisesThrottlingResponses() {
+        assertThat(AdaptiveConcurrencyLimiter.isThrottled(new RuntimeException("wrapped",
+                new RuntimeException("429 - Too Many Requests")))).isTrue();
+        assertThat(AdaptiveConcurrencyLimiter.isThrottled(new RuntimeException("500 - Internal Server Error"))).isFalse();
+    }
+
+    private static void run(AdaptiveConcurrencyLimiter limiter, ModelLane lane, List<ModelLane> order) {
+        Permit permit = limiter.acquire(lane);
+        order.add(lane);
+        permit.release(Outcome.IGNORED, 0);
+    }
+
+    /**
+     * 限制器没有公开排队数，留出时间让另一个线程进入排队
+     */
+    private static void awaitQueued() throws InterruptedException {
+        Thread.sleep(200);
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit) {
+        return new AdaptiveConcurrencyLimiter("test", settings(initialLimit), meterRegistry);
+    }
+
+    private static AdaptiveConcurrencyLimiter.Settings settings(int initialLimit) {
+        AdaptiveConcurrencyLimiter.Settings settings = new AdaptiveConcurrencyLimiter.Settings();
+        settings.setInitialLimit(initialLimit);
+        settings.setQueueTimeout(Duration.ofMillis(50));
+        settings.setBackgroundQueueTimeout(Duration.ofMillis(50));
+        return settings;
+    }
+
+    private double limit() {
+        return meterRegistry.get("model.limiter.limit").gauge().value();
+    }
+}
@@ -0,0 +1,46 @@
+package com.xiaowu.common;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatDeadlineTest {
+
+    private final ConversationTurnLock lock = new ConversationTurnLock(new SimpleMeterRegistry());
+
+    @Test
+    void queuedTurnDoesNotReplaceTheRunningTurnsDeadline() {
+        ChatDeadline running = ChatDeadline.after(Duration.ofSeconds(60));
+        ChatDeadline queued = ChatDeadline.after(Duration.ofSeconds(5));
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        lock.streamExclusive("c1", () -> running.streamBound("c1", first.asFlux())).subscribe();
+        Disposable waiter = lock.streamExclusive("c1", () -> queued.streamBound("c1", Flux.<String>never())).subscribe();
+        assertThat(ChatDeadline.of("c1")).isSameAs(running);
+
+        waiter.dispose();
+        assertThat(ChatDeadline.of("c1")).isSameAs(running);
+
+        first.tryEmitComplete();
+        assertThat(ChatDeadline.of("c1").remaining()).isGreaterThan(Duration.ofDays(1));
+    }
+
+    @Test
+    void nextTurnIsBoundOnceItLeavesTheQueue() {
+        ChatDeadline running = ChatDeadline.after(Duration.ofSeconds(60));
+        ChatDeadline next = ChatDeadline.after(Duration.ofSeconds(5));
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        lock.streamExclusive("c2", () -> running.streamBound("c2", first.asFlux())).subscribe();
+        lock.streamExclusive("c2", () -> next.streamBound("c2", Flux.<String>never())).subscribe();
+        first.tryEmitComplete();
+
+        assertThat(ChatDeadline.of("c2")).isSameAs(next);
+    }
+}
@@ -0,0 +1,62 @@
+package com.xiaowu.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> KEYS = IntStream.range(0, 3000).mapToObj(i -> "source-" + i).toList();
+
+    @Test
+    void emptyRingHasNoOwner() {
+        assertThat(new ConsistentHashRing(List.of(), 64).nodeFor("source-1")).isNull();
+    }
+
+    @Test
+    void ownershipDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), 64);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), 64);
+
+        assertThat(KEYS).allMatch(key -> ring.nodeFor(key).equals(reordered.nodeFor(key)));
+    }
+
+    @Test
+    void keysAreSpreadAcrossNodes() {
+        Map<String, Integer> counts = owners(new ConsistentHashRing(List.of("a", "b", "c"), 64));
+
+        assertThat(counts).containsOnlyKeys("a", "b", "c");
+        // 每个实例的份额在平均值（1000）的 ±30% 以内
+        assertThat(counts.values()).allMatch(count -> count > 700 && count < 1300);
+    }
+
+    @Test
+    void joiningNodeOnlyTakesKeysFromOthers() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 64);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), 64);
+
+        long moved = KEYS.stream().filter(key -> !before.nodeFor(key).equals(after.nodeFor(key))).count();
+
+        assertThat(KEYS).allMatch(key -> before.nodeFor(key).equals(after.nodeFor(key)) || after.nodeFor(key).equals("d"));
+        assertThat(moved).isBetween(400L, 1100L);
+    }
+
+    @Test
+    void leavingNodeOnlyHandsOverItsOwnKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 64);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "c"), 64);
+
+        assertThat(KEYS).allMatch(key -> before.nodeFor(key).equals("b") || before.nodeFor(key).equals(after.nodeFor(key)));
+    }
+
+    private static Map<String, Integer> owners(ConsistentHashRing ring) {
+        Map<String, Integer> counts = new HashMap<>();
+        KEYS.forEach(key -> counts.merge(ring.nodeFor(key), 1, Integer::sum));
+        return counts;
+    }
+}
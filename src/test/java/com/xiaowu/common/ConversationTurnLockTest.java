@@ -0,0 +1,85 @@
+package com.xiaowu.common;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationTurnLockTest {
+
+    private final ConversationTurnLock lock = new ConversationTurnLock(new SimpleMeterRegistry());
+
+    @Test
+    void streamTurnsOfTheSameConversationRunInArrivalOrder() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        lock.streamExclusive("c1", () -> {
+            events.add("first start");
+            return first.asFlux();
+        }).subscribe();
+        lock.streamExclusive("c1", () -> {
+            events.add("second start");
+            return Flux.just("b");
+        }).subscribe();
+
+        assertThat(events).containsExactly("first start");
+        first.tryEmitComplete();
+        assertThat(events).containsExactly("first start", "second start");
+    }
+
+    @Test
+    void otherConversationsAreNotBlocked() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        lock.streamExclusive("c1", first::asFlux).subscribe();
+        lock.streamExclusive("c2", () -> {
+            events.add("other start");
+            return Flux.empty();
+        }).subscribe();
+
+        assertThat(events).containsExactly("other start");
+    }
+
+    @Test
+    void cancelledWaiterDoesNotLetTheNextTurnOvertakeTheRunningOne() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        Sinks.Many<String> first = Sinks.many().unicast().onBackpressureBuffer();
+
+        lock.streamExclusive("c1", first::asFlux).subscribe();
+        Disposable second = lock.streamExclusive("c1", () -> {
+            events.add("second start");
+            return Flux.empty();
+        }).subscribe();
+        lock.streamExclusive("c1", () -> {
+            events.add("third start");
+            return Flux.empty();
+        }).subscribe();
+
+        second.dispose();
+        assertThat(events).isEmpty();
+        first.tryEmitComplete();
+        assertThat(events).containsExactly("third start");
+    }
+
+    @Test
+    void failedTurnReleasesTheQueue() {
+        List<String> events = new CopyOnWriteArrayList<>();
+
+        lock.streamExclusive("c1", () -> Flux.<String>error(new IllegalStateException("boom")))
+                .subscribe(v -> { }, e -> events.add("failed"));
+        lock.streamExclusive("c1", () -> {
+            events.add("next start");
+            return Flux.empty();
+        }).subscribe();
+
+        assertThat(events).containsExactly("failed", "next start");
+    }
+}
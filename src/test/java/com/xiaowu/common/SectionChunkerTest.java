@@ -0,0 +1,83 @@
+package com.xiaowu.common;
+
+import com.xiaowu.common.DocBlock.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SectionChunkerTest {
+
+    @Test
+    void chunksStartWithTheHeadingPath() {
+        List<String> chunks = chunk(800,
+                new DocBlock(Kind.HEADING, 1, "部署说明"),
+                new DocBlock(Kind.HEADING, 2, "生产环境"),
+                new DocBlock(Kind.TEXT, 0, "副本数为 4"),
+                new DocBlock(Kind.HEADING, 2, "预发环境"),
+                new DocBlock(Kind.TEXT, 0, "副本数为 1"));
+
+        assertThat(chunks).containsExactly("部署说明 > 生产环境\n副本数为 4", "部署说明 > 预发环境\n副本数为 1");
+    }
+
+    @Test
+    void higherHeadingClearsDeeperLevels() {
+        List<String> chunks = chunk(800,
+                new DocBlock(Kind.HEADING, 1, "部署说明"),
+                new DocBlock(Kind.HEADING, 3, "回滚"),
+                new DocBlock(Kind.TEXT, 0, "回滚到上一版本"),
+                new DocBlock(Kind.HEADING, 2, "监控"),
+                new DocBlock(Kind.TEXT, 0, "查看 Grafana 面板"));
+
+        assertThat(chunks).containsExactly("部署说明 > 回滚\n回滚到上一版本", "部署说明 > 监控\n查看 Grafana 面板");
+    }
+
+    @Test
+    void blocksAreRenderedByKind() {
+        List<String> chunks = chunk(800,
+                new DocBlock(Kind.TEXT, 0, "  步骤  "),
+                new DocBlock(Kind.LIST_ITEM, 0, "构建镜像"),
+                new DocBlock(Kind.QUOTE, 0, "注意备份"),
+                new DocBlock(Kind.TABLE_CELL, 0, "环境"),
+                new DocBlock(Kind.TABLE_CELL, 1, "副本数"),
+                new DocBlock(Kind.TABLE_CELL, 0, "prod"),
+                new DocBlock(Kind.TABLE_CELL, 1, "4"),
+                new DocBlock(Kind.TEXT, 0, "   "));
+
+        assertThat(chunks).containsExactly("步骤\n- 构建镜像\n> 注意备份\n环境 | 副本数\nprod | 4");
+    }
+
+    @Test
+    void longSectionsSplitAtBlockBoundaries() {
+        List<String> chunks = chunk(12,
+                new DocBlock(Kind.TEXT, 0, "第一段内容"),
+                new DocBlock(Kind.TEXT, 0, "第二段内容"),
+                new DocBlock(Kind.TEXT, 0, "第三段内容"));
+
+        assertThat(chunks).containsExactly("第一段内容\n第二段内容", "第三段内容");
+    }
+
+    @Test
+    void oversizedBlockIsCutByLength() {
+        List<String> chunks = chunk(10, new DocBlock(Kind.TEXT, 0, "abcdefghijklmnopqrstuvwxy"));
+
+        assertThat(chunks).containsExactly("abcdefghij", "klmnopqrst", "uvwxy");
+    }
+
+    @Test
+    void emptyDocumentProducesNoChunks() {
+        assertThat(chunk(800, new DocBlock(Kind.HEADING, 1, "空章节"), new DocBlock(Kind.TEXT, 0, null))).isEmpty();
+    }
+
+    private static List<String> chunk(int maxChars, DocBlock... blocks) {
+        List<String> chunks = new ArrayList<>();
+        SectionChunker chunker = new SectionChunker(maxChars, chunks::add);
+        for (DocBlock block : blocks) {
+            chunker.accept(block);
+        }
+        chunker.finish();
+        return chunks;
+    }
+}
@@ -0,0 +1,92 @@
+package com.xiaowu.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShutdownOnFailureScopeTest {
+
+    @Test
+    void joinReturnsOnceAllSubtasksSucceed() throws Exception {
+        try (ShutdownOnFailureScope scope = new ShutdownOnFailureScope("test")) {
+            Supplier<String> history = scope.fork(() -> "history");
+            Supplier<Integer> documents = scope.fork(() -> {
+                Thread.sleep(50);
+                return 3;
+            });
+            scope.join(Duration.ofSeconds(5));
+
+            assertThat(history.get()).isEqualTo("history");
+            assertThat(documents.get()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void firstFailureCancelsTheSiblingAndIsRethrown() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        try (ShutdownOnFailureScope scope = new ShutdownOnFailureScope("test")) {
+            scope.fork(() -> {
+                started.countDown();
+                try {
+                    Thread.sleep(Duration.ofMinutes(1));
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    throw e;
+                }
+                return null;
+            });
+            scope.fork(() -> {
+                started.await();
+                throw new IllegalStateException("retrieval failed");
+            });
+
+            assertThatThrownBy(() -> scope.join(Duration.ofSeconds(5)))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("retrieval failed");
+        }
+        assertThat(interrupted).isTrue();
+    }
+
+    @Test
+    void checkedFailureIsWrapped() throws Exception {
+        try (ShutdownOnFailureScope scope = new ShutdownOnFailureScope("test")) {
+            scope.fork(() -> {
+                throw new IOException("connection reset");
+            });
+
+            assertThatThrownBy(() -> scope.join(null))
+                    .isInstanceOf(RuntimeException.class)
+                    .hasCauseInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void timeoutCancelsSubtasksAndCloseWaitsForThem() throws Exception {
+        AtomicBoolean exited = new AtomicBoolean();
+        try (ShutdownOnFailureScope scope = new ShutdownOnFailureScope("test")) {
+            scope.fork(() -> {
+                try {
+                    Thread.sleep(Duration.ofMinutes(1));
+                    return null;
+                } finally {
+                    exited.set(true);
+                }
+            });
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> scope.join(Duration.ofMillis(100))).isInstanceOf(TimeoutException.class);
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+        }
+        assertThat(exited).isTrue();
+    }
+}
@@ -0,0 +1,50 @@
+package com.xiaowu.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimHashTest {
+
+    private static final String RUNBOOK = """
+            部署说明 > 生产环境
+            服务通过 Kubernetes 部署在 prod 集群，副本数为 4，每个副本申请 2 核 CPU 与 4 GiB 内存。
+            发布前需要在预发环境完成冒烟测试，并确认数据库迁移脚本已经执行。
+            发布采用滚动更新，每次替换一个副本，新副本就绪检查通过后才继续下一个。
+            出现 ERR-1042 时先检查飞书应用凭证是否过期，再检查向量库连接数是否达到上限。
+            """;
+
+    @Test
+    void identicalTextHasZeroDistance() {
+        assertThat(SimHash.distance(SimHash.of(RUNBOOK), SimHash.of(RUNBOOK))).isZero();
+    }
+
+    @Test
+    void caseAndWhitespaceAreIgnored() {
+        assertThat(SimHash.of("Hello   World\n again")).isEqualTo(SimHash.of("hello world again"));
+    }
+
+    @Test
+    void editingOneNumberKeepsTheFingerprintClose() {
+        String edited = RUNBOOK.replace("副本数为 4", "副本数为 3");
+
+        assertThat(SimHash.distance(SimHash.of(RUNBOOK), SimHash.of(edited))).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void unrelatedTextIsFarApart() {
+        String other = """
+                常见问题 > 账号
+                忘记密码时可以在登录页点击“找回密码”，系统会向绑定的邮箱发送重置链接，链接 30 分钟内有效。
+                如果邮箱已经无法使用，请联系管理员在后台重新绑定。
+                """;
+
+        assertThat(SimHash.distance(SimHash.of(RUNBOOK), SimHash.of(other))).isGreaterThan(10);
+    }
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertThat(SimHash.distance(0b1011L, 0b0001L)).isEqualTo(2);
+        assertThat(SimHash.distance(0L, -1L)).isEqualTo(64);
+    }
+}
@@ -0,0 +1,206 @@
+package com.xiaowu.feishu;
+
+import com.xiaowu.common.DocBlock;
+import com.xiaowu.config.DocSnapshotConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocSnapshotStoreTest {
+
+    private static final List<DocBlock> BLOCKS = List.of(
+            new DocBlock(DocBlock.Kind.HEADING, 1, "部署说明"),
+            new DocBlock(DocBlock.Kind.TEXT, 0, "服务部署在 prod 集群"),
+            new DocBlock(DocBlock.Kind.TABLE_CELL, 0, "副本数"),
+            new DocBlock(DocBlock.Kind.TABLE_CELL, 1, "4"));
+
+    @TempDir
+    Path directory;
+
+    private final DocSnapshotConfig config = new DocSnapshotConfig();
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private DocSnapshotStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        config.setDirectory(directory.toString());
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void unchangedDocumentIsReadLocally() {
+        assertThat(read("doc-a", "1")).isEqualTo(BLOCKS);
+        assertThat(read("doc-a", "1")).isEqualTo(BLOCKS);
+        assertThat(fetches).hasValue(1);
+
+        read("doc-a", "2");
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void failedFetchLeavesNoSnapshotOrPendingFile() throws IOException {
+        assertThatThrownBy(() -> store.readBlocks("doc-a", "1", fetch -> {
+            fetch.accept(BLOCKS.get(0));
+            throw new IllegalStateException("feishu unavailable");
+        }, block -> { })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(read("doc-a", "1")).isEqualTo(BLOCKS);
+        assertThat(fetches).hasValue(1);
+        assertThat(files()).containsExactly("segment-000001.dat");
+    }
+
+    @Test
+    void pendingRecordLeftByACrashIsTruncatedOnReopen() throws IOException {
+        read("doc-a", "1");
+        store.close();
+        Path segment = directory.resolve("segment-000001.dat");
+        long committed = Files.size(segment);
+        // 进程在回填内容长度之前退出：记录头的内容长度仍为 PENDING，后面跟着写了一半的内容
+        Files.write(segment, pendingRecord("doc-b", "1"), StandardOpenOption.APPEND);
+        Files.write(directory.resolve("pending-1.tmp"), new byte[16]);
+
+        store = open();
+
+        assertThat(Files.size(segment)).isEqualTo(committed);
+        assertThat(files()).containsExactly("segment-000001.dat");
+        assertThat(read("doc-a", "1")).isEqualTo(BLOCKS);
+        assertThat(fetches).hasValue(1);
+        read("doc-b", "1");
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void tombstoneSurvivesReopen() throws IOException {
+        read("doc-a", "1");
+        read("doc-b", "1");
+        store.remove("doc-a");
+        read("doc-a", "1");
+        assertThat(fetches).hasValue(3);
+
+        store.remove("doc-a");
+        store.close();
+        store = open();
+
+        read("doc-a", "1");
+        read("doc-b", "1");
+        assertThat(fetches).hasValue(4);
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndSurvivesReopen() throws IOException {
+        read("doc-a", "1");
+        read("doc-b", "1");
+        // 之后每条记录都写入新的段文件，第一个段文件中 doc-a 的旧版本失效
+        config.setSegmentSize(DataSize.ofBytes(1));
+        config.setCompactionGarbageRatio(0.3);
+        read("doc-a", "2");
+
+        store.compact();
+        assertThat(files()).doesNotContain("segment-000001.dat");
+        assertThat(read("doc-b", "1")).isEqualTo(BLOCKS);
+        assertThat(fetches).hasValue(3);
+
+        store.close();
+        store = open();
+
+        assertThat(read("doc-a", "2")).isEqualTo(BLOCKS);
+        assertThat(read("doc-b", "1")).isEqualTo(BLOCKS);
+        assertThat(fetches).hasValue(3);
+        read("doc-a", "1");
+        assertThat(fetches).hasValue(4);
+    }
+
+    @Test
+    void fetchDoesNotBlockOtherWrites() throws Exception {
+        read("doc-b", "1");
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> store.readBlocks("doc-a", "1", fetch -> {
+            fetching.countDown();
+            await(release);
+            BLOCKS.forEach(fetch);
+        }, block -> { }));
+        assertThat(fetching.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // 请求飞书期间写入删除记录与整理都不需要等待
+        CompletableFuture.runAsync(() -> {
+            store.remove("doc-b");
+            store.compact();
+        }).get(5, TimeUnit.SECONDS);
+
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+        assertThat(read("doc-a", "1")).isEqualTo(BLOCKS);
+        assertThat(fetches).hasValue(1);
+    }
+
+    private DocSnapshotStore open() throws IOException {
+        DocSnapshotStore opened = new DocSnapshotStore(config, new SimpleMeterRegistry());
+        opened.open();
+        return opened;
+    }
+
+    private List<DocBlock> read(String docId, String modifiedTime) {
+        List<DocBlock> blocks = new ArrayList<>();
+        store.readBlocks(docId, modifiedTime, fetch -> {
+            fetches.incrementAndGet();
+            BLOCKS.forEach(fetch);
+        }, blocks::add);
+        return blocks;
+    }
+
+    private List<String> files() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.map(v -> v.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    /**
+     * 与 DocSnapshotStore 的记录格式一致：magic | docId | modifiedTime | 内容长度（PENDING）| 部分内容
+     */
+    private static byte[] pendingRecord(String docId, String modifiedTime) {
+        byte[] key = docId.getBytes(StandardCharsets.UTF_8);
+        byte[] modified = modifiedTime.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES * 3 + key.length + modified.length + Long.BYTES + 8)
+                .putInt(0x44534e50)
+                .putInt(key.length).put(key)
+                .putInt(modified.length).put(modified)
+                .putLong(Long.MIN_VALUE)
+                .putLong(0x0102030405060708L)
+                .array();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
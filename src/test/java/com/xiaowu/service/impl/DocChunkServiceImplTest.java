@@ -0,0 +1,105 @@
+package com.xiaowu.service.impl;
+
+import com.xiaowu.common.ChunkPlan;
+import com.xiaowu.common.DocBlock;
+import com.xiaowu.common.SimHash;
+import com.xiaowu.config.VectorChunkConfig;
+import com.xiaowu.entity.po.BaseDocChunk;
+import com.xiaowu.mapper.DocChunkMapper;
+import com.xiaowu.service.MpDocChunkService;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocChunkServiceImplTest {
+
+    private static final String RUNBOOK = """
+            服务通过 Kubernetes 部署在 prod 集群，副本数为 4，每个副本申请 2 核 CPU 与 4 GiB 内存。
+            发布前需要在预发环境完成冒烟测试，并确认数据库迁移脚本已经执行。
+            发布采用滚动更新，每次替换一个副本，新副本就绪检查通过后才继续下一个。
+            出现 ERR-1042 时先检查飞书应用凭证是否过期，再检查向量库连接数是否达到上限。""";
+
+    private final DocChunkMapper docChunkMapper = mock(DocChunkMapper.class);
+
+    private final DocChunkServiceImpl service = new DocChunkServiceImpl(docChunkMapper, mock(MpDocChunkService.class),
+            mock(VectorStore.class), new VectorChunkConfig(), mock(PlatformTransactionManager.class));
+
+    @Test
+    void editingOneNumberEmbedsTheEditedTextUnderItsOwnVector() {
+        String edited = RUNBOOK.replace("副本数为 4", "副本数为 3");
+        List<BaseDocChunk> batchCanonicals = new ArrayList<>();
+        List<Document> vectors = new ArrayList<>();
+        ChunkPlan original = plan("doc-a", RUNBOOK, batchCanonicals, vectors);
+        ChunkPlan fork = plan("doc-b", edited, batchCanonicals, vectors);
+
+        // 指纹在合并阈值以内，旧的实现会让 doc-b 引用 doc-a 的向量
+        assertThat(SimHash.distance(original.chunks().get(0).getSimhash(), fork.chunks().get(0).getSimhash()))
+                .isLessThanOrEqualTo(new VectorChunkConfig().getMaxDistance());
+
+        assertThat(fork.embedded()).isEqualTo(1);
+        assertThat(fork.deduplicated()).isZero();
+        assertThat(fork.chunks().get(0).getVectorDocId()).isNotEqualTo(original.chunks().get(0).getVectorDocId());
+        assertThat(fork.chunks().get(0).getCanonical()).isTrue();
+        assertThat(vectors).extracting(Document::getText)
+                .containsExactly("部署说明 > 生产环境\n" + RUNBOOK, "部署说明 > 生产环境\n" + edited);
+    }
+
+    @Test
+    void identicalTextInTheSameBatchSharesOneVector() {
+        List<BaseDocChunk> batchCanonicals = new ArrayList<>();
+        List<Document> vectors = new ArrayList<>();
+        ChunkPlan original = plan("doc-a", RUNBOOK, batchCanonicals, vectors);
+        ChunkPlan copy = plan("doc-b", RUNBOOK, batchCanonicals, vectors);
+
+        assertThat(copy.embedded()).isZero();
+        assertThat(copy.deduplicated()).isEqualTo(1);
+        assertThat(copy.chunks().get(0).getVectorDocId()).isEqualTo(original.chunks().get(0).getVectorDocId());
+        assertThat(copy.chunks().get(0).getCanonical()).isFalse();
+        assertThat(vectors).hasSize(1);
+    }
+
+    @Test
+    void identicalStoredChunkIsReferencedOrCarriedOver() {
+        List<Document> vectors = new ArrayList<>();
+        BaseDocChunk stored = plan("doc-a", RUNBOOK, new ArrayList<>(), vectors).chunks().get(0);
+        vectors.clear();
+        when(docChunkMapper.canonical(stored.getVectorDocId())).thenReturn(stored);
+
+        ChunkPlan otherDoc = plan("doc-b", RUNBOOK, new ArrayList<>(), vectors);
+        ChunkPlan sameDoc = plan("doc-a", RUNBOOK, new ArrayList<>(), vectors);
+
+        assertThat(otherDoc.deduplicated()).isEqualTo(1);
+        assertThat(otherDoc.chunks().get(0).getCanonical()).isFalse();
+        assertThat(sameDoc.reused()).isEqualTo(1);
+        assertThat(sameDoc.chunks().get(0).getCanonical()).isTrue();
+        assertThat(vectors).isEmpty();
+    }
+
+    @Test
+    void nearDuplicateStoredChunkIsNotLookedUpBySimilarity() {
+        when(docChunkMapper.canonical(anyString())).thenReturn(null);
+        List<Document> vectors = new ArrayList<>();
+
+        ChunkPlan plan = plan("doc-b", RUNBOOK.replace("ERR-1042", "ERR-1043"), new ArrayList<>(), vectors);
+
+        assertThat(plan.embedded()).isEqualTo(1);
+        assertThat(vectors).hasSize(1);
+    }
+
+    private ChunkPlan plan(String docId, String text, List<BaseDocChunk> batchCanonicals, List<Document> vectors) {
+        return service.plan(docId, "default", consumer -> {
+            consumer.accept(new DocBlock(DocBlock.Kind.HEADING, 1, "部署说明"));
+            consumer.accept(new DocBlock(DocBlock.Kind.HEADING, 2, "生产环境"));
+            consumer.accept(new DocBlock(DocBlock.Kind.TEXT, 0, text));
+        }, batchCanonicals, vectors::add);
+    }
+}